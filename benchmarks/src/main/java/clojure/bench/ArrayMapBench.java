@@ -0,0 +1,101 @@
+/**
+ *   Copyright (c) Rich Hickey. All rights reserved.
+ *   The use and distribution terms for this software are covered by the
+ *   Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ *   which can be found in the file epl-v10.html at the root of this distribution.
+ *   By using this software in any fashion, you are agreeing to be bound by
+ * 	 the terms of this license.
+ *   You must not remove this notice, or any other, from this software.
+ **/
+
+package clojure.bench;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import clojure.lang.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/*
+ PersistentArrayMap only stays an array map up to its hashtable
+ threshold, so sizes stay small here.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArrayMapBench{
+
+@Param({"2", "4", "8"})
+int size;
+
+Object[] keys;
+Object[] lookups;
+PersistentArrayMap m;
+
+@Setup
+public void setup(){
+	keys = new Object[size];
+	for(int i = 0; i < size; i++)
+		keys[i] = Keyword.intern(null, "k" + i);
+	lookups = Fns.shuffled(keys, 42);
+	Object[] init = new Object[2 * size];
+	for(int i = 0; i < size; i++)
+		{
+		init[2 * i] = keys[i];
+		init[2 * i + 1] = (long) i;
+		}
+	m = new PersistentArrayMap(init);
+}
+
+@Benchmark
+public Object assoc(){
+	IPersistentMap ret = PersistentArrayMap.EMPTY;
+	for(Object k : keys)
+		ret = ret.assoc(k, k);
+	return ret;
+}
+
+@Benchmark
+public Object assocTransient(){
+	ITransientMap ret = PersistentArrayMap.EMPTY.asTransient();
+	for(Object k : keys)
+		ret = ret.assoc(k, k);
+	return ret.persistent();
+}
+
+@Benchmark
+public Object without(){
+	IPersistentMap ret = m;
+	for(Object k : lookups)
+		ret = ret.without(k);
+	return ret;
+}
+
+@Benchmark
+public void valAt(Blackhole bh){
+	for(Object k : lookups)
+		bh.consume(m.valAt(k));
+}
+
+@Benchmark
+public Object kvreduce(){
+	return m.kvreduce(Fns.LAST_VAL, null);
+}
+
+@Benchmark
+public void seq(Blackhole bh){
+	for(ISeq s = m.seq(); s != null; s = s.next())
+		bh.consume(s.first());
+}
+
+@Benchmark
+public void iterator(Blackhole bh){
+	for(Iterator it = m.iterator(); it.hasNext();)
+		bh.consume(it.next());
+}
+}
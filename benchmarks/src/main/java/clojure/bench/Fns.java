@@ -0,0 +1,56 @@
+/**
+ *   Copyright (c) Rich Hickey. All rights reserved.
+ *   The use and distribution terms for this software are covered by the
+ *   Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ *   which can be found in the file epl-v10.html at the root of this distribution.
+ *   By using this software in any fashion, you are agreeing to be bound by
+ * 	 the terms of this license.
+ *   You must not remove this notice, or any other, from this software.
+ **/
+
+package clojure.bench;
+
+import clojure.lang.AFn;
+import clojure.lang.IFn;
+
+/*
+ Cheap reducing fns, so that reduce benchmarks measure traversal rather
+ than the work done per element.
+ */
+
+final class Fns{
+
+// (fn [acc x] x)
+static final IFn LAST = new AFn(){
+	public Object invoke(Object acc, Object x){
+		return x;
+	}
+};
+
+// (fn [acc k v] v)
+static final IFn LAST_VAL = new AFn(){
+	public Object invoke(Object acc, Object k, Object v){
+		return v;
+	}
+};
+
+static Object[] boxedRange(int n){
+	Object[] ret = new Object[n];
+	for(int i = 0; i < n; i++)
+		ret[i] = (long) i;
+	return ret;
+}
+
+static Object[] shuffled(Object[] items, long seed){
+	Object[] ret = items.clone();
+	java.util.Random r = new java.util.Random(seed);
+	for(int i = ret.length - 1; i > 0; i--)
+		{
+		int j = r.nextInt(i + 1);
+		Object t = ret[i];
+		ret[i] = ret[j];
+		ret[j] = t;
+		}
+	return ret;
+}
+}
@@ -0,0 +1,109 @@
+/**
+ *   Copyright (c) Rich Hickey. All rights reserved.
+ *   The use and distribution terms for this software are covered by the
+ *   Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ *   which can be found in the file epl-v10.html at the root of this distribution.
+ *   By using this software in any fashion, you are agreeing to be bound by
+ * 	 the terms of this license.
+ *   You must not remove this notice, or any other, from this software.
+ **/
+
+package clojure.bench;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import clojure.lang.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashMapBench{
+
+@Param({"10", "1000", "100000"})
+int size;
+
+Object[] keys;
+Object[] lookups;
+Object[] misses;
+PersistentHashMap m;
+
+@Setup
+public void setup(){
+	keys = Fns.boxedRange(size);
+	lookups = Fns.shuffled(keys, 42);
+	misses = new Object[size];
+	for(int i = 0; i < size; i++)
+		misses[i] = (long) (size + i);
+	ITransientMap t = PersistentHashMap.EMPTY.asTransient();
+	for(Object k : keys)
+		t = t.assoc(k, k);
+	m = (PersistentHashMap) t.persistent();
+}
+
+@Benchmark
+public Object assoc(){
+	IPersistentMap ret = PersistentHashMap.EMPTY;
+	for(Object k : keys)
+		ret = ret.assoc(k, k);
+	return ret;
+}
+
+@Benchmark
+public Object assocTransient(){
+	ITransientMap ret = PersistentHashMap.EMPTY.asTransient();
+	for(Object k : keys)
+		ret = ret.assoc(k, k);
+	return ret.persistent();
+}
+
+@Benchmark
+public Object without(){
+	IPersistentMap ret = m;
+	for(Object k : lookups)
+		ret = ret.without(k);
+	return ret;
+}
+
+@Benchmark
+public Object withoutTransient(){
+	ITransientMap ret = m.asTransient();
+	for(Object k : lookups)
+		ret = ret.without(k);
+	return ret.persistent();
+}
+
+@Benchmark
+public void valAtHit(Blackhole bh){
+	for(Object k : lookups)
+		bh.consume(m.valAt(k));
+}
+
+@Benchmark
+public void valAtMiss(Blackhole bh){
+	for(Object k : misses)
+		bh.consume(m.valAt(k));
+}
+
+@Benchmark
+public Object kvreduce(){
+	return m.kvreduce(Fns.LAST_VAL, null);
+}
+
+@Benchmark
+public void seq(Blackhole bh){
+	for(ISeq s = m.seq(); s != null; s = s.next())
+		bh.consume(s.first());
+}
+
+@Benchmark
+public void iterator(Blackhole bh){
+	for(Iterator it = m.iterator(); it.hasNext();)
+		bh.consume(it.next());
+}
+}
@@ -0,0 +1,43 @@
+/**
+ *   Copyright (c) Rich Hickey. All rights reserved.
+ *   The use and distribution terms for this software are covered by the
+ *   Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ *   which can be found in the file epl-v10.html at the root of this distribution.
+ *   By using this software in any fashion, you are agreeing to be bound by
+ * 	 the terms of this license.
+ *   You must not remove this notice, or any other, from this software.
+ **/
+
+package clojure.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ Entry point for benchmarks.jar. Takes the usual JMH command line, but
+ turns on the GC (allocation) profiler unless other profilers are asked
+ for with -prof.
+
+   java -jar target/benchmarks.jar                 all benchmarks
+   java -jar target/benchmarks.jar Vector -p size=1000
+   java -jar target/benchmarks.jar -l              list benchmarks
+ */
+
+public class Main{
+
+public static void main(String[] args) throws Exception{
+	CommandLineOptions cmd = new CommandLineOptions(args);
+	if(cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListProfilers() || cmd.shouldListResultFormats())
+		{
+		org.openjdk.jmh.Main.main(args);
+		return;
+		}
+	ChainedOptionsBuilder opts = new OptionsBuilder().parent(cmd);
+	if(cmd.getProfilers().isEmpty())
+		opts.addProfiler(GCProfiler.class);
+	new Runner(opts.build()).run();
+}
+}
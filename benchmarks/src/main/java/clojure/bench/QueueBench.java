@@ -0,0 +1,72 @@
+/**
+ *   Copyright (c) Rich Hickey. All rights reserved.
+ *   The use and distribution terms for this software are covered by the
+ *   Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ *   which can be found in the file epl-v10.html at the root of this distribution.
+ *   By using this software in any fashion, you are agreeing to be bound by
+ * 	 the terms of this license.
+ *   You must not remove this notice, or any other, from this software.
+ **/
+
+package clojure.bench;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import clojure.lang.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueBench{
+
+@Param({"10", "1000", "100000"})
+int size;
+
+Object[] items;
+PersistentQueue q;
+
+@Setup
+public void setup(){
+	items = Fns.boxedRange(size);
+	PersistentQueue ret = PersistentQueue.EMPTY;
+	for(Object o : items)
+		ret = ret.cons(o);
+	q = ret;
+}
+
+@Benchmark
+public Object conj(){
+	PersistentQueue ret = PersistentQueue.EMPTY;
+	for(Object o : items)
+		ret = ret.cons(o);
+	return ret;
+}
+
+@Benchmark
+public void peekPop(Blackhole bh){
+	PersistentQueue ret = q;
+	while(ret.count() > 0)
+		{
+		bh.consume(ret.peek());
+		ret = ret.pop();
+		}
+}
+
+@Benchmark
+public void seq(Blackhole bh){
+	for(ISeq s = q.seq(); s != null; s = s.next())
+		bh.consume(s.first());
+}
+
+@Benchmark
+public void iterator(Blackhole bh){
+	for(Iterator it = q.iterator(); it.hasNext();)
+		bh.consume(it.next());
+}
+}
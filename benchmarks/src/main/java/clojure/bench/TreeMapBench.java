@@ -0,0 +1,81 @@
+/**
+ *   Copyright (c) Rich Hickey. All rights reserved.
+ *   The use and distribution terms for this software are covered by the
+ *   Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ *   which can be found in the file epl-v10.html at the root of this distribution.
+ *   By using this software in any fashion, you are agreeing to be bound by
+ * 	 the terms of this license.
+ *   You must not remove this notice, or any other, from this software.
+ **/
+
+package clojure.bench;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import clojure.lang.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeMapBench{
+
+@Param({"10", "1000", "100000"})
+int size;
+
+Object[] keys;
+PersistentTreeMap m;
+
+@Setup
+public void setup(){
+	keys = Fns.shuffled(Fns.boxedRange(size), 42);
+	PersistentTreeMap ret = PersistentTreeMap.EMPTY;
+	for(Object k : keys)
+		ret = ret.assoc(k, k);
+	m = ret;
+}
+
+@Benchmark
+public Object assoc(){
+	PersistentTreeMap ret = PersistentTreeMap.EMPTY;
+	for(Object k : keys)
+		ret = ret.assoc(k, k);
+	return ret;
+}
+
+@Benchmark
+public Object without(){
+	PersistentTreeMap ret = m;
+	for(Object k : keys)
+		ret = ret.without(k);
+	return ret;
+}
+
+@Benchmark
+public void valAt(Blackhole bh){
+	for(Object k : keys)
+		bh.consume(m.valAt(k));
+}
+
+@Benchmark
+public Object kvreduce(){
+	return m.kvreduce(Fns.LAST_VAL, null);
+}
+
+@Benchmark
+public void seq(Blackhole bh){
+	for(ISeq s = m.seq(); s != null; s = s.next())
+		bh.consume(s.first());
+}
+
+@Benchmark
+public void iterator(Blackhole bh){
+	for(Iterator it = m.iterator(); it.hasNext();)
+		bh.consume(it.next());
+}
+}
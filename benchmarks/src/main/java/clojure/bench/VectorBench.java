@@ -0,0 +1,110 @@
+/**
+ *   Copyright (c) Rich Hickey. All rights reserved.
+ *   The use and distribution terms for this software are covered by the
+ *   Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ *   which can be found in the file epl-v10.html at the root of this distribution.
+ *   By using this software in any fashion, you are agreeing to be bound by
+ * 	 the terms of this license.
+ *   You must not remove this notice, or any other, from this software.
+ **/
+
+package clojure.bench;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import clojure.lang.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorBench{
+
+@Param({"10", "1000", "100000"})
+int size;
+
+Object[] items;
+PersistentVector v;
+
+@Setup
+public void setup(){
+	items = Fns.boxedRange(size);
+	v = PersistentVector.create(items);
+}
+
+@Benchmark
+public Object conj(){
+	IPersistentVector ret = PersistentVector.EMPTY;
+	for(Object o : items)
+		ret = ret.cons(o);
+	return ret;
+}
+
+@Benchmark
+public Object conjTransient(){
+	ITransientCollection ret = PersistentVector.EMPTY.asTransient();
+	for(Object o : items)
+		ret = ret.conj(o);
+	return ret.persistent();
+}
+
+@Benchmark
+public Object assocN(){
+	IPersistentVector ret = v;
+	for(int i = 0; i < size; i++)
+		ret = ret.assocN(i, items[size - 1 - i]);
+	return ret;
+}
+
+@Benchmark
+public Object assocNTransient(){
+	ITransientVector ret = (ITransientVector) v.asTransient();
+	for(int i = 0; i < size; i++)
+		ret = ret.assocN(i, items[size - 1 - i]);
+	return ret.persistent();
+}
+
+@Benchmark
+public Object pop(){
+	IPersistentStack ret = v;
+	for(int i = 0; i < size; i++)
+		ret = ret.pop();
+	return ret;
+}
+
+@Benchmark
+public Object popTransient(){
+	ITransientVector ret = (ITransientVector) v.asTransient();
+	for(int i = 0; i < size; i++)
+		ret = ret.pop();
+	return ret.persistent();
+}
+
+@Benchmark
+public void nth(Blackhole bh){
+	for(int i = 0; i < size; i++)
+		bh.consume(v.nth(i));
+}
+
+@Benchmark
+public Object reduce(){
+	return v.reduce(Fns.LAST, null);
+}
+
+@Benchmark
+public void seq(Blackhole bh){
+	for(ISeq s = v.seq(); s != null; s = s.next())
+		bh.consume(s.first());
+}
+
+@Benchmark
+public void iterator(Blackhole bh){
+	for(Iterator it = v.iterator(); it.hasNext();)
+		bh.consume(it.next());
+}
+}
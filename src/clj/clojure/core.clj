@@ -1966,9 +1966,12 @@
                     (if vvs
                       (recur  (conj (conj ret `(var ~(first vvs))) (second vvs))
                              (next (next vvs)))
-                      (seq ret))))]
+                      (seq ret))))
+        n (quot (count bindings) 2)]
     `(let []
-       (push-thread-bindings (hash-map ~@(var-ize bindings)))
+       ~(if (<= 1 n 4)
+          `(clojure.lang.Var/pushThreadBindings ~@(var-ize bindings))
+          `(push-thread-bindings (hash-map ~@(var-ize bindings))))
        (try
          ~@body
          (finally
@@ -2053,6 +2056,8 @@
       (.resetMeta r (:meta opts)))
     (when (:validator opts)
       (.setValidator r (:validator opts)))
+    (when (:watch-executor opts)
+      (.setWatchExecutor r (:watch-executor opts)))
     r))
 
 (defn agent
@@ -2067,6 +2072,8 @@
 
   :error-mode mode-keyword
 
+  :watch-executor executor
+
   If metadata-map is supplied, it will become the metadata on the
   agent. validate-fn must be nil or a side-effect-free fn of one
   argument, which will be passed the intended new state on any state
@@ -2076,7 +2083,8 @@
   see set-error-handler! for details.  The mode-keyword may be either
   :continue (the default if an error-handler is given) or :fail (the
   default if no error-handler is given) -- see set-error-mode! for
-  details."
+  details.  If executor is supplied, watches are called on it rather
+  than on the agent's thread -- see set-watch-executor!"
   {:added "1.0"
    :static true
    }
@@ -2102,6 +2110,21 @@
   [executor]
   (set! clojure.lang.Agent/soloExecutor executor))
 
+(defn virtual-thread-executor
+  "Returns a new ExecutorService that runs each task on its own virtual
+  thread. Throws UnsupportedOperationException if the JVM does not
+  support virtual threads. Suited to blocking work, e.g.
+
+  (set-agent-send-off-executor! (virtual-thread-executor))
+
+  which moves send-off, future and pmap onto virtual threads. Setting
+  the system property clojure.agent.virtual-threads to true does the
+  same at startup, where supported."
+  {:added "1.11"}
+  ([] (virtual-thread-executor "clojure-virtual-"))
+  ([^String name-prefix]
+   (clojure.lang.Agent/virtualThreadExecutor name-prefix)))
+
 (defn send-via
   "Dispatch an action to an agent. Returns the agent immediately.
   Subsequently, in a thread supplied by executor, the state of the agent
@@ -2158,7 +2181,8 @@
   are triggered only by root binding changes, not thread-local
   set!s. Keys must be unique per reference, and can be used to remove
   the watch with remove-watch, but are otherwise considered opaque by
-  the watch mechanism."
+  the watch mechanism. A reference with a watch executor calls its
+  watches there instead - see set-watch-executor!"
   {:added "1.0"
    :static true}
   [^clojure.lang.IRef reference key fn] (.addWatch reference key fn))
@@ -2170,6 +2194,23 @@
   [^clojure.lang.IRef reference key]
   (.removeWatch reference key))
 
+(defn set-watch-executor!
+  "Sets the java.util.concurrent.Executor on which the watches of an
+  agent/atom/var/ref are called, or nil to call them synchronously (the
+  default). A change then only queues a call for each watch, and each
+  watch has at most one call pending: the states it would have seen
+  in between are skipped, so its old-state is that of the first change
+  queued and its new-state that of the latest. The calls for a watch
+  are made one at a time, in order, so a watch fn is never called
+  concurrently with itself, but the calls for different watches run
+  independently. A watch fn that throws is still called on later
+  changes; the exception goes to the executor. Calls queued when the
+  executor is changed are made on the old one, before any on the new,
+  and a queued call is dropped if its watch is removed first."
+  {:added "1.11"}
+  [^clojure.lang.ARef reference executor]
+  (.setWatchExecutor reference executor))
+
 (defn agent-error
   "Returns the exception thrown during an asynchronous action of the
   agent if the agent is failed.  Returns nil if the agent is not
@@ -2274,6 +2315,8 @@
   :min-history (default 0)
   :max-history (default 10)
 
+  :watch-executor executor
+
   If metadata-map is supplied, it will become the metadata on the
   ref. validate-fn must be nil or a side-effect-free fn of one
   argument, which will be passed the intended new state on any state
@@ -2285,7 +2328,10 @@
   read demands. If you know in advance you will need history you can
   set :min-history to ensure it will be available when first needed (instead
   of after a read fault). History is limited, and the limit can be set
-  with :max-history."
+  with :max-history.
+
+  If executor is supplied, watches are called on it rather than at
+  transaction commit - see set-watch-executor!"
   {:added "1.0"
    :static true
    }
@@ -2336,11 +2382,15 @@
 
   :validator validate-fn
 
+  :watch-executor executor
+
   If metadata-map is supplied, it will become the metadata on the
   atom. validate-fn must be nil or a side-effect-free fn of one
   argument, which will be passed the intended new state on any state
   change. If the new state is unacceptable, the validate-fn should
-  return false or throw an exception."
+  return false or throw an exception. If executor is supplied, watches
+  are called on it rather than by swap! and reset! - see
+  set-watch-executor!"
   {:added "1.0"
    :static true}
   ([x] (new clojure.lang.Atom x))
@@ -2489,6 +2539,79 @@
   ([^clojure.lang.Ref ref n]
     (.setMaxHistory ref n)))
 
+(defn ref-stats
+  "Returns a map of the contention counters recorded for ref while STM
+  stats were enabled, or nil if none have been recorded:
+
+  :commits        - transactions that committed a write to ref
+  :retries        - transaction attempts retried because of ref
+  :barges         - other transactions killed to get at ref
+  :history-faults - reads of ref that found no old enough value
+  :lock-wait-ns   - time spent acquiring ref's write lock
+  :commit-ns      - total first-attempt-to-commit time of those commits
+  :max-commit-ns  - the longest such time
+
+  See set-stm-stats!"
+  {:added "1.11"}
+  [^clojure.lang.Ref ref]
+  (.getStats ref))
+
+(defn stm-stats
+  "Returns a map of transaction site (the class name of a dosync body)
+  to a map of its contention counters, as described in ref-stats, for
+  the transactions run while STM stats were enabled."
+  {:added "1.11"}
+  []
+  (clojure.lang.LockingTransaction/getSiteStats))
+
+(defn set-stm-stats!
+  "Turns collection of STM contention counters (see ref-stats and
+  stm-stats) on or off. Off by default, or on when the system property
+  clojure.stm.stats is true."
+  {:added "1.11"}
+  [on?]
+  (clojure.lang.LockingTransaction/setStatsEnabled (boolean on?)))
+
+(defn set-stm-adaptive!
+  "Turns adaptive contention handling on or off. When on, retried
+  transactions back off for a randomized, exponentially growing pause,
+  refs that fault at their max-history have it raised (up to 100), and
+  contention counters are collected as by set-stm-stats!. Off by
+  default, or on when the system property clojure.stm.adaptive is true."
+  {:added "1.11"}
+  [on?]
+  (clojure.lang.LockingTransaction/setAdaptive (boolean on?)))
+
+(defn runtime-events
+  "Returns a map of the runtime event counters, collected only when the
+  JVM was started with the system property clojure.runtime.events set to
+  true (:enabled says whether it was):
+
+  :reflective-calls         - methods and constructors called by reflection
+  :reflective-call-sites    - map of \"Class/method\" to its reflective calls
+  :multifn-cache-misses     - multimethod dispatches that searched the
+                              method table
+  :multifn-cache-miss-sites - map of multimethod name to its misses
+  :classes-defined          - classes defined by DynamicClassLoader
+  :class-bytes-defined      - total bytecode size of those classes
+  :stm-retries              - transaction attempts retried
+  :agent-actions-queued     - actions sent to agents
+  :agent-queue-depth-max    - most actions seen queued on one agent
+  :keywords-interned        - keywords created
+  :keyword-table-size       - keywords currently interned
+
+  The same counters are published as the MXBean
+  clojure.lang:type=RuntimeEvents."
+  {:added "1.11"}
+  []
+  (clojure.lang.RuntimeEvents/getStats))
+
+(defn reset-runtime-events!
+  "Zeroes the counters reported by runtime-events."
+  {:added "1.11"}
+  []
+  (clojure.lang.RuntimeEvents/reset))
+
 (defn ensure
   "Must be called in a transaction. Protects the ref from modification
   by other transactions.  Returns the in-transaction-value of
@@ -3050,7 +3173,18 @@
    :static true}
   [& maps]
   (when (some identity maps)
-    (reduce1 #(conj (or %1 {}) %2) maps)))
+    (reduce1 (fn [m1 m2]
+               (cond
+                 (and (instance? clojure.lang.PersistentHashMap m1)
+                      (instance? clojure.lang.PersistentHashMap m2))
+                 (clojure.lang.PersistentHashMap/merge m1 m2 nil)
+
+                 (and (instance? clojure.lang.PersistentFlatMap m1)
+                      (instance? clojure.lang.PersistentFlatMap m2))
+                 (clojure.lang.PersistentFlatMap/merge m1 m2 nil)
+
+                 :else (conj (or m1 {}) m2)))
+             maps)))
 
 (defn merge-with
   "Returns a map that consists of the rest of the maps conj-ed onto
@@ -3067,7 +3201,16 @@
 			    (assoc m k (f (get m k) v))
 			    (assoc m k v))))
           merge2 (fn [m1 m2]
-		   (reduce1 merge-entry (or m1 {}) (seq m2)))]
+                   (cond
+                     (and (instance? clojure.lang.PersistentHashMap m1)
+                          (instance? clojure.lang.PersistentHashMap m2))
+                     (clojure.lang.PersistentHashMap/merge m1 m2 f)
+
+                     (and (instance? clojure.lang.PersistentFlatMap m1)
+                          (instance? clojure.lang.PersistentFlatMap m2))
+                     (clojure.lang.PersistentFlatMap/merge m1 m2 f)
+
+                     :else (reduce1 merge-entry (or m1 {}) (seq m2))))]
       (reduce1 merge2 maps))))
 
 (defn line-seq
@@ -3087,21 +3230,30 @@
     (fn [x y]
       (cond (pred x y) -1 (pred y x) 1 :else 0)))
 
+(declare ^:private sorted-primitive-array)
+
 (defn sort
   "Returns a sorted sequence of the items in coll. If no comparator is
   supplied, uses compare.  comparator must implement
   java.util.Comparator.  Guaranteed to be stable: equal elements will
   not be reordered.  If coll is a Java array, it will be modified.  To
-  avoid this, sort a copy of the array."
+  avoid this, sort a copy of the array.
+
+  Large collections are sorted in parallel, with comparator called on
+  fork/join threads under the caller's bindings. Long and double arrays
+  and vector-ofs sorted by compare are sorted without boxing, and are
+  not modified."
   {:added "1.0"
    :static true}
   ([coll]
    (sort compare coll))
   ([^java.util.Comparator comp coll]
    (if (seq coll)
-     (let [a (to-array coll)]
-       (. java.util.Arrays (sort a comp))
-       (with-meta (seq a) (meta coll)))
+     (if-let [p (and (identical? comp compare) (sorted-primitive-array coll))]
+       (with-meta (seq p) (meta coll))
+       (let [a (to-array coll)]
+         (clojure.lang.ParallelSort/sort a comp)
+         (with-meta (seq a) (meta coll))))
      ())))
 
 (defn sort-by
@@ -3808,7 +3960,8 @@
   start (inclusive) to end (exclusive).  If end is not supplied,
   defaults to (count vector). This operation is O(1) and very fast, as
   the resulting vector shares structure with the original and no
-  trimming is done."
+  trimming is done. Subvecs of rrb-vecs are instead rrb-vecs themselves,
+  made in O(log n), that hold nothing else of the original."
   {:added "1.0"
    :static true}
   ([v start]
@@ -3816,6 +3969,40 @@
   ([v start end]
    (. clojure.lang.RT (subvec v start end))))
 
+(defn rrb-vec
+  "Returns a relaxed radix balanced vector of the items in coll. These
+  behave as vectors do, and in addition concatenate (catvec), slice
+  (subvec), and insert or remove items at any index (insertv, removev)
+  in O(log n). Taking over a vector's structure is O(n/32), and other
+  colls are copied."
+  {:added "1.11"}
+  [coll]
+  (clojure.lang.PersistentRRBVector/create coll))
+
+(defn catvec
+  "Returns an rrb-vec of the items of the given vectors in order. Each
+  rrb-vec is joined on in O(log n), see rrb-vec."
+  {:added "1.11"}
+  ([] clojure.lang.PersistentRRBVector/EMPTY)
+  ([v] (rrb-vec v))
+  ([v1 v2] (.concat ^clojure.lang.PersistentRRBVector (rrb-vec v1) (rrb-vec v2)))
+  ([v1 v2 & vs]
+   (reduce1 catvec (catvec v1 v2) vs)))
+
+(defn insertv
+  "Returns an rrb-vec of the items of vector v with x inserted before
+  index i, which may be (count v), in O(log n). See rrb-vec."
+  {:added "1.11"}
+  [v i x]
+  (.insertNth ^clojure.lang.PersistentRRBVector (rrb-vec v) i x))
+
+(defn removev
+  "Returns an rrb-vec of the items of vector v without the one at index
+  i, in O(log n). See rrb-vec."
+  {:added "1.11"}
+  [v i]
+  (.removeNth ^clojure.lang.PersistentRRBVector (rrb-vec v) i))
+
 (defmacro with-open
   "bindings => [name init ...]
 
@@ -5840,6 +6027,12 @@
      "True while a verbose load is pending"}
   *loading-verbosely* false)
 
+(defonce ^:dynamic
+  ^{:private true :doc
+     "A ConcurrentHashMap of lib to lock object while a parallel load is
+  pending, nil otherwise"}
+  *load-locks* nil)
+
 (defn- throw-if
   "Throws a CompilerException with a message if pred is true"
   [pred fmt & args]
@@ -5914,6 +6107,16 @@
               (load-one lib need-ns require)
               @*loaded-libs*))))
 
+(defn- load-once
+  "Loads lib as load would, unless another thread of the pending
+  parallel load has loaded it while this one waited for its lock"
+  [load lib need-ns require]
+  (let [o (Object.)
+        lock (or (.putIfAbsent ^java.util.concurrent.ConcurrentHashMap *load-locks* lib o) o)]
+    (locking lock
+      (when-not (contains? @*loaded-libs* lib)
+        (load lib need-ns require)))))
+
 (defn- load-lib
   "Loads a lib with options"
   [prefix lib & options]
@@ -5934,7 +6137,9 @@
     (binding [*loading-verbosely* (or *loading-verbosely* verbose)]
       (if load
         (try
-          (load lib need-ns require)
+          (if (and *load-locks* require (not reload) (not reload-all))
+            (load-once load lib need-ns require)
+            (load lib need-ns require))
           (catch Exception e
             (when undefined-on-entry
               (remove-ns lib))
@@ -5955,6 +6160,99 @@
           (printf ")\n"))
         (apply refer lib (mapcat seq filter-opts))))))
 
+(defn- libspec-libs
+  "Returns the names of the libs identified by libspecs and prefix lists
+  in args, ignoring flags"
+  [args]
+  (mapcat (fn [arg]
+            (cond
+              (keyword? arg) nil
+              (libspec? arg) [(if (symbol? arg) arg (first arg))]
+              :else (let [[prefix & specs] arg]
+                      (for [spec specs :when (not (keyword? spec))]
+                        (symbol (str prefix \. (if (symbol? spec) spec (first spec))))))))
+          args))
+
+(defn- lib-deps
+  "Returns the libs named in the :require and :use clauses of the ns
+  form that begins lib's root resource, or nil if there is no such
+  resource or it does not begin with an ns form"
+  [lib]
+  (let [base (subs (root-resource lib) 1)
+        loader (clojure.lang.RT/baseLoader)
+        ^java.net.URL url (or (.getResource loader (str base ".clj"))
+                              (.getResource loader (str base ".cljc")))]
+    (when url
+      (try
+        (with-open [r (java.io.PushbackReader.
+                       (java.io.InputStreamReader. (.openStream url) "UTF-8"))]
+          (let [form (binding [*read-eval* false]
+                       (read {:eof nil :read-cond :allow} r))]
+            (when (and (seq? form) ('#{ns clojure.core/ns} (first form)))
+              (libspec-libs (mapcat rest (filter #(and (seq? %) (#{:require :use} (first %)))
+                                                 form))))))
+        (catch Exception _ nil)))))
+
+(defn- lib-graph
+  "Returns a map of each of libs, and each lib they require directly or
+  indirectly, to the set of libs it requires. Libs already loaded are
+  left out."
+  [libs]
+  (loop [graph {} todo (seq libs)]
+    (if todo
+      (let [[lib & todo] todo]
+        (if (or (contains? graph lib) (contains? @*loaded-libs* lib))
+          (recur graph todo)
+          (let [deps (disj (set (remove #(contains? @*loaded-libs* %) (lib-deps lib))) lib)]
+            (recur (assoc graph lib deps) (seq (concat deps todo))))))
+      graph)))
+
+(declare require)
+
+(defn- load-parallel
+  "Requires libs and the libs they require, loading each on a pool of
+  threads once the libs its ns form requires are loaded, so independent
+  branches of the dependency graph load concurrently. Libs left waiting
+  on a cycle are not loaded, leaving its detection to the caller."
+  [libs]
+  (let [graph (lib-graph libs)
+        dependents (reduce1 (fn [m [lib deps]]
+                              (reduce1 #(assoc %1 %2 (conj (get %1 %2) lib)) m deps))
+                            {} graph)
+        ready (for [[lib deps] graph :when (zero? (count deps))] lib)
+        pool (java.util.concurrent.Executors/newFixedThreadPool
+              (.availableProcessors (Runtime/getRuntime)))
+        done (java.util.concurrent.ExecutorCompletionService. pool)
+        context-loader (.getContextClassLoader (Thread/currentThread))]
+    (binding [*load-locks* (java.util.concurrent.ConcurrentHashMap.)]
+      (let [submit (fn [lib]
+                     (.submit done ^Callable (binding-conveyor-fn
+                                              (fn []
+                                                (.setContextClassLoader (Thread/currentThread) context-loader)
+                                                (require lib)
+                                                lib))))]
+        (try
+          (doseq [lib ready] (submit lib))
+          (loop [waiting (reduce1 (fn [m [lib deps]] (if (seq deps) (assoc m lib (count deps)) m))
+                                  {} graph)
+                 running (count ready)]
+            (when (pos? running)
+              (let [lib (try
+                          (.get (.take done))
+                          (catch java.util.concurrent.ExecutionException e
+                            (throw (.getCause e))))
+                    [waiting ready] (reduce1 (fn [[waiting ready] d]
+                                               (let [n (dec (waiting d))]
+                                                 (if (zero? n)
+                                                   [(dissoc waiting d) (conj ready d)]
+                                                   [(assoc waiting d n) ready])))
+                                             [waiting []]
+                                             (dependents lib))]
+                (doseq [lib ready] (submit lib))
+                (recur waiting (+ (dec running) (count ready))))))
+          (finally
+            (.shutdown pool)))))))
+
 (defn- load-libs
   "Loads libs, interpreting libspecs, prefix lists, and flags for
   forwarding to load-lib"
@@ -5963,13 +6261,17 @@
         opts (interleave flags (repeat true))
         args (filter (complement keyword?) args)]
     ; check for unsupported options
-    (let [supported #{:as :reload :reload-all :require :use :verbose :refer}
+    (let [supported #{:as :reload :reload-all :require :use :verbose :refer :parallel}
           unsupported (seq (remove supported flags))]
       (throw-if unsupported
                 (apply str "Unsupported option(s) supplied: "
                      (interpose \, unsupported))))
     ; check a load target was specified
     (throw-if (not (seq args)) "Nothing specified to load")
+    (when (and (some #{:parallel} flags)
+               (not-any? #{:reload :reload-all} flags)
+               (not *compile-files*))
+      (load-parallel (libspec-libs args)))
     (doseq [arg args]
       (if (libspec? arg)
         (apply load-lib nil (prependss arg opts))
@@ -6041,12 +6343,16 @@
   Flags
 
   A flag is a keyword.
-  Recognized flags: :reload, :reload-all, :verbose
+  Recognized flags: :reload, :reload-all, :verbose, :parallel
   :reload forces loading of all the identified libs even if they are
     already loaded
   :reload-all implies :reload and also forces loading of all libs that the
     identified libs directly or indirectly load via require or use
   :verbose triggers printing information about each load, alias, and refer
+  :parallel first loads the identified libs, and the libs their ns forms
+    require directly or indirectly, on a pool of threads, each once the
+    libs it requires are loaded. Ignored with :reload, :reload-all or
+    when compiling
 
   Example:
 
@@ -6333,17 +6639,46 @@ fails, attempts to require sym's namespace and retries."
   "Returns a memoized version of a referentially transparent function. The
   memoized version of the function keeps a cache of the mapping from arguments
   to results and, when calls with the same arguments are repeated often, has
-  higher performance at the expense of higher memory use."
+  higher performance at the expense of higher memory use.
+
+  With opts, the cache is a concurrent map whose lookups take no lock,
+  concurrent calls with the same uncached arguments call f only once,
+  and a call that throws caches nothing. opts is a map that may include:
+
+  :max-size - entries to keep at most. Past it, entries are evicted in a
+              batch down to 7/8 of max-size. Unbounded when absent.
+  :policy   - which entries to evict: :lru (least recently used, the
+              default), :lfu (least frequently used) or :fifo (oldest)
+  :ttl-ms   - milliseconds after which an entry is recomputed
+
+  See memoize-stats for the cache's counters."
   {:added "1.0"
    :static true}
+  ([f]
+   (let [mem (atom {})]
+     (fn [& args]
+       (if-let [e (find @mem args)]
+         (val e)
+         (let [ret (apply f args)]
+           (swap! mem assoc args ret)
+           ret)))))
+  ([f opts]
+   (let [cache (clojure.lang.MemoCache. f
+                                        (int (get opts :max-size 0))
+                                        (get opts :policy :lru)
+                                        (* 1000000 (long (get opts :ttl-ms 0))))]
+     (with-meta (fn [& args] (.lookup cache args))
+       {::memo-cache cache}))))
+
+(defn memoize-stats
+  "Returns a map of the :hits, :misses, :evictions and current :size of
+  the cache of f, a function returned by memoize with opts, or nil for
+  any other function. Hits include calls that waited for a concurrent
+  call with the same arguments; evictions include expired entries."
+  {:added "1.11"}
   [f]
-  (let [mem (atom {})]
-    (fn [& args]
-      (if-let [e (find @mem args)]
-        (val e)
-        (let [ret (apply f args)]
-          (swap! mem assoc args ret)
-          ret)))))
+  (when-let [^clojure.lang.MemoCache cache (::memo-cache (meta f))]
+    (.stats cache)))
 
 (defmacro condp
   "Takes a binary predicate, an expression, and a set of clauses.
@@ -6438,6 +6773,10 @@ fails, attempts to require sym's namespace and retries."
   Supported options:
   :elide-meta - a collection of metadata keys to elide during compilation.
   :disable-locals-clearing - set to true to disable clearing, useful for using a debugger
+  :indy-protocols - set to true to compile protocol fn calls as invokedynamic sites, each
+  caching the implementations for the classes it sees
+  :indy-vars - set to true to compile calls of non-dynamic vars as invokedynamic sites that
+  the JIT treats as constant until the var's root changes
   Alpha, subject to change."
   {:added "1.4"})
 
@@ -7712,6 +8051,110 @@ fails, attempts to require sym's namespace and retries."
       (print-sequential "(" pr-on " " ")" c w))
     (print-object c w)))
 
+;;;;;;;;;;;;;;;;;;;;;;;;;;;;; pmap-with ;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;
+
+(defn- pmap-executor
+  "Returns a ThreadPoolExecutor of n daemon threads that time out when
+  idle, so a pool whose reduction is abandoned does not hold threads."
+  ^java.util.concurrent.ThreadPoolExecutor [n]
+  (let [counter (java.util.concurrent.atomic.AtomicLong.)
+        pool (java.util.concurrent.ThreadPoolExecutor.
+              (int n) (int n) 1 java.util.concurrent.TimeUnit/SECONDS
+              (java.util.concurrent.LinkedBlockingQueue.)
+              (reify java.util.concurrent.ThreadFactory
+                (newThread [_ r]
+                  (doto (Thread. r (str "clojure-pmap-" (.incrementAndGet counter)))
+                    (.setDaemon true)))))]
+    (.allowCoreThreadTimeOut pool true)
+    pool))
+
+(defn pmap-with
+  "Like pmap, but f is applied to batches of items on a pool of its own
+  threads, trading pmap's future per item for one task per batch.
+  Returns a transducer when no collection is provided, and otherwise an
+  eduction of it over coll (reducible and iterable). opts is a map that
+  may include:
+
+  :parallelism - threads applying f, default available processors
+  :batch-size  - items per task, default 32 (the chunk size of chunked
+                 seqs)
+  :buffer      - batches submitted but not yet passed on, default twice
+                 :parallelism. Taking more input waits once this many
+                 are outstanding, bounding memory and letting a slow
+                 consumer hold back the pool
+  :ordered?    - when false, results are passed on batch by batch as
+                 they complete rather than in input order, default true
+
+  Bindings are conveyed to the pool as for future. An exception thrown
+  by f is rethrown on the reducing thread. The pool is shut down when
+  the reduction completes; its threads also exit after a second idle
+  if the reduction is abandoned."
+  {:added "1.11"}
+  ([opts f]
+   (let [parallelism (get opts :parallelism (.. Runtime getRuntime availableProcessors))
+         batch-size (get opts :batch-size 32)
+         buffer (max 1 (get opts :buffer (* 2 parallelism)))
+         ordered? (get opts :ordered? true)]
+     (fn [rf]
+       (let [pool (pmap-executor parallelism)
+             done (java.util.concurrent.ExecutorCompletionService. pool)
+             pending (java.util.ArrayDeque.)
+             batch (volatile! (java.util.ArrayList. (int batch-size)))
+             submit (fn [^java.util.ArrayList items]
+                      (let [^Callable task (binding-conveyor-fn #(mapv f items))]
+                        (.add pending (if ordered? (.submit pool task) (.submit done task)))))
+             take1 (fn []
+                     (let [^java.util.concurrent.Future fut
+                           (if ordered?
+                             (.poll pending)
+                             (let [fut (.take done)]
+                               (.remove pending fut)
+                               fut))]
+                       (try
+                         (.get fut)
+                         (catch java.util.concurrent.ExecutionException e
+                           (throw (or (.getCause e) e))))))
+             drain (fn [result n]
+                     (loop [result result]
+                       (if (> (.size pending) n)
+                         (let [result (reduce (preserving-reduced rf) result (take1))]
+                           (if (reduced? result)
+                             result
+                             (recur result)))
+                         result)))
+             flush (fn [result]
+                     (let [^java.util.ArrayList items @batch]
+                       (when-not (.isEmpty items)
+                         (vreset! batch nil)
+                         (submit items))
+                       (drain result 0)))]
+         (fn
+           ([] (rf))
+           ([result]
+            (try
+              (let [result (if @batch (flush result) result)]
+                (rf (unreduced result)))
+              (finally
+                (.shutdownNow pool))))
+           ([result input]
+            (try
+              (let [^java.util.ArrayList items @batch]
+                (.add items input)
+                (if (< (.size items) batch-size)
+                  result
+                  (do
+                    (vreset! batch (java.util.ArrayList. (int batch-size)))
+                    (submit items)
+                    (let [result (drain result (dec buffer))]
+                      (when (reduced? result)
+                        (vreset! batch nil))
+                      result))))
+              (catch Throwable t
+                (.shutdownNow pool)
+                (throw t)))))))))
+  ([opts f coll]
+   (eduction (pmap-with opts f) coll)))
+
 (defn run!
   "Runs the supplied procedure (via reduce), for purposes of side
   effects, on successive items in the collection. Returns nil"
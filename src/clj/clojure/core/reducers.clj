@@ -11,7 +11,8 @@
       to change."
       :author "Rich Hickey"}
   clojure.core.reducers
-  (:refer-clojure :exclude [reduce map mapcat filter remove take take-while drop flatten cat])
+  (:refer-clojure :exclude [reduce map mapcat filter remove take take-while drop flatten cat
+                            frequencies group-by])
   (:require [clojure.walk :as walk]))
 
 (alias 'core 'clojure.core)
@@ -294,6 +295,71 @@
     ([] (ctor))
     ([a b] (op a b))))
 
+;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;; map building ;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;
+
+(defn- merge-maps
+  "Returns a map of the entries of maps a and b, calling f with the
+  value in a and the value in b for keys in both. Hash maps are merged
+  trie node by node, flat maps entry by entry on their cached hashes,
+  others by assoc'ing the smaller into the larger."
+  [f a b]
+  (let [a (if (instance? clojure.lang.ITransientCollection a) (persistent! a) a)
+        b (if (instance? clojure.lang.ITransientCollection b) (persistent! b) b)]
+    (cond
+     (and (instance? clojure.lang.PersistentHashMap a)
+          (instance? clojure.lang.PersistentHashMap b))
+     (clojure.lang.PersistentHashMap/merge a b f)
+
+     (and (instance? clojure.lang.PersistentFlatMap a)
+          (instance? clojure.lang.PersistentFlatMap b))
+     (clojure.lang.PersistentFlatMap/merge a b f)
+
+     (< (count a) (count b))
+     (persistent! (reduce-kv (fn [m k v]
+                               (assoc! m k (if-let [e (find b k)] (f v (val e)) v)))
+                             (transient b) a))
+
+     :else
+     (persistent! (reduce-kv (fn [m k v]
+                               (assoc! m k (if-let [e (find a k)] (f (val e) v) v)))
+                             (transient a) b)))))
+
+(defn- fold-into-map
+  "Folds coll with (step transient-map x), building a transient map per
+  partition and merging partitions with (f val-left val-right)."
+  [n f step coll]
+  (let [ret (fold n
+                  (fn
+                    ([] (transient {}))
+                    ([a b] (merge-maps f a b)))
+                  (fn
+                    ([m x] (step m x))
+                    ([m k v] (step m (clojure.lang.MapEntry/create k v))))
+                  coll)]
+    (if (instance? clojure.lang.ITransientCollection ret) (persistent! ret) ret)))
+
+(defn frequencies
+  "Like core/frequencies, but folds coll (potentially in parallel, as
+  per fold) into a transient map per partition, and merges the
+  partitions' counts trie node by node. n is as for fold."
+  {:added "1.11"}
+  ([coll] (frequencies 512 coll))
+  ([n coll]
+     (fold-into-map n + (fn [counts x] (assoc! counts x (inc (get counts x 0)))) coll)))
+
+(defn group-by
+  "Like core/group-by, but folds coll (potentially in parallel, as per
+  fold) into a transient map per partition, and merges the partitions'
+  groups trie node by node. Each group keeps the order of coll when
+  coll folds in order, as vectors do. n is as for fold."
+  {:added "1.11"}
+  ([f coll] (group-by 512 f coll))
+  ([n f coll]
+     (fold-into-map n into (fn [groups x]
+                             (let [k (f x)]
+                               (assoc! groups k (conj (get groups k []) x))))
+                    coll)))
+
 ;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;; fold impls ;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;
 (defn- foldvec
   [v n combinef reducef]
@@ -331,4 +397,24 @@
  clojure.lang.PersistentHashMap
  (coll-fold
   [m n combinef reducef]
-  (.fold m n combinef reducef fjinvoke fjtask fjfork fjjoin)))
+  (.fold m n combinef reducef fjinvoke fjtask fjfork fjjoin))
+
+ clojure.lang.PersistentLongHashMap
+ (coll-fold
+  [m n combinef reducef]
+  (.fold m n combinef reducef fjinvoke fjtask fjfork fjjoin))
+
+ clojure.lang.PersistentTreeMap
+ (coll-fold
+  [m n combinef reducef]
+  (.fold m n combinef reducef fjinvoke fjtask fjfork fjjoin))
+
+ clojure.lang.PersistentHashSet
+ (coll-fold
+  [s n combinef reducef]
+  (.fold s n combinef reducef fjinvoke fjtask fjfork fjjoin))
+
+ clojure.lang.PersistentTreeSet
+ (coll-fold
+  [s n combinef reducef]
+  (.fold s n combinef reducef fjinvoke fjtask fjfork fjjoin)))
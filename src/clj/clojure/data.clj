@@ -66,6 +66,68 @@
                        (if (vector? b) b (vec b))
                        (range (max (count a) (count b)))))))
 
+(defn- diff-shared-map
+  "Diff maps a and b of the same persistent type, where ks are the keys
+  whose values are not identical in a and b. Values at other keys are
+  in both, and are kept in place in a rather than rebuilt."
+  [a b ks]
+  (let [[only-a only-b both] (diff-associative a b ks)]
+    (if (or only-a only-b)
+      [only-a
+       only-b
+       (not-empty (with-meta (reduce (fn [m k]
+                                       (if-let [e (find both k)]
+                                         (assoc m k (val e))
+                                         (dissoc m k)))
+                                     a ks)
+                    nil))]
+      [nil nil a])))
+
+(defn- diff-shared-vector
+  "Diff vectors a and b, where ks are the ascending indexes whose
+  elements are not identical in a and b."
+  [a b ks]
+  (let [[only-a only-b both] (diff-associative a b ks)]
+    (if (or only-a only-b)
+      (let [gaps (set (remove #(contains? both %) ks))
+            end (loop [i (min (count a) (count b))]
+                  (if (and (pos? i) (contains? gaps (dec i)))
+                    (recur (dec i))
+                    i))]
+        [(vectorize only-a)
+         (vectorize only-b)
+         (when (pos? end)
+           (persistent! (reduce (fn [v k]
+                                  (if (< k end) (assoc! v k (get both k)) v))
+                                (loop [v (transient a)]
+                                  (if (> (count v) end) (recur (pop! v)) v))
+                                ks)))])
+      [nil nil a])))
+
+(defn- diff-persistent
+  "Diff a and b without visiting the structure they share, when both
+  are hash maps, flat maps, sorted maps with one comparator, or
+  vectors. Returns nil for other a and b."
+  [a b]
+  (cond
+   (and (instance? clojure.lang.PersistentHashMap a)
+        (instance? clojure.lang.PersistentHashMap b))
+   (diff-shared-map a b (clojure.lang.PersistentHashMap/differingKeys a b))
+
+   (and (instance? clojure.lang.PersistentFlatMap a)
+        (instance? clojure.lang.PersistentFlatMap b))
+   (diff-shared-map a b (clojure.lang.PersistentFlatMap/differingKeys a b))
+
+   (and (instance? clojure.lang.PersistentTreeMap a)
+        (instance? clojure.lang.PersistentTreeMap b)
+        (identical? (.comparator ^clojure.lang.PersistentTreeMap a)
+                    (.comparator ^clojure.lang.PersistentTreeMap b)))
+   (diff-shared-map a b (clojure.lang.PersistentTreeMap/differingKeys a b))
+
+   (and (instance? clojure.lang.PersistentVector a)
+        (instance? clojure.lang.PersistentVector b))
+   (diff-shared-vector a b (clojure.lang.PersistentVector/differingIndexes a b))))
+
 (defprotocol ^{:added "1.3"} EqualityPartition
   "Implementation detail. Subject to change."
   (^{:added "1.3"} equality-partition [x] "Implementation detail. Subject to change."))
@@ -135,9 +197,10 @@
     an atom and compared for equality."
   {:added "1.3"}
   [a b]
-  (if (= a b)
-    [nil nil a]
-    (if (= (equality-partition a) (equality-partition b))
-      (diff-similar a b)
-      (atom-diff a b))))
+  (or (diff-persistent a b)
+      (if (= a b)
+        [nil nil a]
+        (if (= (equality-partition a) (equality-partition b))
+          (diff-similar a b)
+          (atom-diff a b)))))
   
@@ -43,4 +43,43 @@
   opts is a map as per clojure.edn/read"
   {:added "1.5"}
   ([s] (read-string {:eof nil} s))
-  ([opts s] (when s (clojure.lang.EdnReader/readString s opts))))
\ No newline at end of file
+  ([opts s] (when s (clojure.lang.EdnReader/readString s opts))))
+
+(defn read-buffer
+  "Reads the next object from buf, a java.nio.CharBuffer or a
+  java.nio.ByteBuffer of UTF-8 text such as a memory-mapped file,
+  leaving its position just past the object. Reads the same values as
+  read, without going through a Reader.
+
+  opts is a map as per clojure.edn/read"
+  {:added "1.11"}
+  ([buf] (read-buffer {} buf))
+  ([opts ^java.nio.Buffer buf]
+   (clojure.lang.EdnBufferReader/read buf opts)))
+
+(defn forms
+  "Returns a reducible and seqable of the top-level objects in source,
+  read as by read-buffer as they are consumed. source may be a
+  java.nio.CharBuffer, a java.nio.ByteBuffer of UTF-8 text, a
+  java.nio.channels.ReadableByteChannel of UTF-8 text, or a
+  java.io.File. Buffers and channels are consumed as the result is
+  reduced or iterated. A file is opened afresh each time, memory-mapped
+  when it is under 2GB and streamed otherwise, and is closed when a
+  reduce finishes or a seq is walked to the end.
+
+  opts is a map as per clojure.edn/read, less :eof"
+  {:added "1.11"}
+  ([source] (forms {} source))
+  ([opts source]
+   (cond
+     (instance? java.io.File source)
+     (clojure.lang.EdnBufferReader/fileForms source opts)
+
+     (instance? java.nio.CharBuffer source)
+     (clojure.lang.EdnBufferReader. ^java.nio.CharBuffer source ^clojure.lang.IPersistentMap opts)
+
+     (instance? java.nio.ByteBuffer source)
+     (clojure.lang.EdnBufferReader. ^java.nio.ByteBuffer source ^clojure.lang.IPersistentMap opts)
+
+     :else
+     (clojure.lang.EdnBufferReader. ^java.nio.channels.ReadableByteChannel source ^clojure.lang.IPersistentMap opts))))
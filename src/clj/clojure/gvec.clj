@@ -564,3 +564,35 @@ Object
      (if xn
        (recur (conj v (first xn)) (next xn))
        v))))
+
+(def ^:private ^Class longs-class (class (long-array 0)))
+(def ^:private ^Class doubles-class (class (double-array 0)))
+
+(defn- sorted-primitive-array
+  "Returns a sorted long[] or double[] of the items of coll when coll is
+  a long or double array or vector-of, else nil. Arrays are copied
+  first, leaving coll as it was."
+  [coll]
+  (let [leaves (fn [^Vec v arr]
+                 (loop [i 0]
+                   (when (< i (.-cnt v))
+                     (System/arraycopy (.arrayFor v i) 0 arr i (min 32 (- (.-cnt v) i)))
+                     (recur (+ i 32))))
+                 arr)]
+    (cond
+      (instance? Vec coll)
+      (let [am (.-am ^Vec coll)]
+        (cond
+          (identical? am (ams :long))
+          (doto ^longs (leaves coll (long-array (.-cnt ^Vec coll)))
+            (clojure.lang.ParallelSort/sort))
+
+          (identical? am (ams :double))
+          (doto ^doubles (leaves coll (double-array (.-cnt ^Vec coll)))
+            (clojure.lang.ParallelSort/sort))))
+
+      (instance? longs-class coll)
+      (doto (aclone ^longs coll) (clojure.lang.ParallelSort/sort))
+
+      (instance? doubles-class coll)
+      (doto (aclone ^doubles coll) (clojure.lang.ParallelSort/sort)))))
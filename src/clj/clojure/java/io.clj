@@ -449,3 +449,111 @@
   {:added "1.2"}
   ([n] (resource n (.getContextClassLoader (Thread/currentThread))))
   ([n ^ClassLoader loader] (.getResource loader n)))
+
+(defn- reducible-source
+  "Returns a reducible that, on each reduce, calls open for a Closeable
+  and calls (read-item source) for each item until it returns
+  ::eof. The source is closed when the reduce finishes, including
+  early termination via reduced and exceptions."
+  [open read-item]
+  (letfn [(reduce-source [^Closeable source f init]
+            (loop [ret init]
+              (let [x (read-item source)]
+                (if (identical? x ::eof)
+                  ret
+                  (let [ret (f ret x)]
+                    (if (reduced? ret)
+                      @ret
+                      (recur ret)))))))]
+    (reify
+      clojure.lang.IReduce
+      (reduce [_ f]
+        (with-open [^Closeable source (open)]
+          (let [x (read-item source)]
+            (if (identical? x ::eof)
+              (f)
+              (reduce-source source f x)))))
+      (reduce [_ f init]
+        (with-open [^Closeable source (open)]
+          (reduce-source source f init))))))
+
+(defn lines
+  "Returns a reducible of the lines of text in x, which may be anything
+  reader accepts, without the line terminators. Each reduce opens x as
+  per (apply reader x opts) and closes it when done, so x should not be
+  an already open Reader or InputStream that is still needed. Works
+  with reduce, transduce, into and clojure.core.reducers/fold (which
+  reduces sequentially), without allocating a seq."
+  {:added "1.11"}
+  [x & opts]
+  (reducible-source #(apply reader x opts)
+                    (fn [^BufferedReader rdr]
+                      (or (.readLine rdr) ::eof))))
+
+(defn records
+  "Returns a reducible of the records in the text of x, which may be
+  anything reader accepts, separated by the non-empty string delim. The
+  delimiters are not included, and a record is produced between
+  adjacent delimiters but not after a trailing one. Opens and closes x
+  as per lines."
+  {:added "1.11"}
+  [x ^String delim & opts]
+  (when (empty? delim)
+    (throw (IllegalArgumentException. "records delimiter must not be empty")))
+  (let [n (.length delim)
+        last-ch (int (.charAt delim (dec n)))
+        delimited? (fn [^StringBuilder sb]
+                     (let [start (- (.length sb) n)]
+                       (and (>= start 0)
+                            (loop [i 0]
+                              (cond
+                                (== i n) true
+                                (= (.charAt sb (+ start i)) (.charAt delim i)) (recur (inc i))
+                                :else false)))))]
+    (reducible-source #(apply reader x opts)
+                      (fn [^Reader rdr]
+                        (let [sb (StringBuilder.)]
+                          (loop []
+                            (let [ch (.read rdr)]
+                              (if (== ch -1)
+                                (if (zero? (.length sb)) ::eof (.toString sb))
+                                (do (.append sb (char ch))
+                                    (if (and (== ch last-ch) (delimited? sb))
+                                      (.substring sb 0 (- (.length sb) n))
+                                      (recur)))))))))))
+
+(defn edn-forms
+  "Returns a reducible of the edn objects in the text of x, which may
+  be anything reader accepts, as read by clojure.edn/read. opts are as
+  for reader, plus :readers and :default as for clojure.edn/read. Opens
+  and closes x as per lines."
+  {:added "1.11"}
+  [x & opts]
+  (let [edn-opts (-> (apply hash-map opts)
+                     (select-keys [:readers :default])
+                     (assoc :eof ::eof))]
+    (reducible-source #(PushbackReader. (apply reader x opts))
+                      (fn [^PushbackReader rdr]
+                        (clojure.lang.EdnReader/read rdr edn-opts)))))
+
+(defn byte-chunks
+  "Returns a reducible of the bytes of x, which may be anything
+  input-stream accepts, as byte arrays of up to :chunk-size
+  bytes (default 65536). Each chunk is a new array, so chunks may be
+  retained. Opens and closes x as per lines."
+  {:added "1.11"}
+  [x & opts]
+  (let [size (or (:chunk-size (apply hash-map opts)) 65536)]
+    (reducible-source #(apply input-stream x opts)
+                      (fn [^InputStream in]
+                        (let [buf (byte-array size)
+                              n (loop [off 0]
+                                  (let [r (.read in buf off (- size off))]
+                                    (cond
+                                      (neg? r) off
+                                      (== (+ off r) size) size
+                                      :else (recur (+ off r)))))]
+                          (cond
+                            (zero? n) ::eof
+                            (== n size) buf
+                            :else (java.util.Arrays/copyOf buf (int n))))))))
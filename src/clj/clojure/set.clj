@@ -23,20 +23,29 @@
   ([] #{})
   ([s1] s1)
   ([s1 s2]
-     (if (< (count s1) (count s2))
-       (reduce conj s2 s1)
-       (reduce conj s1 s2)))
+     (cond
+      (and (instance? clojure.lang.PersistentHashSet s1)
+           (instance? clojure.lang.PersistentHashSet s2))
+      (if (< (count s1) (count s2))
+        (clojure.lang.PersistentHashSet/union s2 s1)
+        (clojure.lang.PersistentHashSet/union s1 s2))
+      (< (count s1) (count s2)) (reduce conj s2 s1)
+      :else (reduce conj s1 s2)))
   ([s1 s2 & sets]
      (let [bubbled-sets (bubble-max-key count (conj sets s2 s1))]
-       (reduce into (first bubbled-sets) (rest bubbled-sets)))))
+       (reduce union (first bubbled-sets) (rest bubbled-sets)))))
 
 (defn intersection
   "Return a set that is the intersection of the input sets"
   {:added "1.0"}
   ([s1] s1)
   ([s1 s2]
-     (if (< (count s2) (count s1))
-       (recur s2 s1)
+     (cond
+      (< (count s2) (count s1)) (recur s2 s1)
+      (and (instance? clojure.lang.PersistentHashSet s1)
+           (instance? clojure.lang.PersistentHashSet s2))
+      (clojure.lang.PersistentHashSet/intersection s1 s2)
+      :else
        (reduce (fn [result item]
                    (if (contains? s2 item)
 		     result
@@ -51,12 +60,17 @@
   {:added "1.0"}
   ([s1] s1)
   ([s1 s2] 
-     (if (< (count s1) (count s2))
+     (cond
+      (and (instance? clojure.lang.PersistentHashSet s1)
+           (instance? clojure.lang.PersistentHashSet s2))
+      (clojure.lang.PersistentHashSet/difference s1 s2)
+      (< (count s1) (count s2))
        (reduce (fn [result item] 
                    (if (contains? s2 item) 
                      (disj result item) 
                      result))
                s1 s1)
+      :else
        (reduce disj s1 s2)))
   ([s1 s2 & sets] 
      (reduce difference s1 (conj sets s2))))
@@ -13,10 +13,15 @@
 package clojure.lang;
 
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 
 public abstract class ARef extends AReference implements IRef{
 protected volatile IFn validator = null;
 private volatile IPersistentMap watches = PersistentHashMap.EMPTY;
+private volatile Executor watchExecutor = null;
+//key -> AsyncWatch for each watch when there is a watchExecutor, else null
+private volatile IPersistentMap asyncWatches = null;
 
 public ARef(){
 	super();
@@ -61,15 +66,70 @@ public IPersistentMap getWatches(){
 
 synchronized public IRef addWatch(Object key, IFn callback){
 	watches = watches.assoc(key, callback);
+	if(watchExecutor != null)
+		{
+		retire(key);
+		asyncWatches = asyncWatches.assoc(key, new AsyncWatch(this, key, callback, watchExecutor));
+		}
 	return this;
 }
 
 synchronized public IRef removeWatch(Object key){
 	watches = watches.without(key);
+	if(watchExecutor != null)
+		{
+		retire(key);
+		asyncWatches = asyncWatches.without(key);
+		}
 	return this;
 }
 
+//drops any call still pending for the watch replaced or removed at key
+private void retire(Object key){
+	AsyncWatch aw = (AsyncWatch) asyncWatches.valAt(key);
+	if(aw != null)
+		aw.removed = true;
+}
+
+public Executor getWatchExecutor(){
+	return watchExecutor;
+}
+
+/**
+ * Sets the executor on which watches are called, or null (the default) to call
+ * them synchronously on the thread making the change. Calls pending when the
+ * executor changes are made on the old one, before any on the new.
+ */
+synchronized public void setWatchExecutor(Executor executor){
+	IPersistentMap aws = null;
+	if(executor != null && asyncWatches != null)
+		{
+		//the same AsyncWatches move over, so each still has one run at a time
+		aws = asyncWatches;
+		for(ISeq s = aws.seq(); s != null; s = s.next())
+			((AsyncWatch) ((Map.Entry) s.first()).getValue()).executor = executor;
+		}
+	else if(executor != null)
+		{
+		aws = PersistentHashMap.EMPTY;
+		for(ISeq s = watches.seq(); s != null; s = s.next())
+			{
+			Map.Entry e = (Map.Entry) s.first();
+			aws = aws.assoc(e.getKey(), new AsyncWatch(this, e.getKey(), (IFn) e.getValue(), executor));
+			}
+		}
+	watchExecutor = executor;
+	asyncWatches = aws;
+}
+
 public void notifyWatches(Object oldval, Object newval){
+	IPersistentMap aws = asyncWatches;
+	if(aws != null)
+		{
+		for(ISeq s = aws.seq(); s != null; s = s.next())
+			((AsyncWatch) ((Map.Entry) s.first()).getValue()).enqueue(oldval, newval);
+		return;
+		}
 	IPersistentMap ws = watches;
 	if(ws.count() > 0)
 		{
@@ -82,4 +142,97 @@ public void notifyWatches(Object oldval, Object newval){
 			}
 		}
 }
+
+/**
+ * A watch called on an executor. Changes made while a call is pending are
+ * coalesced into it, keeping the first old state and the latest new one, and
+ * one task runs the calls one after another until none is pending, so a watch
+ * is never called concurrently with itself and sees the states in order. A
+ * new executor is only used by the next task, once this one is done, and a
+ * watch removed from its ref is no longer called.
+ */
+static final class AsyncWatch implements Runnable{
+	static final Object RUNNING = new Object();
+
+	final ARef ref;
+	final Object key;
+	final IFn fn;
+	volatile Executor executor;
+	volatile boolean removed = false;
+	//null when idle, RUNNING while a call is made with nothing pending, else the pending Change
+	final AtomicReference<Object> state = new AtomicReference<Object>();
+
+	AsyncWatch(ARef ref, Object key, IFn fn, Executor executor){
+		this.ref = ref;
+		this.key = key;
+		this.fn = fn;
+		this.executor = executor;
+	}
+
+	void enqueue(Object oldval, Object newval){
+		for(;;)
+			{
+			Object cur = state.get();
+			if(cur instanceof Change)
+				{
+				if(state.compareAndSet(cur, new Change(((Change) cur).oldval, newval)))
+					return;
+				}
+			else if(state.compareAndSet(cur, new Change(oldval, newval)))
+				{
+				if(cur == null)
+					{
+					try
+						{
+						executor.execute(this);
+						}
+					catch(RuntimeException e)
+						{
+						state.set(null);
+						throw e;
+						}
+					}
+				return;
+				}
+			}
+	}
+
+	public void run(){
+		try
+			{
+			for(;;)
+				{
+				Object cur = state.get();
+				if(cur == RUNNING)
+					{
+					if(state.compareAndSet(RUNNING, null))
+						return;
+					}
+				else if(state.compareAndSet(cur, RUNNING))
+					{
+					Change c = (Change) cur;
+					if(!removed)
+						fn.invoke(key, ref, c.oldval, c.newval);
+					}
+				}
+			}
+		catch(Throwable e)
+			{
+			//end this run so later changes are still delivered, by a new one if any are pending
+			if(!state.compareAndSet(RUNNING, null))
+				executor.execute(this);
+			throw Util.sneakyThrow(e);
+			}
+	}
+}
+
+static final class Change{
+	final Object oldval;
+	final Object newval;
+
+	Change(Object oldval, Object newval){
+		this.oldval = oldval;
+		this.newval = newval;
+	}
+}
 }
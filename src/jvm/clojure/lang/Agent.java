@@ -12,6 +12,7 @@
 
 package clojure.lang;
 
+import java.lang.reflect.InvocationTargetException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -50,8 +51,7 @@ volatile public static ExecutorService pooledExecutor =
 	Executors.newFixedThreadPool(2 + Runtime.getRuntime().availableProcessors(), 
 		createThreadFactory("clojure-agent-send-pool-%d", sendThreadPoolCounter));
 
-volatile public static ExecutorService soloExecutor = Executors.newCachedThreadPool(
-	createThreadFactory("clojure-agent-send-off-pool-%d", sendOffThreadPoolCounter));
+volatile public static ExecutorService soloExecutor = createSoloExecutor();
 
 final static ThreadLocal<IPersistentVector> nested = new ThreadLocal<IPersistentVector>();
 
@@ -65,6 +65,59 @@ private static ThreadFactory createThreadFactory(final String format, final Atom
 	};
 }
 
+private static ExecutorService createSoloExecutor(){
+	if(Boolean.getBoolean("clojure.agent.virtual-threads") && virtualThreadsSupported())
+		return virtualThreadExecutor("clojure-agent-send-off-virtual-");
+	return Executors.newCachedThreadPool(
+		createThreadFactory("clojure-agent-send-off-pool-%d", sendOffThreadPoolCounter));
+}
+
+/**
+ * True if this JVM can create virtual threads (Java 21+)
+ */
+public static boolean virtualThreadsSupported(){
+	try
+		{
+		//preview-only JVMs have the method but throw when it is called
+		Thread.class.getMethod("ofVirtual").invoke(null);
+		return true;
+		}
+	catch(Exception e)
+		{
+		return false;
+		}
+}
+
+/**
+ * Returns an ExecutorService that runs each task on a new virtual thread,
+ * named prefix followed by a counter. Looked up reflectively so this class
+ * still loads on JVMs without virtual threads, where it throws
+ * UnsupportedOperationException.
+ */
+public static ExecutorService virtualThreadExecutor(String prefix){
+	try
+		{
+		Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+		Class builderClass = Class.forName("java.lang.Thread$Builder");
+		builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+		ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+				.invoke(null, factory);
+		}
+	catch(NoSuchMethodException e)
+		{
+		throw new UnsupportedOperationException("Virtual threads are not supported by this JVM");
+		}
+	catch(InvocationTargetException e)
+		{
+		throw Util.sneakyThrow(e.getCause());
+		}
+	catch(Exception e)
+		{
+		throw Util.sneakyThrow(e);
+		}
+}
+
 public static void shutdown(){
 	soloExecutor.shutdown();
 	pooledExecutor.shutdown();
@@ -263,6 +316,8 @@ void enqueue(Action action){
 		prior = aq.get();
 		queued = aq.compareAndSet(prior, new ActionQueue((IPersistentStack)prior.q.cons(action), prior.error));
 		}
+	if(RuntimeEvents.ENABLED)
+		RuntimeEvents.agentActionQueued(prior.q.count() + 1);
 
 	if(prior.q.count() == 0 && prior.error == null)
 		action.execute();
@@ -0,0 +1,283 @@
+/**
+ *   Copyright (c) Rich Hickey. All rights reserved.
+ *   The use and distribution terms for this software are covered by the
+ *   Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ *   which can be found in the file epl-v10.html at the root of this distribution.
+ *   By using this software in any fashion, you are agreeing to be bound by
+ * 	 the terms of this license.
+ *   You must not remove this notice, or any other, from this software.
+ **/
+
+package clojure.lang;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * On-disk cache of the classes compiled from source files loaded by RT.load.
+ *
+ * Enabled by setting the system property clojure.compile.cache to a directory.
+ * Each source file is AOT compiled on first load into a subdirectory named by a
+ * hash of its path, content, the Clojure version and the reader and compiler
+ * vars that change the code emitted (*compiler-options*, *unchecked-math*,
+ * *assert*, *data-readers* and the like), and later loads of identical source
+ * read the classes back instead of compiling. Files are loaded without the
+ * cache while *default-data-reader-fn* or *reader-resolver* is bound, or
+ * *data-readers* maps a tag to anything but a var. As with AOT, changes to macros defined in other files
+ * are not seen by cached callers; clear the directory after such changes.
+ * Files loaded while bootstrapping clojure.core are never cached.
+ */
+public class ClassCache{
+
+static volatile File directory = initDirectory();
+
+//set once RT has loaded clojure.core, which is not itself cached
+static volatile boolean ready = false;
+
+//true while compiling into the cache, so nested loads are cached under their own keys
+static final Var CACHING = Var.create(false).setDynamic();
+
+static File initDirectory(){
+	String dir = System.getProperty("clojure.compile.cache");
+	return dir == null || dir.isEmpty() ? null : new File(dir);
+}
+
+static public boolean isEnabled(){
+	return ready && directory != null;
+}
+
+static public File getDirectory(){
+	return directory;
+}
+
+/**
+ * Sets the cache directory, or turns the cache off if dir is null.
+ */
+static public void setDirectory(File dir){
+	directory = dir;
+}
+
+static boolean isCaching(){
+	return RT.booleanCast(CACHING.deref());
+}
+
+/**
+ * Loads scriptfile from url, reusing classes cached for identical source
+ * or compiling them into the cache.
+ */
+static public void load(String scriptfile, URL url) throws IOException, ClassNotFoundException{
+	File dir = directory;
+	byte[] src = readAll(url);
+	String key = key(scriptfile, src);
+	if(key == null)
+		{
+		Compiler.load(new StringReader(new String(src, RT.UTF8)), scriptfile,
+		              scriptfile.substring(1 + scriptfile.lastIndexOf('/')));
+		return;
+		}
+	File entry = new File(dir, key);
+	String scriptbase = scriptfile.substring(0, scriptfile.lastIndexOf('.'));
+	String initName = scriptbase.replace('/', '.') + RT.LOADER_SUFFIX;
+	if(!new File(entry, scriptbase + RT.LOADER_SUFFIX + ".class").exists())
+		compileInto(entry, scriptfile, src);
+	else
+		{
+		Loader loader = new Loader(entry, RT.baseLoader());
+		//define every class up front, so other files' code can find them by name
+		loader.defineAll(entry, "");
+		Var.pushThreadBindings(
+				RT.mapUniqueKeys(RT.CURRENT_NS, RT.CURRENT_NS.deref(),
+				                 RT.WARN_ON_REFLECTION, RT.WARN_ON_REFLECTION.deref(),
+				                 RT.UNCHECKED_MATH, RT.UNCHECKED_MATH.deref(),
+				                 Compiler.LOADER, loader));
+		try
+			{
+			Class.forName(initName, true, loader);
+			}
+		finally
+			{
+			//visible to the loader class's own initializer only, so a reload finds the cache again
+			DynamicClassLoader.classCache.remove(initName);
+			Var.popThreadBindings();
+			}
+		}
+}
+
+//compiles (and so loads) into a scratch directory, then moves it into place
+static void compileInto(File entry, String scriptfile, byte[] src) throws IOException{
+	File parent = entry.getParentFile();
+	parent.mkdirs();
+	File tmp = Files.createTempDirectory(parent.toPath(), entry.getName() + ".tmp").toFile();
+	Var.pushThreadBindings(
+			RT.mapUniqueKeys(Compiler.COMPILE_PATH, tmp.getPath(),
+			                 Compiler.COMPILE_FILES, RT.T,
+			                 CACHING, RT.T));
+	try
+		{
+		Compiler.compile(new StringReader(new String(src, RT.UTF8)), scriptfile,
+		                 scriptfile.substring(1 + scriptfile.lastIndexOf("/")));
+		}
+	catch(Throwable e)
+		{
+		delete(tmp);
+		throw Util.sneakyThrow(e);
+		}
+	finally
+		{
+		Var.popThreadBindings();
+		}
+	try
+		{
+		try
+			{
+			Files.move(tmp.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			}
+		catch(AtomicMoveNotSupportedException e)
+			{
+			Files.move(tmp.toPath(), entry.toPath());
+			}
+		}
+	catch(IOException e)
+		{
+		//another loader got there first, its classes are equivalent
+		delete(tmp);
+		}
+}
+
+//reader fns print by identity, so would key entries no other process finds,
+//where vars print by name
+static boolean keyable(){
+	if(RT.DEFAULT_DATA_READER_FN.deref() != null || RT.READER_RESOLVER.deref() != null)
+		return false;
+	for(ISeq s = RT.seq(RT.vals(RT.DATA_READERS.deref())); s != null; s = s.next())
+		if(!(s.first() instanceof Var))
+			return false;
+	return true;
+}
+
+//null while a reader fn other than a var is bound, the file then being loaded
+//without the cache
+static String key(String scriptfile, byte[] src){
+	if(!keyable())
+		return null;
+	try
+		{
+		MessageDigest md = MessageDigest.getInstance("SHA-256");
+		md.update(scriptfile.getBytes(RT.UTF8));
+		md.update((byte) 0);
+		md.update(src);
+		md.update((byte) 0);
+		Var version = RT.var("clojure.core", "*clojure-version*");
+		String env = RT.printString(RT.vector(Compiler.COMPILER_OPTIONS.deref(),
+		                                      RT.UNCHECKED_MATH.deref(),
+		                                      RT.ASSERT.deref(),
+		                                      RT.ALLOW_UNRESOLVED_VARS.deref(),
+		                                      RT.READEVAL.deref(),
+		                                      RT.SUPPRESS_READ.deref(),
+		                                      RT.DATA_READERS.deref(),
+		                                      version.isBound() ? version.deref() : null));
+		md.update(env.getBytes(RT.UTF8));
+		byte[] digest = md.digest();
+		StringBuilder sb = new StringBuilder(digest.length * 2);
+		for(byte b : digest)
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		return sb.toString();
+		}
+	catch(NoSuchAlgorithmException e)
+		{
+		throw Util.sneakyThrow(e);
+		}
+}
+
+static byte[] readAll(URL url) throws IOException{
+	InputStream ins = url.openStream();
+	try
+		{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[8192];
+		for(int n; (n = ins.read(buf)) > 0;)
+			out.write(buf, 0, n);
+		return out.toByteArray();
+		}
+	finally
+		{
+		ins.close();
+		}
+}
+
+static void delete(File f){
+	File[] children = f.listFiles();
+	if(children != null)
+		for(File c : children)
+			delete(c);
+	f.delete();
+}
+
+/**
+ * Defines classes found in a cache entry ahead of its parent, so a reload
+ * runs the cached loader class again rather than finding the previous one.
+ * Classes are registered in the shared DynamicClassLoader cache just as
+ * freshly compiled ones are.
+ */
+static class Loader extends DynamicClassLoader{
+	final File dir;
+
+	Loader(File dir, ClassLoader parent){
+		super(parent);
+		this.dir = dir;
+	}
+
+	void defineAll(File d, String pkg) throws ClassNotFoundException{
+		File[] files = d.listFiles();
+		if(files == null)
+			return;
+		for(File f : files)
+			{
+			String name = f.getName();
+			if(f.isDirectory())
+				defineAll(f, pkg + name + ".");
+			else if(name.endsWith(".class"))
+				{
+				String cname = pkg + name.substring(0, name.length() - ".class".length());
+				if(!cname.endsWith(RT.LOADER_SUFFIX))
+					loadClass(cname, false);
+				}
+			}
+	}
+
+	protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException{
+		Class c = findLoadedClass(name);
+		if(c == null)
+			{
+			File f = new File(dir, name.replace('.', '/') + ".class");
+			if(f.exists())
+				{
+				byte[] bytes;
+				try
+					{
+					bytes = Files.readAllBytes(f.toPath());
+					}
+				catch(IOException e)
+					{
+					throw new ClassNotFoundException(name, e);
+					}
+				c = defineClass(name, bytes, null);
+				}
+			else
+				return super.loadClass(name, resolve);
+			}
+		if(resolve)
+			resolveClass(c);
+		return c;
+	}
+}
+}
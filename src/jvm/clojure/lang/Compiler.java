@@ -257,6 +257,8 @@ static final public Var ADD_ANNOTATIONS = Var.intern(Namespace.findOrCreate(Symb
 static final public Keyword disableLocalsClearingKey = Keyword.intern("disable-locals-clearing");
 static final public Keyword directLinkingKey = Keyword.intern("direct-linking");
 static final public Keyword elideMetaKey = Keyword.intern("elide-meta");
+static final public Keyword indyProtocolsKey = Keyword.intern("indy-protocols");
+static final public Keyword indyVarsKey = Keyword.intern("indy-vars");
 
 static final public Var COMPILER_OPTIONS;
 
@@ -3626,10 +3628,18 @@ static class InvokeExpr implements Expr{
 	public boolean isProtocol = false;
 	public boolean isDirect = false;
 	public int siteIndex = -1;
+	public boolean isIndy = false;
+	public boolean isIndyVar = false;
 	public Class protocolOn;
 	public java.lang.reflect.Method onMethod;
 	static Keyword onKey = Keyword.intern("on");
 	static Keyword methodMapKey = Keyword.intern("method-map");
+	final static Handle protocolBootstrap = new Handle(H_INVOKESTATIC, "clojure/lang/ProtocolCallSite", "bootstrap",
+			"(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;" +
+			"Ljava/lang/String;Ljava/lang/String;I)Ljava/lang/invoke/CallSite;", false);
+	final static Handle varBootstrap = new Handle(H_INVOKESTATIC, "clojure/lang/VarCallSite", "bootstrap",
+			"(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;" +
+			"Ljava/lang/String;Ljava/lang/String;)Ljava/lang/invoke/CallSite;", false);
     Class jc;
 
     static Object sigTag(int argcount, Var v){
@@ -3661,6 +3671,8 @@ static class InvokeExpr implements Expr{
 				{
 				this.isProtocol = true;
 				this.siteIndex = registerProtocolCallsite(((VarExpr)fexpr).var);
+				this.isIndy = RT.booleanCast(getCompilerOption(indyProtocolsKey))
+				              && args.count() <= ProtocolCallSite.MAX_ARITY;
 				Object pon = RT.get(pvar.get(), onKey);
 				this.protocolOn = HostExpr.maybeClass(pon,false);
 				if(this.protocolOn != null)
@@ -3682,6 +3694,8 @@ static class InvokeExpr implements Expr{
 					this.onMethod = (java.lang.reflect.Method) methods.get(0);
 					}
 				}
+			else if(!fvar.isDynamic() && RT.booleanCast(getCompilerOption(indyVarsKey)))
+				this.isIndyVar = true;
 			}
 		
 		if (tag != null) {
@@ -3723,7 +3737,13 @@ static class InvokeExpr implements Expr{
 
 		else
 			{
-			fexpr.emit(C.EXPRESSION, objx, gen);
+			if(isIndyVar)
+				{
+				Var v = ((VarExpr) fexpr).var;
+				gen.invokeDynamic("root", "()Ljava/lang/Object;", varBootstrap, v.ns.name.name, v.sym.name);
+				}
+			else
+				fexpr.emit(C.EXPRESSION, objx, gen);
 			gen.visitLineNumber(line, gen.mark());
 			gen.checkCast(IFN_TYPE);
 			emitArgsAndCall(0, context,objx,gen);
@@ -3741,6 +3761,13 @@ static class InvokeExpr implements Expr{
 
 		Expr e = (Expr) args.nth(0);
 		e.emit(C.EXPRESSION, objx, gen);
+		if(isIndy)
+			{
+			//the site sends instances of the protocol's interface to the protocol fn, sparing other classes
+			//the instanceof check, which is slow when it fails
+			emitIndyProto(v, objx, gen);
+			return;
+			}
 		gen.dup(); //target, target
 		gen.invokeStatic(UTIL_TYPE,Method.getMethod("Class classOf(Object)")); //target,class
 		gen.getStatic(objx.objtype, objx.cachedClassName(siteIndex),CLASS_TYPE); //target,class,cached-class
@@ -3780,6 +3807,32 @@ static class InvokeExpr implements Expr{
 		gen.mark(endLabel);
 	}
 
+	//target on the stack, calls through a ProtocolCallSite for v with all the args in an array
+	void emitIndyProto(Var v, ObjExpr objx, GeneratorAdapter gen){
+		gen.push(args.count());
+		gen.newArray(OBJECT_TYPE); //target,arr
+		gen.dupX1(); //arr,target,arr
+		gen.swap(); //arr,arr,target
+		gen.push(0);
+		gen.swap(); //arr,arr,0,target
+		gen.arrayStore(OBJECT_TYPE); //arr
+		for(int i = 1; i < args.count(); i++)
+			{
+			gen.dup();
+			gen.push(i);
+			((Expr) args.nth(i)).emit(C.EXPRESSION, objx, gen);
+			gen.arrayStore(OBJECT_TYPE);
+			}
+		gen.visitLineNumber(line, gen.mark());
+		if(tailPosition && !objx.canBeDirect)
+			{
+			ObjMethod method = (ObjMethod) METHOD.deref();
+			method.emitClearThis(gen);
+			}
+		gen.invokeDynamic("invoke", "([Ljava/lang/Object;)Ljava/lang/Object;",
+		                  protocolBootstrap, v.ns.name.name, v.sym.name, args.count());
+	}
+
 	void emitArgsAndCall(int firstArgToEmit, C context, ObjExpr objx, GeneratorAdapter gen){
 		for(int i = firstArgToEmit; i < Math.min(MAX_POSITIONAL_ARITY, args.count()); i++)
 			{
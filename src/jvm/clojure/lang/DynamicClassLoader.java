@@ -44,6 +44,8 @@ public DynamicClassLoader(ClassLoader parent){
 public Class defineClass(String name, byte[] bytes, Object srcForm){
 	Util.clearCache(rq, classCache);
 	Class c = defineClass(name, bytes, 0, bytes.length);
+	if(RuntimeEvents.ENABLED)
+		RuntimeEvents.classDefined(bytes.length);
     classCache.put(name, new SoftReference(c,rq));
     return c;
 }
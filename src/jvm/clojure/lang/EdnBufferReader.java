@@ -0,0 +1,921 @@
+/**
+ *   Copyright (c) Rich Hickey. All rights reserved.
+ *   The use and distribution terms for this software are covered by the
+ *   Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ *   which can be found in the file epl-v10.html at the root of this distribution.
+ *   By using this software in any fashion, you are agreeing to be bound by
+ * 	 the terms of this license.
+ *   You must not remove this notice, or any other, from this software.
+ **/
+
+package clojure.lang;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads edn directly from a CharBuffer, a ByteBuffer of UTF-8 (e.g. a mapped
+ * file) or a channel of UTF-8, returning the same values as EdnReader.
+ *
+ * Characters are taken from the buffer without going through a Reader, tokens
+ * are collected in one reused char array, plain longs, doubles and decimals are
+ * parsed without the regex matchers, and symbols and keywords are looked up in a
+ * small per-reader cache before a String is made. Other tokens fall back to
+ * EdnReader's matchers. Unlike EdnReader over a LineNumberingPushbackReader, no
+ * line metadata is attached to forms; errors are wrapped in a ReaderException
+ * carrying the line and column.
+ *
+ * Reading advances the buffer's position to just past the form read. A reader
+ * is not thread safe. Reducing or iterating one reads its remaining top-level
+ * forms.
+ */
+public class EdnBufferReader implements IReduceInit, Iterable{
+
+static final Object NOOP = new Object();
+static final Object END = new Object();
+static final int CACHE_SIZE = 512;
+static final int CHANNEL_BUFFER_SIZE = 1 << 16;
+
+static final boolean[] WHITESPACE = new boolean[128];
+static final boolean[] MACRO = new boolean[128];
+
+static
+	{
+	for(int ch = 0; ch < 128; ch++)
+		WHITESPACE[ch] = EdnReader.isWhitespace(ch);
+	for(char ch : "\";^()[]{}\\#".toCharArray())
+		MACRO[ch] = true;
+	}
+
+final CharBuffer chars;
+final ByteBuffer bytes;
+final ReadableByteChannel channel;
+final IPersistentMap opts;
+final boolean eofIsError;
+final Object eofValue;
+
+//position of the char last read, for unread
+int mark;
+//low half of a surrogate pair decoded from UTF-8, or -1
+int pendingLow = -1;
+//bytes dropped from the front of a channel's buffer so far
+long dropped;
+int line = 1;
+long lineStart;
+
+char[] tok = new char[64];
+int tokLen;
+
+String[] cacheKeys;
+Object[] cacheVals;
+
+public EdnBufferReader(CharBuffer chars, IPersistentMap opts){
+	this(chars, null, null, opts);
+}
+
+public EdnBufferReader(ByteBuffer bytes, IPersistentMap opts){
+	this(null, bytes, null, opts);
+}
+
+public EdnBufferReader(ReadableByteChannel channel, IPersistentMap opts){
+	this(null, (ByteBuffer) ((Buffer) ByteBuffer.allocateDirect(CHANNEL_BUFFER_SIZE)).limit(0), channel, opts);
+}
+
+EdnBufferReader(CharBuffer chars, ByteBuffer bytes, ReadableByteChannel channel, IPersistentMap opts){
+	this.chars = chars;
+	this.bytes = bytes;
+	this.channel = channel;
+	this.opts = opts == null ? PersistentArrayMap.EMPTY : opts;
+	this.eofIsError = !this.opts.containsKey(EdnReader.EOF);
+	this.eofValue = this.opts.valAt(EdnReader.EOF);
+	this.lineStart = offset();
+}
+
+/**
+ * Reads the next object from buf, a CharBuffer or a ByteBuffer of UTF-8,
+ * leaving its position just past the object.
+ */
+static public Object read(Buffer buf, IPersistentMap opts){
+	if(buf instanceof CharBuffer)
+		return new EdnBufferReader((CharBuffer) buf, opts).read();
+	return new EdnBufferReader((ByteBuffer) buf, opts).read();
+}
+
+/**
+ * Maps the file read-only, returning a MappedByteBuffer. Fails for files of
+ * 2GB or more, which can instead be read through their FileChannel.
+ */
+static public ByteBuffer map(File f) throws IOException{
+	RandomAccessFile raf = new RandomAccessFile(f, "r");
+	try
+		{
+		return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		}
+	finally
+		{
+		raf.close();
+		}
+}
+
+/**
+ * Returns a reducible and iterable of the top-level objects in file f. Each
+ * reduce or iterator opens the file afresh, mapping it if it is under 2GB and
+ * reading it through its channel otherwise. A reduce closes the file when done,
+ * an iterator when it reaches the end.
+ */
+static public Object fileForms(File f, IPersistentMap opts){
+	return new FileForms(f, opts);
+}
+
+/**
+ * Reads the next object, returning the :eof value of opts at the end of the
+ * input, or throwing if there is none.
+ */
+public Object read(){
+	try
+		{
+		Object o = read(eofIsError, eofValue);
+		if(RT.suppressRead())
+			return null;
+		return o;
+		}
+	catch(Exception e)
+		{
+		throw new EdnReader.ReaderException(line, (int) (offset() - lineStart), e);
+		}
+}
+
+public Object reduce(IFn f, Object start){
+	Object ret = start;
+	for(Object o = nextForm(); o != END; o = nextForm())
+		{
+		ret = f.invoke(ret, o);
+		if(RT.isReduced(ret))
+			return ((IDeref) ret).deref();
+		}
+	return ret;
+}
+
+public Iterator iterator(){
+	return new Iterator(){
+		Object next = NOOP;
+
+		public boolean hasNext(){
+			if(next == NOOP)
+				next = nextForm();
+			return next != END;
+		}
+
+		public Object next(){
+			if(!hasNext())
+				throw new NoSuchElementException();
+			Object o = next;
+			next = NOOP;
+			return o;
+		}
+
+		public void remove(){
+			throw new UnsupportedOperationException();
+		}
+	};
+}
+
+Object nextForm(){
+	try
+		{
+		return read(false, END);
+		}
+	catch(Exception e)
+		{
+		throw new EdnReader.ReaderException(line, (int) (offset() - lineStart), e);
+		}
+}
+
+//input
+
+long offset(){
+	return chars != null ? chars.position() : dropped + bytes.position();
+}
+
+int read1(){
+	int ch;
+	if(pendingLow >= 0)
+		{
+		ch = pendingLow;
+		pendingLow = -1;
+		return ch;
+		}
+	if(chars != null)
+		{
+		mark = chars.position();
+		if(!chars.hasRemaining())
+			return -1;
+		ch = chars.get();
+		}
+	else
+		{
+		if(bytes.remaining() < 4 && channel != null)
+			fill();
+		mark = bytes.position();
+		if(!bytes.hasRemaining())
+			return -1;
+		ch = bytes.get();
+		if(ch < 0)
+			ch = decode(ch & 0xff);
+		}
+	if(ch == '\n')
+		{
+		line++;
+		lineStart = offset();
+		}
+	return ch;
+}
+
+void unread(int ch){
+	if(ch == -1)
+		return;
+	pendingLow = -1;
+	if(chars != null)
+		((Buffer) chars).position(mark);
+	else
+		((Buffer) bytes).position(mark);
+	if(ch == '\n')
+		line--;
+}
+
+//moves the unread bytes to the front of the buffer and tops it up from the channel
+void fill(){
+	dropped += bytes.position();
+	bytes.compact();
+	try
+		{
+		while(bytes.position() < 4 && channel.read(bytes) >= 0)
+			;
+		}
+	catch(IOException e)
+		{
+		throw Util.sneakyThrow(e);
+		}
+	finally
+		{
+		((Buffer) bytes).flip();
+		}
+}
+
+//decodes the rest of a UTF-8 sequence, substituting U+FFFD for malformed input
+int decode(int lead){
+	int n, cp;
+	if(lead >= 0xC2 && lead <= 0xDF)
+		{
+		n = 1;
+		cp = lead & 0x1F;
+		}
+	else if(lead >= 0xE0 && lead <= 0xEF)
+		{
+		n = 2;
+		cp = lead & 0x0F;
+		}
+	else if(lead >= 0xF0 && lead <= 0xF4)
+		{
+		n = 3;
+		cp = lead & 0x07;
+		}
+	else
+		return 0xFFFD;
+	for(int i = 0; i < n; i++)
+		{
+		if(!bytes.hasRemaining())
+			return 0xFFFD;
+		int b = bytes.get(bytes.position());
+		if((b & 0xC0) != 0x80)
+			return 0xFFFD;
+		bytes.get();
+		cp = (cp << 6) | (b & 0x3F);
+		}
+	if(n == 2 && (cp < 0x800 || (cp >= 0xD800 && cp <= 0xDFFF))
+	   || n == 3 && (cp < 0x10000 || cp > 0x10FFFF))
+		return 0xFFFD;
+	if(cp >= 0x10000)
+		{
+		pendingLow = Character.lowSurrogate(cp);
+		return Character.highSurrogate(cp);
+		}
+	return cp;
+}
+
+static boolean isWhitespace(int ch){
+	return ch < 128 ? ch >= 0 && WHITESPACE[ch] : Character.isWhitespace(ch);
+}
+
+static boolean isMacro(int ch){
+	return ch >= 0 && ch < 128 && MACRO[ch];
+}
+
+static boolean isTerminatingMacro(int ch){
+	return ch != '#' && isMacro(ch);
+}
+
+static boolean isDigit(int ch){
+	return ch >= '0' && ch <= '9' || ch >= 128 && Character.isDigit(ch);
+}
+
+void append(int ch){
+	if(tokLen == tok.length)
+		{
+		char[] t = new char[tok.length * 2];
+		System.arraycopy(tok, 0, t, 0, tokLen);
+		tok = t;
+		}
+	tok[tokLen++] = (char) ch;
+}
+
+String tokString(){
+	return new String(tok, 0, tokLen);
+}
+
+//reading
+
+Object read(boolean eofIsError, Object eofValue){
+	for(; ;)
+		{
+		int ch = read1();
+
+		while(isWhitespace(ch))
+			ch = read1();
+
+		if(ch == -1)
+			{
+			if(eofIsError)
+				throw Util.runtimeException("EOF while reading");
+			return eofValue;
+			}
+
+		Object o = readDispatch(ch);
+		if(o != NOOP)
+			return o;
+		}
+}
+
+Object readForm(){
+	return read(true, null);
+}
+
+Object readDispatch(int ch){
+	if(isDigit(ch))
+		return readNumber(ch);
+	switch(ch)
+		{
+		case '"':
+			return readString();
+		case ';':
+			do
+				{
+				ch = read1();
+				} while(ch != -1 && ch != '\n' && ch != '\r');
+			return NOOP;
+		case '^':
+			return readMeta();
+		case '(':
+		{
+		ArrayList list = readDelimitedList(')');
+		if(list.isEmpty())
+			return PersistentList.EMPTY;
+		return PersistentList.create(list);
+		}
+		case '[':
+			return LazilyPersistentVector.create(readDelimitedList(']'));
+		case '{':
+		{
+		Object[] a = readDelimitedList('}').toArray();
+		if((a.length & 1) == 1)
+			throw Util.runtimeException("Map literal must contain an even number of forms");
+		return RT.map(a);
+		}
+		case ')':
+		case ']':
+		case '}':
+			throw Util.runtimeException("Unmatched delimiter: " + (char) ch);
+		case '\\':
+			return readCharacter();
+		case '#':
+			return readHash();
+		case '+':
+		case '-':
+		{
+		int ch2 = read1();
+		unread(ch2);
+		if(isDigit(ch2))
+			return readNumber(ch);
+		}
+		}
+	return readToken(ch);
+}
+
+ArrayList readDelimitedList(char delim){
+	final int firstline = line;
+	ArrayList a = new ArrayList();
+
+	for(; ;)
+		{
+		int ch = read1();
+
+		while(isWhitespace(ch))
+			ch = read1();
+
+		if(ch == -1)
+			throw Util.runtimeException("EOF while reading, starting at line " + firstline);
+
+		if(ch == delim)
+			break;
+
+		Object o = readDispatch(ch);
+		if(o != NOOP)
+			a.add(o);
+		}
+	return a;
+}
+
+void scanToken(int initch){
+	tokLen = 0;
+	append(initch);
+	for(; ;)
+		{
+		int ch = read1();
+		if(ch == -1 || isWhitespace(ch) || isTerminatingMacro(ch))
+			{
+			unread(ch);
+			return;
+			}
+		else if(EdnReader.nonConstituent(ch))
+			throw Util.runtimeException("Invalid constituent character: " + (char) ch);
+		append(ch);
+		}
+}
+
+Object readToken(int initch){
+	if(EdnReader.nonConstituent(initch))
+		throw Util.runtimeException("Invalid leading character: " + (char) initch);
+	scanToken(initch);
+
+	char[] t = tok;
+	int n = tokLen;
+	if(n == 3 && t[0] == 'n' && t[1] == 'i' && t[2] == 'l')
+		return null;
+	if(n == 4 && t[0] == 't' && t[1] == 'r' && t[2] == 'u' && t[3] == 'e')
+		return RT.T;
+	if(n == 5 && t[0] == 'f' && t[1] == 'a' && t[2] == 'l' && t[3] == 's' && t[4] == 'e')
+		return RT.F;
+
+	if(cacheKeys == null)
+		{
+		cacheKeys = new String[CACHE_SIZE];
+		cacheVals = new Object[CACHE_SIZE];
+		}
+	int h = 0;
+	for(int i = 0; i < n; i++)
+		h = 31 * h + t[i];
+	int idx = (h ^ (h >>> 16)) & (CACHE_SIZE - 1);
+	String k = cacheKeys[idx];
+	if(k != null && k.length() == n)
+		{
+		int i = 0;
+		while(i < n && k.charAt(i) == t[i])
+			i++;
+		if(i == n)
+			return cacheVals[idx];
+		}
+
+	String s = tokString();
+	Object ret = EdnReader.matchSymbol(s);
+	if(ret == null)
+		throw Util.runtimeException("Invalid token: " + s);
+	cacheKeys[idx] = s;
+	cacheVals[idx] = ret;
+	return ret;
+}
+
+Object readNumber(int initch){
+	tokLen = 0;
+	append(initch);
+	for(; ;)
+		{
+		int ch = read1();
+		if(ch == -1 || isWhitespace(ch) || isMacro(ch))
+			{
+			unread(ch);
+			break;
+			}
+		append(ch);
+		}
+
+	Object n = matchLong();
+	if(n == null)
+		n = matchFloat();
+	if(n == null)
+		{
+		String s = tokString();
+		n = EdnReader.matchNumber(s);
+		if(n == null)
+			throw new NumberFormatException("Invalid number: " + s);
+		}
+	return n;
+}
+
+//[-+]?(0|[1-9][0-9]{0,17}), which always fits in a long
+Object matchLong(){
+	char[] t = tok;
+	int i = t[0] == '-' || t[0] == '+' ? 1 : 0;
+	int digits = tokLen - i;
+	if(digits < 1 || digits > 18 || (t[i] == '0' && digits > 1))
+		return null;
+	long v = 0;
+	for(; i < tokLen; i++)
+		{
+		int d = t[i] - '0';
+		if(d < 0 || d > 9)
+			return null;
+		v = v * 10 + d;
+		}
+	return Numbers.num(t[0] == '-' ? -v : v);
+}
+
+//[-+]?[0-9]+(\.[0-9]*)?([eE][-+]?[0-9]+)?M? as EdnReader's floatPat, less the
+//integers it leaves to intPat
+Object matchFloat(){
+	char[] t = tok;
+	int n = tokLen;
+	boolean decimal = t[n - 1] == 'M';
+	if(decimal)
+		n--;
+	int i = t[0] == '-' || t[0] == '+' ? 1 : 0;
+	int start = i;
+	while(i < n && t[i] >= '0' && t[i] <= '9')
+		i++;
+	if(i == start)
+		return null;
+	int end = i;
+	if(i < n && t[i] == '.')
+		{
+		i++;
+		while(i < n && t[i] >= '0' && t[i] <= '9')
+			i++;
+		}
+	if(i < n && (t[i] == 'e' || t[i] == 'E'))
+		{
+		i++;
+		if(i < n && (t[i] == '-' || t[i] == '+'))
+			i++;
+		int expStart = i;
+		while(i < n && t[i] >= '0' && t[i] <= '9')
+			i++;
+		if(i == expStart)
+			return null;
+		}
+	if(i != n || !decimal && i == end)
+		return null;
+	if(decimal)
+		return new BigDecimal(t, 0, n);
+	return Double.parseDouble(tokString());
+}
+
+int readUnicodeChar(int initch, int base, int length, boolean exact){
+	int uc = Character.digit(initch, base);
+	if(uc == -1)
+		throw new IllegalArgumentException("Invalid digit: " + (char) initch);
+	int i = 1;
+	for(; i < length; ++i)
+		{
+		int ch = read1();
+		if(ch == -1 || isWhitespace(ch) || isMacro(ch))
+			{
+			unread(ch);
+			break;
+			}
+		int d = Character.digit(ch, base);
+		if(d == -1)
+			throw new IllegalArgumentException("Invalid digit: " + (char) ch);
+		uc = uc * base + d;
+		}
+	if(i != length && exact)
+		throw new IllegalArgumentException("Invalid character length: " + i + ", should be: " + length);
+	return uc;
+}
+
+Object readString(){
+	tokLen = 0;
+	for(int ch = read1(); ch != '"'; ch = read1())
+		{
+		if(ch == -1)
+			throw Util.runtimeException("EOF while reading string");
+		if(ch == '\\')	//escape
+			{
+			ch = read1();
+			if(ch == -1)
+				throw Util.runtimeException("EOF while reading string");
+			switch(ch)
+				{
+				case 't':
+					ch = '\t';
+					break;
+				case 'r':
+					ch = '\r';
+					break;
+				case 'n':
+					ch = '\n';
+					break;
+				case '\\':
+					break;
+				case '"':
+					break;
+				case 'b':
+					ch = '\b';
+					break;
+				case 'f':
+					ch = '\f';
+					break;
+				case 'u':
+				{
+				ch = read1();
+				if(Character.digit(ch, 16) == -1)
+					throw Util.runtimeException("Invalid unicode escape: \\u" + (char) ch);
+				ch = readUnicodeChar(ch, 16, 4, true);
+				break;
+				}
+				default:
+				{
+				if(Character.isDigit(ch))
+					{
+					ch = readUnicodeChar(ch, 8, 3, false);
+					if(ch > 0377)
+						throw Util.runtimeException("Octal escape sequence must be in range [0, 377].");
+					}
+				else
+					throw Util.runtimeException("Unsupported escape character: \\" + (char) ch);
+				}
+				}
+			}
+		append(ch);
+		}
+	return tokString();
+}
+
+Object readCharacter(){
+	int ch = read1();
+	if(ch == -1)
+		throw Util.runtimeException("EOF while reading character");
+	scanToken(ch);
+	if(tokLen == 1)
+		return Character.valueOf(tok[0]);
+	String token = tokString();
+	if(token.equals("newline"))
+		return '\n';
+	else if(token.equals("space"))
+		return ' ';
+	else if(token.equals("tab"))
+		return '\t';
+	else if(token.equals("backspace"))
+		return '\b';
+	else if(token.equals("formfeed"))
+		return '\f';
+	else if(token.equals("return"))
+		return '\r';
+	else if(token.startsWith("u"))
+		{
+		char c = (char) EdnReader.readUnicodeChar(token, 1, 4, 16);
+		if(c >= '\uD800' && c <= '\uDFFF') // surrogate code unit?
+			throw Util.runtimeException("Invalid character constant: \\u" + Integer.toString(c, 16));
+		return c;
+		}
+	else if(token.startsWith("o"))
+		{
+		int len = token.length() - 1;
+		if(len > 3)
+			throw Util.runtimeException("Invalid octal escape sequence length: " + len);
+		int uc = EdnReader.readUnicodeChar(token, 1, len, 8);
+		if(uc > 0377)
+			throw Util.runtimeException("Octal escape sequence must be in range [0, 377].");
+		return (char) uc;
+		}
+	throw Util.runtimeException("Unsupported character: \\" + token);
+}
+
+Object readMeta(){
+	Object meta = readForm();
+	if(meta instanceof Symbol || meta instanceof String)
+		meta = RT.map(RT.TAG_KEY, meta);
+	else if(meta instanceof Keyword)
+		meta = RT.map(meta, RT.T);
+	else if(!(meta instanceof IPersistentMap))
+		throw new IllegalArgumentException("Metadata must be Symbol,Keyword,String or Map");
+
+	Object o = readForm();
+	if(o instanceof IMeta)
+		{
+		if(o instanceof IReference)
+			{
+			((IReference) o).resetMeta((IPersistentMap) meta);
+			return o;
+			}
+		Object ometa = RT.meta(o);
+		for(ISeq s = RT.seq(meta); s != null; s = s.next())
+			{
+			IMapEntry kv = (IMapEntry) s.first();
+			ometa = RT.assoc(ometa, kv.getKey(), kv.getValue());
+			}
+		return ((IObj) o).withMeta((IPersistentMap) ometa);
+		}
+	else
+		throw new IllegalArgumentException("Metadata can only be applied to IMetas");
+}
+
+Object readHash(){
+	int ch = read1();
+	if(ch == -1)
+		throw Util.runtimeException("EOF while reading character");
+	switch(ch)
+		{
+		case '#':
+		{
+		Object o = readForm();
+		if(!(o instanceof Symbol))
+			throw Util.runtimeException("Invalid token: ##" + o);
+		if(!(EdnReader.SymbolicValueReader.specials.containsKey(o)))
+			throw Util.runtimeException("Unknown symbolic value: ##" + o);
+		return EdnReader.SymbolicValueReader.specials.valAt(o);
+		}
+		case '^':
+			return readMeta();
+		case '{':
+			return PersistentHashSet.createWithCheck(readDelimitedList('}'));
+		case '<':
+			throw Util.runtimeException("Unreadable form");
+		case '_':
+			readForm();
+			return NOOP;
+		case ':':
+			return readNamespaceMap();
+		}
+	if(Character.isLetter(ch))
+		{
+		unread(ch);
+		return readTagged();
+		}
+	throw Util.runtimeException(String.format("No dispatch macro for: %c", (char) ch));
+}
+
+Object readNamespaceMap(){
+	Object sym = readForm();
+	if(!(sym instanceof Symbol) || ((Symbol) sym).getNamespace() != null)
+		throw new RuntimeException("Namespaced map must specify a valid namespace: " + sym);
+	String ns = ((Symbol) sym).getName();
+
+	int nextChar = read1();
+	while(isWhitespace(nextChar))
+		nextChar = read1();
+	if('{' != nextChar)
+		throw new RuntimeException("Namespaced map must specify a map");
+	ArrayList kvs = readDelimitedList('}');
+	if((kvs.size() & 1) == 1)
+		throw Util.runtimeException("Namespaced map literal must contain an even number of forms");
+
+	Object[] a = new Object[kvs.size()];
+	for(int i = 0; i < a.length; i += 2)
+		{
+		Object key = kvs.get(i);
+		if(key instanceof Keyword)
+			{
+			Keyword kw = (Keyword) key;
+			if(kw.getNamespace() == null)
+				key = Keyword.intern(ns, kw.getName());
+			else if(kw.getNamespace().equals("_"))
+				key = Keyword.intern(null, kw.getName());
+			}
+		else if(key instanceof Symbol)
+			{
+			Symbol s = (Symbol) key;
+			if(s.getNamespace() == null)
+				key = Symbol.intern(ns, s.getName());
+			else if(s.getNamespace().equals("_"))
+				key = Symbol.intern(null, s.getName());
+			}
+		a[i] = key;
+		a[i + 1] = kvs.get(i + 1);
+		}
+	return RT.map(a);
+}
+
+Object readTagged(){
+	Object name = readForm();
+	if(!(name instanceof Symbol))
+		throw new RuntimeException("Reader tag must be a symbol");
+	Symbol tag = (Symbol) name;
+	Object o = readForm();
+
+	ILookup readers = (ILookup) RT.get(opts, EdnReader.TaggedReader.READERS);
+	IFn dataReader = (IFn) RT.get(readers, tag);
+	if(dataReader == null)
+		dataReader = (IFn) RT.get(RT.DEFAULT_DATA_READERS.deref(), tag);
+	if(dataReader == null)
+		{
+		IFn defaultReader = (IFn) RT.get(opts, EdnReader.TaggedReader.DEFAULT);
+		if(defaultReader != null)
+			return defaultReader.invoke(tag, o);
+		else
+			throw new RuntimeException("No reader function for tag " + tag.toString());
+		}
+	else
+		return dataReader.invoke(o);
+}
+
+static class FileForms implements IReduceInit, Iterable{
+	final File file;
+	final IPersistentMap opts;
+
+	FileForms(File file, IPersistentMap opts){
+		this.file = file;
+		this.opts = opts;
+	}
+
+	EdnBufferReader open(RandomAccessFile raf) throws IOException{
+		FileChannel fc = raf.getChannel();
+		if(fc.size() < Integer.MAX_VALUE)
+			return new EdnBufferReader(fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size()), opts);
+		return new EdnBufferReader(fc, opts);
+	}
+
+	public Object reduce(IFn f, Object start){
+		try
+			{
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try
+				{
+				return open(raf).reduce(f, start);
+				}
+			finally
+				{
+				raf.close();
+				}
+			}
+		catch(IOException e)
+			{
+			throw Util.sneakyThrow(e);
+			}
+	}
+
+	public Iterator iterator(){
+		try
+			{
+			final RandomAccessFile raf = new RandomAccessFile(file, "r");
+			final Iterator i;
+			try
+				{
+				i = open(raf).iterator();
+				}
+			catch(IOException e)
+				{
+				raf.close();
+				throw e;
+				}
+			return new Iterator(){
+				public boolean hasNext(){
+					try
+						{
+						if(i.hasNext())
+							return true;
+						raf.close();
+						return false;
+						}
+					catch(IOException e)
+						{
+						throw Util.sneakyThrow(e);
+						}
+				}
+
+				public Object next(){
+					if(!hasNext())
+						throw new NoSuchElementException();
+					return i.next();
+				}
+
+				public void remove(){
+					throw new UnsupportedOperationException();
+				}
+			};
+			}
+		catch(IOException e)
+			{
+			throw Util.sneakyThrow(e);
+			}
+	}
+}
+}
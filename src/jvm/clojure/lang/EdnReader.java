@@ -225,7 +225,7 @@ static private Object readNumber(PushbackReader r, char initch) {
 	return n;
 }
 
-static private int readUnicodeChar(String token, int offset, int length, int base) {
+static int readUnicodeChar(String token, int offset, int length, int base) {
 	if(token.length() != offset + length)
 		throw new IllegalArgumentException("Invalid unicode character: \\" + token);
 	int uc = 0;
@@ -262,7 +262,7 @@ static private int readUnicodeChar(PushbackReader r, int initch, int base, int l
 	return uc;
 }
 
-static private Object interpretToken(String s) {
+static Object interpretToken(String s) {
 	if(s.equals("nil"))
 		{
 		return null;
@@ -286,7 +286,7 @@ static private Object interpretToken(String s) {
 }
 
 
-private static Object matchSymbol(String s){
+static Object matchSymbol(String s){
 	Matcher m = symbolPat.matcher(s);
 	if(m.matches())
 		{
@@ -311,7 +311,7 @@ private static Object matchSymbol(String s){
 }
 
 
-private static Object matchNumber(String s){
+static Object matchNumber(String s){
 	Matcher m = intPat.matcher(s);
 	if(m.matches())
 		{
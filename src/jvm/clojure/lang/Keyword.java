@@ -41,7 +41,11 @@ public static Keyword intern(Symbol sym){
 		existingRef = table.putIfAbsent(sym, new WeakReference<Keyword>(k, rq));
 		}
 	if(existingRef == null)
+		{
+		if(RuntimeEvents.ENABLED)
+			RuntimeEvents.keywordInterned();
 		return k;
+		}
 	Keyword existingk = existingRef.get();
 	if(existingk != null)
 		return existingk;
@@ -50,6 +54,10 @@ public static Keyword intern(Symbol sym){
 	return intern(sym);
 }
 
+static int tableSize(){
+	return table.size();
+}
+
 public static Keyword intern(String ns, String name){
 	return intern(Symbol.intern(ns, name));
 }
@@ -114,6 +114,9 @@ public int hashCode(){
 }
 
 public int hasheq(){
+	ISeq s = seq();
+	if(s instanceof IChunkedSeq)
+		return Murmur3.hashOrderedChunks((IChunkedSeq) s);
 	return Murmur3.hashOrdered(this);
 }
 
@@ -18,6 +18,9 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
 
 @SuppressWarnings({"SynchronizeOnNonFinalField"})
 public class LockingTransaction{
@@ -27,6 +30,18 @@ public static final int LOCK_WAIT_MSECS = 100;
 public static final long BARGE_WAIT_NANOS = 10 * 1000000;
 //public static int COMMUTE_RETRY_LIMIT = 10;
 
+//ceiling for max-history when adaptive mode grows it for a faulting ref
+public static final int ADAPTIVE_MAX_HISTORY = 100;
+//ceiling for the randomized pause between retries in adaptive mode
+public static final long ADAPTIVE_MAX_BACKOFF_NANOS = BARGE_WAIT_NANOS;
+
+//collection of Stats, off unless asked for
+static volatile boolean statsEnabled = Boolean.getBoolean("clojure.stm.stats");
+//back off between retries and grow history of refs that fault at max-history. Implies stats
+static volatile boolean adaptive = Boolean.getBoolean("clojure.stm.adaptive");
+//transaction site (class name of the dosync body fn) -> Stats
+static final ConcurrentHashMap<String, Stats> siteStats = new ConcurrentHashMap<String, Stats>();
+
 static final int RUNNING = 0;
 static final int COMMITTING = 1;
 static final int RETRY = 2;
@@ -60,6 +75,86 @@ public static class Info{
 	}
 }
 
+/*
+ Contention counters, kept per Ref and per transaction site:
+
+ commits        - committed transactions (that wrote the ref)
+ retries        - attempts abandoned and restarted (because of the ref)
+ barges         - other transactions killed (to get at the ref)
+ history-faults - reads that found no value old enough in the ref's history
+ lock-wait-ns   - time spent acquiring write locks
+ commit-ns      - total time from first attempt to commit
+ max-commit-ns  - longest such time
+ */
+public static final class Stats{
+	final AtomicLong commits = new AtomicLong();
+	final AtomicLong retries = new AtomicLong();
+	final AtomicLong barges = new AtomicLong();
+	final AtomicLong historyFaults = new AtomicLong();
+	final AtomicLong lockWaitNanos = new AtomicLong();
+	final AtomicLong commitNanos = new AtomicLong();
+	final AtomicLong maxCommitNanos = new AtomicLong();
+
+	void commit(long nanos){
+		commits.incrementAndGet();
+		commitNanos.addAndGet(nanos);
+		long max;
+		while(nanos > (max = maxCommitNanos.get()) && !maxCommitNanos.compareAndSet(max, nanos))
+			;
+	}
+
+	public IPersistentMap toMap(){
+		return RT.map(Keyword.intern(null, "commits"), commits.get(),
+		              Keyword.intern(null, "retries"), retries.get(),
+		              Keyword.intern(null, "barges"), barges.get(),
+		              Keyword.intern(null, "history-faults"), historyFaults.get(),
+		              Keyword.intern(null, "lock-wait-ns"), lockWaitNanos.get(),
+		              Keyword.intern(null, "commit-ns"), commitNanos.get(),
+		              Keyword.intern(null, "max-commit-ns"), maxCommitNanos.get());
+	}
+}
+
+static public boolean isStatsEnabled(){
+	return statsEnabled || adaptive;
+}
+
+static public void setStatsEnabled(boolean enabled){
+	statsEnabled = enabled;
+}
+
+static public boolean isAdaptive(){
+	return adaptive;
+}
+
+static public void setAdaptive(boolean enabled){
+	adaptive = enabled;
+}
+
+//{site-name stats-map} for every transaction site seen while stats were on
+static public IPersistentMap getSiteStats(){
+	ITransientMap ret = PersistentHashMap.EMPTY.asTransient();
+	for(Map.Entry<String, Stats> e : siteStats.entrySet())
+		ret = ret.assoc(e.getKey(), e.getValue().toMap());
+	return ret.persistent();
+}
+
+static public void resetSiteStats(){
+	siteStats.clear();
+}
+
+static Stats siteStats(Callable fn){
+	String site = fn.getClass().getName();
+	Stats s = siteStats.get(site);
+	if(s == null)
+		{
+		Stats fresh = new Stats();
+		s = siteStats.putIfAbsent(site, fresh);
+		if(s == null)
+			s = fresh;
+		}
+	return s;
+}
+
 static class CFn{
 	final IFn fn;
 	final ISeq args;
@@ -99,6 +194,10 @@ void stop(int status){
 
 
 Info info;
+//stats for the running transaction's site, null when stats are off
+Stats site;
+//ref that caused the most recent retry, if known
+Ref conflict;
 long readPoint;
 long startPoint;
 long startTime;
@@ -111,15 +210,31 @@ final TreeMap<Ref, ArrayList<CFn>> commutes = new TreeMap<Ref, ArrayList<CFn>>()
 final HashSet<Ref> ensures = new HashSet<Ref>();   //all hold readLock
 
 
+//records ref as the cause of the retry about to be thrown
+RetryEx retry(Ref ref){
+	conflict = ref;
+	return retryex;
+}
+
 void tryWriteLock(Ref ref){
+	long start = site != null ? System.nanoTime() : 0;
 	try
 		{
 		if(!ref.lock.writeLock().tryLock(LOCK_WAIT_MSECS, TimeUnit.MILLISECONDS))
-			throw retryex;
+			throw retry(ref);
 		}
 	catch(InterruptedException e)
 		{
-		throw retryex;
+		throw retry(ref);
+		}
+	finally
+		{
+		if(site != null)
+			{
+			long waited = System.nanoTime() - start;
+			site.lockWaitNanos.addAndGet(waited);
+			ref.stats().lockWaitNanos.addAndGet(waited);
+			}
 		}
 }
 
@@ -135,16 +250,17 @@ Object lock(Ref ref){
 		unlocked = false;
 
 		if(ref.tvals != null && ref.tvals.point > readPoint)
-			throw retryex;
+			throw retry(ref);
 		Info refinfo = ref.tinfo;
 
 		//write lock conflict
 		if(refinfo != null && refinfo != info && refinfo.running())
 			{
-			if(!barge(refinfo))
+			if(!barge(ref, refinfo))
 				{
 				ref.lock.writeLock().unlock();
 				unlocked = true;
+				conflict = ref;
 				return blockAndBail(refinfo);
 				}
 			}
@@ -189,7 +305,7 @@ private boolean bargeTimeElapsed(){
 	return System.nanoTime() - startTime > BARGE_WAIT_NANOS;
 }
 
-private boolean barge(Info refinfo){
+private boolean barge(Ref ref, Info refinfo){
 	boolean barged = false;
 	//if this transaction is older
 	//  try to abort the other
@@ -197,11 +313,24 @@ private boolean barge(Info refinfo){
 		{
         barged = refinfo.status.compareAndSet(RUNNING, KILLED);
         if(barged)
+            {
             refinfo.latch.countDown();
+            if(site != null)
+                {
+                site.barges.incrementAndGet();
+                ref.stats().barges.incrementAndGet();
+                }
+            }
 		}
 	return barged;
 }
 
+//randomized exponential pause before retry attempt i, to spread out contenders
+static void backoff(int i){
+	long max = Math.min(ADAPTIVE_MAX_BACKOFF_NANOS, 1000L << Math.min(i, 20));
+	LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(max));
+}
+
 static LockingTransaction getEx(){
 	LockingTransaction t = transaction.get();
 	if(t == null || t.info == null)
@@ -259,8 +388,23 @@ Object run(Callable fn) throws Exception{
 	ArrayList<Ref> locked = new ArrayList<Ref>();
 	ArrayList<Notify> notify = new ArrayList<Notify>();
 
+	site = isStatsEnabled() ? siteStats(fn) : null;
 	for(int i = 0; !done && i < RETRY_LIMIT; i++)
 		{
+		if(i > 0)
+			{
+			if(RuntimeEvents.ENABLED)
+				RuntimeEvents.stmRetry();
+			if(site != null)
+				{
+				site.retries.incrementAndGet();
+				if(conflict != null)
+					conflict.stats().retries.incrementAndGet();
+				}
+			if(adaptive)
+				backoff(i);
+			}
+		conflict = null;
 		try
 			{
 			getReadPoint();
@@ -285,13 +429,13 @@ Object run(Callable fn) throws Exception{
 					tryWriteLock(ref);
 					locked.add(ref);
 					if(wasEnsured && ref.tvals != null && ref.tvals.point > readPoint)
-						throw retryex;
+						throw retry(ref);
 
 					Info refinfo = ref.tinfo;
 					if(refinfo != null && refinfo != info && refinfo.running())
 						{
-						if(!barge(refinfo))
-							throw retryex;
+						if(!barge(ref, refinfo))
+							throw retry(ref);
 						}
 					Object val = ref.tvals == null ? null : ref.tvals.val;
 					vals.put(ref, val);
@@ -323,6 +467,10 @@ Object run(Callable fn) throws Exception{
 					Object newval = e.getValue();
 					int hcount = ref.histCount();
 
+					if(adaptive && ref.faults.get() > 0 && hcount >= ref.maxHistory
+					   && ref.maxHistory < ADAPTIVE_MAX_HISTORY)
+						ref.maxHistory = Math.min(Math.max(2 * ref.maxHistory, 1), ADAPTIVE_MAX_HISTORY);
+
 					if(ref.tvals == null)
 						{
 						ref.tvals = new Ref.TVal(newval, commitPoint);
@@ -345,6 +493,13 @@ Object run(Callable fn) throws Exception{
 
 				done = true;
 				info.status.set(COMMITTED);
+				if(site != null)
+					{
+					long latency = System.nanoTime() - startTime;
+					site.commit(latency);
+					for(Ref ref : vals.keySet())
+						ref.stats().commit(latency);
+					}
 				}
 			}
 		catch(RetryEx retry)
@@ -385,6 +540,8 @@ Object run(Callable fn) throws Exception{
 				}
 			}
 		}
+	site = null;
+	conflict = null;
 	if(!done)
 		throw Util.runtimeException("Transaction failed after reaching retry limit");
 	return ret;
@@ -417,7 +574,12 @@ Object doGet(Ref ref){
 		}
 	//no version of val precedes the read point
 	ref.faults.incrementAndGet();
-	throw retryex;
+	if(site != null)
+		{
+		site.historyFaults.incrementAndGet();
+		ref.stats().historyFaults.incrementAndGet();
+		}
+	throw retry(ref);
 
 }
 
@@ -445,7 +607,7 @@ void doEnsure(Ref ref){
 	//someone completed a write after our snapshot
 	if(ref.tvals != null && ref.tvals.point > readPoint) {
         ref.lock.readLock().unlock();
-        throw retryex;
+        throw retry(ref);
     }
 
 	Info refinfo = ref.tinfo;
@@ -457,6 +619,7 @@ void doEnsure(Ref ref){
 
 		if(refinfo != info) //not us, ensure is doomed
 			{
+			conflict = ref;
 			blockAndBail(refinfo); 
 			}
 		}
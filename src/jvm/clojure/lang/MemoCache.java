@@ -0,0 +1,258 @@
+/**
+ *   Copyright (c) Rich Hickey. All rights reserved.
+ *   The use and distribution terms for this software are covered by the
+ *   Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ *   which can be found in the file epl-v10.html at the root of this distribution.
+ *   By using this software in any fashion, you are agreeing to be bound by
+ * 	 the terms of this license.
+ *   You must not remove this notice, or any other, from this software.
+ **/
+
+package clojure.lang;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded cache of the results of a function, backing memoize with options.
+ *
+ * Entries live in a ConcurrentHashMap, so hits take no lock. Each entry is a
+ * FutureTask: concurrent misses on one key install a single task, one caller
+ * runs it and the others wait for its result. A call that throws leaves no
+ * entry behind.
+ *
+ * When an insert takes the size past maxSize, one thread at a time scans the
+ * entries and evicts down to a low-water mark 1/8 below maxSize, expired
+ * entries first, then by policy: least recently used (LRU), least frequently
+ * used (LFU) or oldest (FIFO). Batching keeps the scan's cost per insert
+ * constant; the size may briefly overshoot maxSize while a scan runs. With a
+ * ttl, entries older than ttl nanoseconds are also treated as misses on lookup.
+ */
+public class MemoCache{
+
+public static final Keyword LRU = Keyword.intern(null, "lru");
+public static final Keyword LFU = Keyword.intern(null, "lfu");
+public static final Keyword FIFO = Keyword.intern(null, "fifo");
+
+static final Keyword HITS = Keyword.intern(null, "hits");
+static final Keyword MISSES = Keyword.intern(null, "misses");
+static final Keyword EVICTIONS = Keyword.intern(null, "evictions");
+static final Keyword SIZE = Keyword.intern(null, "size");
+
+final IFn f;
+final int maxSize;
+final int lowWater;
+final Keyword policy;
+final long ttlNanos;
+
+final ConcurrentHashMap<Args, Entry> map = new ConcurrentHashMap<Args, Entry>();
+final ReentrantLock evictLock = new ReentrantLock();
+
+final LongAdder hits = new LongAdder();
+final LongAdder misses = new LongAdder();
+final LongAdder evictions = new LongAdder();
+
+//an argument list compared by = and hash, as memoize's unbounded map does,
+//so (f 1) and (f (int 1)) share an entry. Never null, which ConcurrentHashMap
+//takes no keys of, even for a call with no args
+static final class Args{
+	final ISeq args;
+	final int hash;
+
+	Args(ISeq args){
+		this.args = args;
+		this.hash = Util.hasheq(args);
+	}
+
+	public int hashCode(){
+		return hash;
+	}
+
+	public boolean equals(Object o){
+		return o instanceof Args && Util.equiv(args, ((Args) o).args);
+	}
+}
+
+static class Entry extends FutureTask<Object>{
+	final long created;
+	//nanoTime of the last hit, read for the ttl check anyway, so recency costs
+	//no shared counter; entries touched in the same tick rank by age
+	volatile long lastAccess;
+	//racy increments may lose counts, which only blurs LFU's ranking
+	volatile int uses;
+	volatile Thread runner;
+
+	Entry(Callable<Object> call, long created){
+		super(call);
+		this.created = created;
+		this.lastAccess = created;
+	}
+
+	public void run(){
+		runner = Thread.currentThread();
+		try
+			{
+			super.run();
+			}
+		finally
+			{
+			runner = null;
+			}
+	}
+}
+
+/**
+ * maxSize <= 0 means unbounded, ttlNanos <= 0 means entries never expire.
+ */
+public MemoCache(IFn f, int maxSize, Keyword policy, long ttlNanos){
+	if(policy != LRU && policy != LFU && policy != FIFO)
+		throw new IllegalArgumentException("Unknown memoize policy: " + policy);
+	this.f = f;
+	this.maxSize = maxSize;
+	this.lowWater = maxSize - Math.max(1, maxSize >> 3);
+	this.policy = policy;
+	this.ttlNanos = ttlNanos;
+}
+
+public Object lookup(final ISeq args){
+	Args key = new Args(args);
+	Entry e = map.get(key);
+	long now;
+	if(e != null && !expired(e, now = System.nanoTime()))
+		{
+		hits.increment();
+		if(policy == LRU)
+			e.lastAccess = now;
+		else if(policy == LFU)
+			e.uses++;
+		return await(key, e, args);
+		}
+	for(; ;)
+		{
+		Entry fresh = new Entry(new Callable<Object>(){
+			public Object call() {
+				return f.applyTo(args);
+			}
+		}, System.nanoTime());
+		if(e == null)
+			e = map.putIfAbsent(key, fresh);
+		else if(map.replace(key, e, fresh))
+			{
+			evictions.increment();
+			e = null;
+			}
+		else
+			e = map.get(key);
+		if(e == null)
+			{
+			misses.increment();
+			fresh.run();
+			if(maxSize > 0 && map.size() > maxSize)
+				evict();
+			return await(key, fresh, args);
+			}
+		if(!expired(e, System.nanoTime()))
+			{
+			hits.increment();
+			return await(key, e, args);
+			}
+		}
+}
+
+Object await(Args key, Entry e, ISeq args){
+	//a recursive call on the key this thread is computing would wait on itself
+	if(e.runner == Thread.currentThread())
+		return f.applyTo(args);
+	try
+		{
+		return e.get();
+		}
+	catch(ExecutionException ex)
+		{
+		map.remove(key, e);
+		throw Util.sneakyThrow(ex.getCause());
+		}
+	catch(InterruptedException ex)
+		{
+		Thread.currentThread().interrupt();
+		throw Util.sneakyThrow(ex);
+		}
+}
+
+boolean expired(Entry e, long now){
+	return ttlNanos > 0 && now - e.created > ttlNanos;
+}
+
+void evict(){
+	if(!evictLock.tryLock())
+		return;
+	try
+		{
+		long now = System.nanoTime();
+		ArrayList<Candidate> live = new ArrayList<Candidate>(map.size());
+		for(Map.Entry<Args, Entry> me : map.entrySet())
+			{
+			Entry e = me.getValue();
+			if(expired(e, now))
+				{
+				if(map.remove(me.getKey(), e))
+					evictions.increment();
+				}
+			else if(e.isDone())
+				live.add(new Candidate(me.getKey(), e, policy == LFU ? e.uses : e.lastAccess));
+			}
+		int excess = map.size() - lowWater;
+		if(excess <= 0)
+			return;
+		Collections.sort(live);
+		for(int i = 0; i < live.size() && excess > 0; i++)
+			{
+			Candidate c = live.get(i);
+			if(map.remove(c.key, c.entry))
+				{
+				evictions.increment();
+				excess--;
+				}
+			}
+		}
+	finally
+		{
+		evictLock.unlock();
+		}
+}
+
+//an entry and its rank at the start of an eviction scan, as hits keep
+//changing the live values
+static class Candidate implements Comparable<Candidate>{
+	final Args key;
+	final Entry entry;
+	final long rank;
+	final long created;
+
+	Candidate(Args key, Entry entry, long rank){
+		this.key = key;
+		this.entry = entry;
+		this.rank = rank;
+		this.created = entry.created;
+	}
+
+	public int compareTo(Candidate c){
+		int r = Long.compare(rank, c.rank);
+		return r != 0 ? r : Long.compare(created, c.created);
+	}
+}
+
+public IPersistentMap stats(){
+	return RT.map(HITS, hits.sum(),
+	              MISSES, misses.sum(),
+	              EVICTIONS, evictions.sum(),
+	              SIZE, (long) map.size());
+}
+}
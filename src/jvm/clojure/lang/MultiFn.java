@@ -12,7 +12,9 @@
 
 package clojure.lang;
 
+import java.util.ArrayList;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class MultiFn extends AFn{
@@ -23,13 +25,36 @@ final String name;
 final ReentrantReadWriteLock rw;
 volatile IPersistentMap methodTable;
 volatile IPersistentMap preferTable;
-volatile IPersistentMap methodCache;
-volatile Object cachedHierarchy;
+//dispatchVal -> CacheEntry, read without locking, updated by CAS
+final AtomicReference<IPersistentMap> methodCache;
 
 static final Var assoc = RT.var("clojure.core", "assoc");
 static final Var dissoc = RT.var("clojure.core", "dissoc");
 static final Var isa = RT.var("clojure.core", "isa?");
 static final Var parents = RT.var("clojure.core", "parents");
+static final Object NOT_FOUND = new Object();
+
+/*
+ * A resolved method, stamped with the tables and hierarchy it was computed
+ * against. When only the hierarchy has moved on, the entry is still good if
+ * the parents of everything above dispatchVal are unchanged, so unrelated
+ * derives don't flush it.
+ */
+static final class CacheEntry{
+	final IPersistentMap methodTable;
+	final IPersistentMap preferTable;
+	final Object hierarchy;
+	final IPersistentMap ancestry;
+	final IFn fn;
+
+	CacheEntry(IPersistentMap methodTable, IPersistentMap preferTable, Object hierarchy, IPersistentMap ancestry, IFn fn){
+		this.methodTable = methodTable;
+		this.preferTable = preferTable;
+		this.hierarchy = hierarchy;
+		this.ancestry = ancestry;
+		this.fn = fn;
+	}
+}
 
 public MultiFn(String name, IFn dispatchFn, Object defaultDispatchVal, IRef hierarchy) {
 	this.rw = new ReentrantReadWriteLock();
@@ -37,17 +62,16 @@ public MultiFn(String name, IFn dispatchFn, Object defaultDispatchVal, IRef hier
 	this.dispatchFn = dispatchFn;
 	this.defaultDispatchVal = defaultDispatchVal;
 	this.methodTable = PersistentHashMap.EMPTY;
-	this.methodCache = getMethodTable();
+	this.methodCache = new AtomicReference<IPersistentMap>(PersistentHashMap.EMPTY);
 	this.preferTable = PersistentHashMap.EMPTY;
     this.hierarchy = hierarchy;
-	cachedHierarchy = null;
 }
 
 public MultiFn reset(){
 	rw.writeLock().lock();
 	try{
-		methodTable = methodCache = preferTable = PersistentHashMap.EMPTY;
-		cachedHierarchy = null;
+		methodTable = preferTable = PersistentHashMap.EMPTY;
+		resetCache();
 		return this;
 	}
 	finally {
@@ -85,7 +109,7 @@ public MultiFn preferMethod(Object dispatchValX, Object dispatchValY) {
 	rw.writeLock().lock();
 	try
 		{
-		if(prefers(dispatchValY, dispatchValX))
+		if(prefers(getPreferTable(), dispatchValY, dispatchValX))
 			throw new IllegalStateException(
 					String.format("Preference conflict in multimethod '%s': %s is already preferred to %s",
 					              name, dispatchValY, dispatchValX));
@@ -102,52 +126,91 @@ public MultiFn preferMethod(Object dispatchValX, Object dispatchValY) {
 		}
 }
 
-private boolean prefers(Object x, Object y) {
-	IPersistentSet xprefs = (IPersistentSet) getPreferTable().valAt(x);
+private static boolean prefers(IPersistentMap pt, Object x, Object y) {
+	IPersistentSet xprefs = (IPersistentSet) pt.valAt(x);
 	if(xprefs != null && xprefs.contains(y))
 		return true;
 	for(ISeq ps = RT.seq(parents.invoke(y)); ps != null; ps = ps.next())
 		{
-		if(prefers(x, ps.first()))
+		if(prefers(pt, x, ps.first()))
 			return true;
 		}
 	for(ISeq ps = RT.seq(parents.invoke(x)); ps != null; ps = ps.next())
 		{
-		if(prefers(ps.first(), y))
+		if(prefers(pt, ps.first(), y))
 			return true;
 		}
 	return false;
 }
 
-private boolean isA(Object x, Object y) {
-    return RT.booleanCast(isa.invoke(hierarchy.deref(), x, y));
+private static boolean isA(Object h, Object x, Object y) {
+    return RT.booleanCast(isa.invoke(h, x, y));
 }
 
-private boolean dominates(Object x, Object y) {
-	return prefers(x, y) || isA(x, y);
+private static boolean dominates(IPersistentMap pt, Object h, Object x, Object y) {
+	return prefers(pt, x, y) || isA(h, x, y);
 }
 
-private IPersistentMap resetCache() {
-	rw.writeLock().lock();
-	try
+private void resetCache() {
+	methodCache.set(PersistentHashMap.EMPTY);
+}
+
+private void cache(Object dispatchVal, CacheEntry e) {
+	for(;;)
 		{
-		methodCache = getMethodTable();
-		cachedHierarchy = hierarchy.deref();
-		return methodCache;
+		IPersistentMap m = methodCache.get();
+		if(methodCache.compareAndSet(m, m.assoc(dispatchVal, e)))
+			return;
 		}
-	finally
+}
+
+/*
+ * {tag parents} for dispatchVal (or each element of a vector dispatchVal)
+ * and all of its ancestors in h - everything isa? and prefers can consult
+ * when resolving dispatchVal
+ */
+private static IPersistentMap ancestry(Object h, Object dispatchVal) {
+	ITransientMap ret = PersistentHashMap.EMPTY.asTransient();
+	ArrayList<Object> todo = new ArrayList<Object>();
+	todo.add(dispatchVal);
+	while(!todo.isEmpty())
 		{
-		rw.writeLock().unlock();
+		Object tag = todo.remove(todo.size() - 1);
+		if(ret.valAt(tag, NOT_FOUND) != NOT_FOUND)
+			continue;
+		if(tag instanceof IPersistentVector)
+			{
+			IPersistentVector v = (IPersistentVector) tag;
+			for(int i = 0; i < v.count(); i++)
+				todo.add(v.nth(i));
+			}
+		Object ps = parents.invoke(h, tag);
+		ret = ret.assoc(tag, ps);
+		for(ISeq s = RT.seq(ps); s != null; s = s.next())
+			todo.add(s.first());
 		}
+	return ret.persistent();
 }
 
  public IFn getMethod(Object dispatchVal) {
-	if(cachedHierarchy != hierarchy.deref())
-		resetCache();
-	IFn targetFn = (IFn) methodCache.valAt(dispatchVal);
-	if(targetFn != null)
-		return targetFn;
-	return findAndCacheBestMethod(dispatchVal);
+	Object h = hierarchy.deref();
+	IPersistentMap mt = methodTable;
+	IPersistentMap pt = preferTable;
+	CacheEntry e = (CacheEntry) methodCache.get().valAt(dispatchVal);
+	if(e != null && e.methodTable == mt && e.preferTable == pt)
+		{
+		if(e.hierarchy == h)
+			return e.fn;
+		IPersistentMap a = ancestry(h, dispatchVal);
+		if(Util.equiv(a, e.ancestry))
+			{
+			cache(dispatchVal, new CacheEntry(mt, pt, h, a, e.fn));
+			return e.fn;
+			}
+		}
+	if(RuntimeEvents.ENABLED)
+		RuntimeEvents.multiFnCacheMiss(name);
+	return findAndCacheBestMethod(dispatchVal, mt, pt, h);
 }
 
 private IFn getFn(Object dispatchVal) {
@@ -158,67 +221,35 @@ private IFn getFn(Object dispatchVal) {
 	return targetFn;
 }
 
-private IFn findAndCacheBestMethod(Object dispatchVal) {
-	rw.readLock().lock();
+private IFn findAndCacheBestMethod(Object dispatchVal, IPersistentMap mt, IPersistentMap pt, Object h) {
 	Object bestValue;
-	IPersistentMap mt = methodTable;
-	IPersistentMap pt = preferTable;
-	Object ch = cachedHierarchy;
-	try
+	Map.Entry bestEntry = null;
+	for(Object o : mt)
 		{
-		Map.Entry bestEntry = null;
-		for(Object o : getMethodTable())
-			{
-			Map.Entry e = (Map.Entry) o;
-			if(isA(dispatchVal, e.getKey()))
-				{
-				if(bestEntry == null || dominates(e.getKey(), bestEntry.getKey()))
-					bestEntry = e;
-				if(!dominates(bestEntry.getKey(), e.getKey()))
-					throw new IllegalArgumentException(
-							String.format(
-									"Multiple methods in multimethod '%s' match dispatch value: %s -> %s and %s, and neither is preferred",
-									name, dispatchVal, e.getKey(), bestEntry.getKey()));
-				}
-			}
-		if(bestEntry == null)
+		Map.Entry e = (Map.Entry) o;
+		if(isA(h, dispatchVal, e.getKey()))
 			{
-			bestValue = methodTable.valAt(defaultDispatchVal);
-		        if(bestValue == null)
-				return null;
+			if(bestEntry == null || dominates(pt, h, e.getKey(), bestEntry.getKey()))
+				bestEntry = e;
+			if(!dominates(pt, h, bestEntry.getKey(), e.getKey()))
+				throw new IllegalArgumentException(
+						String.format(
+								"Multiple methods in multimethod '%s' match dispatch value: %s -> %s and %s, and neither is preferred",
+								name, dispatchVal, e.getKey(), bestEntry.getKey()));
 			}
-		else
-			bestValue = bestEntry.getValue();
 		}
-	finally
+	if(bestEntry == null)
 		{
-		rw.readLock().unlock();
+		bestValue = mt.valAt(defaultDispatchVal);
+		if(bestValue == null)
+			return null;
 		}
+	else
+		bestValue = bestEntry.getValue();
 
-
-	//ensure basis has stayed stable throughout, else redo
-	rw.writeLock().lock();
-	try
-		{
-		if( mt == methodTable &&
-		    pt == preferTable &&
-		    ch == cachedHierarchy &&
-			cachedHierarchy == hierarchy.deref())
-			{
-			//place in cache
-			methodCache = methodCache.assoc(dispatchVal, bestValue);
-			return (IFn) bestValue;
-			}
-		else
-			{
-			resetCache();
-			return findAndCacheBestMethod(dispatchVal);
-			}
-		}
-	finally
-		{
-		rw.writeLock().unlock();
-		}
+	//entries computed against a stale basis are rejected by getMethod
+	cache(dispatchVal, new CacheEntry(mt, pt, h, ancestry(h, dispatchVal), (IFn) bestValue));
+	return (IFn) bestValue;
 }
 
 public Object invoke() {
@@ -99,6 +99,8 @@ public static int mixCollHash(int hash, int count){
 }
 
 public static int hashOrdered(Iterable xs){
+	if(xs instanceof IChunkedSeq)
+		return hashOrderedChunks((IChunkedSeq) xs);
 	int n = 0;
 	int hash = 1;
 
@@ -111,6 +113,51 @@ public static int hashOrdered(Iterable xs){
 	return mixCollHash(hash, n);
 }
 
+//steps through a chunk at a time, ArrayChunks straight from their arrays, rather than
+//allocating a seq per element
+static int hashOrderedChunks(IChunkedSeq xs){
+	int n = 0;
+	int hash = 1;
+
+	for(ISeq s = xs; s != null;)
+		{
+		if(s instanceof IChunkedSeq)
+			{
+			IChunk c = ((IChunkedSeq) s).chunkedFirst();
+			if(c instanceof ArrayChunk)
+				{
+				ArrayChunk ac = (ArrayChunk) c;
+				hash = hashOrdered(hash, ac.array, ac.off, ac.end);
+				}
+			else
+				for(int i = 0; i < c.count(); i++)
+					hash = 31 * hash + Util.hasheq(c.nth(i));
+			n += c.count();
+			s = ((IChunkedSeq) s).chunkedNext();
+			}
+		else
+			{
+			hash = 31 * hash + Util.hasheq(s.first());
+			++n;
+			s = s.next();
+			}
+		}
+
+	return mixCollHash(hash, n);
+}
+
+//hashOrdered's running hash continued over xs[start, end), for callers walking their own arrays
+static int hashOrdered(int hash, Object[] xs, int start, int end){
+	for(int i = start; i < end; i++)
+		hash = 31 * hash + Util.hasheq(xs[i]);
+	return hash;
+}
+
+//the hasheq of the map entry [key val], without making one
+static int hashEntry(Object key, Object val){
+	return mixCollHash(31 * (31 + Util.hasheq(key)) + Util.hasheq(val), 2);
+}
+
 public static int hashUnordered(Iterable xs){
 	int hash = 0;
 	int n = 0;
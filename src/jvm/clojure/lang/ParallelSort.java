@@ -0,0 +1,226 @@
+/**
+ *   Copyright (c) Rich Hickey. All rights reserved.
+ *   The use and distribution terms for this software are covered by the
+ *   Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ *   which can be found in the file epl-v10.html at the root of this distribution.
+ *   By using this software in any fashion, you are agreeing to be bound by
+ * 	 the terms of this license.
+ *   You must not remove this notice, or any other, from this software.
+ **/
+
+package clojure.lang;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Stable sorts of arrays, in parallel on the common fork/join pool once they
+ * reach THRESHOLD elements (system property clojure.sort.parallel-threshold,
+ * default 65536).
+ *
+ * Object arrays are merge sorted: runs of up to GRAIN elements are sorted with
+ * Arrays.sort, then merged pairwise, large merges being split in two by binary
+ * search so the top levels run in parallel too. Unlike Arrays.parallelSort,
+ * every task runs with the calling thread's bindings, so comparators that read
+ * dynamic vars see the same values as on the calling thread. Primitive arrays
+ * go to Arrays.parallelSort, which needs no comparator, except double arrays
+ * holding -0.0 or NaN: Arrays.sort puts -0.0 before 0.0 and NaN last, where
+ * compare finds -0.0 and 0.0 equal, so those are sorted boxed, by compare.
+ */
+public class ParallelSort{
+
+public static final int THRESHOLD = Integer.getInteger("clojure.sort.parallel-threshold", 1 << 16);
+static final int GRAIN = 1 << 13;
+
+static boolean parallel(int length){
+	return length >= THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1;
+}
+
+static public void sort(Object[] a, Comparator<Object> c){
+	if(!parallel(a.length))
+		Arrays.sort(a, c);
+	else
+		ForkJoinPool.commonPool().invoke(
+				new SortTask(a, new Object[a.length], c, Var.cloneThreadBindingFrame(), 0, a.length, false));
+}
+
+static public void sort(long[] a){
+	if(parallel(a.length))
+		Arrays.parallelSort(a);
+	else
+		Arrays.sort(a);
+}
+
+static final Comparator<Object> COMPARE = new Comparator<Object>(){
+	public int compare(Object x, Object y){
+		return Util.compare(x, y);
+	}
+};
+
+static public void sort(double[] a){
+	if(hasSignedZeroOrNaN(a))
+		{
+		Object[] boxed = new Object[a.length];
+		for(int i = 0; i < a.length; i++)
+			boxed[i] = a[i];
+		sort(boxed, COMPARE);
+		for(int i = 0; i < a.length; i++)
+			a[i] = (Double) boxed[i];
+		}
+	else if(parallel(a.length))
+		Arrays.parallelSort(a);
+	else
+		Arrays.sort(a);
+}
+
+static boolean hasSignedZeroOrNaN(double[] a){
+	for(double d : a)
+		if(d != d || (d == 0.0 && 1 / d < 0))
+			return true;
+	return false;
+}
+
+static abstract class BoundTask extends RecursiveAction{
+	final Object frame;
+
+	BoundTask(Object frame){
+		this.frame = frame;
+	}
+
+	abstract void run();
+
+	protected void compute(){
+		Object prior = Var.getThreadBindingFrame();
+		Var.resetThreadBindingFrame(frame);
+		try
+			{
+			run();
+			}
+		finally
+			{
+			Var.resetThreadBindingFrame(prior);
+			}
+	}
+}
+
+//sorts a[lo, hi), leaving the result in tmp if toTmp, else in a
+static final class SortTask extends BoundTask{
+	final Object[] a;
+	final Object[] tmp;
+	final Comparator<Object> c;
+	final int lo;
+	final int hi;
+	final boolean toTmp;
+
+	SortTask(Object[] a, Object[] tmp, Comparator<Object> c, Object frame, int lo, int hi, boolean toTmp){
+		super(frame);
+		this.a = a;
+		this.tmp = tmp;
+		this.c = c;
+		this.lo = lo;
+		this.hi = hi;
+		this.toTmp = toTmp;
+	}
+
+	void run(){
+		if(hi - lo <= GRAIN)
+			{
+			Arrays.sort(a, lo, hi, c);
+			if(toTmp)
+				System.arraycopy(a, lo, tmp, lo, hi - lo);
+			return;
+			}
+		int mid = (lo + hi) >>> 1;
+		SortTask left = new SortTask(a, tmp, c, frame, lo, mid, !toTmp);
+		left.fork();
+		new SortTask(a, tmp, c, frame, mid, hi, !toTmp).compute();
+		left.join();
+		Object[] src = toTmp ? a : tmp;
+		Object[] dst = toTmp ? tmp : a;
+		new MergeTask(src, dst, c, frame, lo, mid, mid, hi, lo).compute();
+	}
+}
+
+//stably merges src[lo1, hi1) and src[lo2, hi2) into dst from at
+static final class MergeTask extends BoundTask{
+	final Object[] src;
+	final Object[] dst;
+	final Comparator<Object> c;
+	final int lo1, hi1, lo2, hi2, at;
+
+	MergeTask(Object[] src, Object[] dst, Comparator<Object> c, Object frame, int lo1, int hi1, int lo2, int hi2, int at){
+		super(frame);
+		this.src = src;
+		this.dst = dst;
+		this.c = c;
+		this.lo1 = lo1;
+		this.hi1 = hi1;
+		this.lo2 = lo2;
+		this.hi2 = hi2;
+		this.at = at;
+	}
+
+	void run(){
+		int n1 = hi1 - lo1;
+		int n2 = hi2 - lo2;
+		if(n1 + n2 <= GRAIN)
+			{
+			merge();
+			return;
+			}
+		int split1, split2;
+		if(n1 >= n2)
+			{
+			//left run's elements equal to the pivot stay ahead of the right's
+			split1 = lo1 + (n1 >>> 1);
+			split2 = lowerBound(src[split1], lo2, hi2);
+			}
+		else
+			{
+			split2 = lo2 + (n2 >>> 1);
+			split1 = upperBound(src[split2], lo1, hi1);
+			}
+		MergeTask left = new MergeTask(src, dst, c, frame, lo1, split1, lo2, split2, at);
+		left.fork();
+		new MergeTask(src, dst, c, frame, split1, hi1, split2, hi2,
+		              at + (split1 - lo1) + (split2 - lo2)).compute();
+		left.join();
+	}
+
+	void merge(){
+		int i = lo1, j = lo2, k = at;
+		while(i < hi1 && j < hi2)
+			dst[k++] = c.compare(src[j], src[i]) < 0 ? src[j++] : src[i++];
+		System.arraycopy(src, i, dst, k, hi1 - i);
+		System.arraycopy(src, j, dst, k + (hi1 - i), hi2 - j);
+	}
+
+	//first index in [lo, hi) whose element is not less than x
+	int lowerBound(Object x, int lo, int hi){
+		while(lo < hi)
+			{
+			int mid = (lo + hi) >>> 1;
+			if(c.compare(src[mid], x) < 0)
+				lo = mid + 1;
+			else
+				hi = mid;
+			}
+		return lo;
+	}
+
+	//first index in [lo, hi) whose element is greater than x
+	int upperBound(Object x, int lo, int hi){
+		while(lo < hi)
+			{
+			int mid = (lo + hi) >>> 1;
+			if(c.compare(src[mid], x) <= 0)
+				lo = mid + 1;
+			else
+				hi = mid;
+			}
+		return lo;
+	}
+}
+}
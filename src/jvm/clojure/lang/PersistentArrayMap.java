@@ -22,7 +22,9 @@ import java.util.NoSuchElementException;
  * <p>Note that instances of this class are constant values
  * i.e. add/remove etc return new values</p>
  *
- * <p>Copies array on every change, so only appropriate for _very_small_ maps</p>
+ * <p>Copies array on every change, so only appropriate for _very_small_ maps. Maps grow past
+ * HASHTABLE_THRESHOLD / 2 entries (system property clojure.map.array-threshold, default 8)
+ * into a PersistentFlatMap, or a PersistentHashMap if that tier is no larger</p>
  *
  * <p>null keys and values are ok, but you won't be able to distinguish a null value via valAt - use contains/entryAt</p>
  */
@@ -30,7 +32,7 @@ import java.util.NoSuchElementException;
 public class PersistentArrayMap extends APersistentMap implements IObj, IEditableCollection, IMapIterable, IKVReduce{
 
 final Object[] array;
-static final int HASHTABLE_THRESHOLD = 16;
+static final int HASHTABLE_THRESHOLD = 2 * Integer.getInteger("clojure.map.array-threshold", 8);
 
 public static final PersistentArrayMap EMPTY = new PersistentArrayMap();
 private final IPersistentMap _meta;
@@ -61,6 +63,8 @@ PersistentArrayMap create(Object... init){
 }
 
 IPersistentMap createHT(Object[] init){
+	if(init.length / 2 < PersistentFlatMap.MAX_SIZE)
+		return PersistentFlatMap.create(meta(), init);
 	return PersistentHashMap.create(meta(), init);
 }
 
@@ -159,6 +163,19 @@ public int count(){
 	return array.length / 2;
 }
 
+public int hasheq(){
+	int cached = this._hasheq;
+	if(cached == 0)
+		{
+		//hashes the entries straight from the array, without making them
+		int hash = 0;
+		for(int i = 0; i < array.length; i += 2)
+			hash += Murmur3.hashEntry(array[i], array[i + 1]);
+		this._hasheq = cached = Murmur3.mixCollHash(hash, array.length / 2);
+		}
+	return cached;
+}
+
 public boolean containsKey(Object key){
 	return indexOf(key) >= 0;
 }
@@ -416,7 +433,11 @@ static final class TransientArrayMap extends ATransientMap {
 		else //didn't have key, grow
 			{
 			if(len >= array.length)
+				{
+				if(len / 2 < PersistentFlatMap.MAX_SIZE)
+					return PersistentFlatMap.build(array, len, false).assoc(key, val);
 				return PersistentHashMap.create(array).asTransient().assoc(key, val);
+				}
 			array[len++] = key;
 			array[len++] = val;
 			}
@@ -0,0 +1,431 @@
+/**
+ *   Copyright (c) Rich Hickey. All rights reserved.
+ *   The use and distribution terms for this software are covered by the
+ *   Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ *   which can be found in the file epl-v10.html at the root of this distribution.
+ *   By using this software in any fashion, you are agreeing to be bound by
+ * 	 the terms of this license.
+ *   You must not remove this notice, or any other, from this software.
+ **/
+
+package clojure.lang;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Persistent map in flat arrays, the tier between PersistentArrayMap and
+ * PersistentHashMap. Maps grow into it from an array map and out of it into a
+ * hash map past MAX_SIZE entries (system property clojure.map.flat-threshold,
+ * default 64, at most 255).
+ *
+ * Entries are kept in insertion order, as in an array map, with the hasheq of
+ * each key cached alongside. An open-addressed table at most half full maps
+ * hashes to entries, so a lookup is usually one probe and one equiv, with none
+ * of the node hops of a hash map. Like an array map, every change copies the
+ * arrays, which at this size costs less than a hash map's path copy.
+ */
+public class PersistentFlatMap extends APersistentMap implements IObj, IEditableCollection, IMapIterable, IKVReduce{
+
+public static final int MAX_SIZE = Math.min(255, Integer.getInteger("clojure.map.flat-threshold", 64));
+
+//hasheq of each key
+final int[] hashes;
+//{key0,val0,key1,val1,...}
+final Object[] array;
+//1 + the index of an entry, as an unsigned byte, at the slot its hash probes to, 0 for none
+final byte[] table;
+final IPersistentMap _meta;
+
+PersistentFlatMap(IPersistentMap meta, int[] hashes, Object[] array, byte[] table){
+	this._meta = meta;
+	this.hashes = hashes;
+	this.array = array;
+	this.table = table;
+}
+
+static public IPersistentMap create(Map other){
+	if(other.size() > MAX_SIZE)
+		return PersistentHashMap.create(other);
+	ITransientMap ret = new TransientFlatMap(new int[0], new Object[0], other.size());
+	for(Object o : other.entrySet())
+		{
+		Map.Entry e = (Map.Entry) o;
+		ret = ret.assoc(e.getKey(), e.getValue());
+		}
+	return ret.persistent();
+}
+
+/**
+ * Keys must be distinct, the map takes up to MAX_SIZE of them
+ *
+ * @param init {key1,val1,key2,val2,...}
+ */
+static public PersistentFlatMap create(Object[] init){
+	return (PersistentFlatMap) build(init, init.length, false).persistent();
+}
+
+static public PersistentFlatMap createWithCheck(Object[] init){
+	return (PersistentFlatMap) build(init, init.length, true).persistent();
+}
+
+static PersistentFlatMap create(IPersistentMap meta, Object[] init){
+	return ((PersistentFlatMap) build(init, init.length, false).persistent()).withMeta(meta);
+}
+
+//a transient of the first len/2 entries in init, later vals winning for a repeated key unless check
+static TransientFlatMap build(Object[] init, int len, boolean check){
+	TransientFlatMap ret = new TransientFlatMap(new int[0], new Object[0], len / 2);
+	for(int i = 0; i < len; i += 2)
+		{
+		int h = Util.hasheq(init[i]);
+		int j = indexOf(ret.table, ret.hashes, ret.array, init[i], h);
+		if(j >= 0)
+			{
+			if(check)
+				throw new IllegalArgumentException("Duplicate key: " + init[i]);
+			ret.array[2 * j + 1] = init[i + 1];
+			}
+		else
+			ret.append(-(j + 1), h, init[i], init[i + 1]);
+		}
+	return ret;
+}
+
+//the smallest power of 2 at least twice n
+static int tableSize(int n){
+	return Integer.highestOneBit(Math.max(4, 2 * n) - 1) << 1;
+}
+
+//a table of the given size for the first count hashes
+static byte[] index(int[] hashes, int count, int size){
+	byte[] table = new byte[size];
+	for(int i = 0; i < count; i++)
+		table[emptySlot(table, hashes[i])] = (byte) (i + 1);
+	return table;
+}
+
+static int emptySlot(byte[] table, int h){
+	int mask = table.length - 1;
+	int s = h & mask;
+	while(table[s] != 0)
+		s = (s + 1) & mask;
+	return s;
+}
+
+//the index of key's entry, or -(the empty slot it would go in + 1)
+static int indexOf(byte[] table, int[] hashes, Object[] array, Object key, int h){
+	int mask = table.length - 1;
+	for(int s = h & mask; ; s = (s + 1) & mask)
+		{
+		int e = table[s] & 0xff;
+		if(e == 0)
+			return -(s + 1);
+		e--;
+		if(hashes[e] == h && Util.equiv(key, array[2 * e]))
+			return e;
+		}
+}
+
+/**
+ * Returns a map of the entries of a and b, with meta of a, as
+ * PersistentHashMap.merge does: for keys in both, the value is
+ * (f val-in-a val-in-b), or val-in-b if f is null. The entries of b are
+ * looked up in a copy of a by their cached hashes, so no key is hashed, and
+ * the result is a hash map only if it outgrows MAX_SIZE.
+ */
+static public IPersistentMap merge(PersistentFlatMap a, PersistentFlatMap b, IFn f){
+	TransientFlatMap t = new TransientFlatMap(a.hashes, a.array, a.hashes.length + b.hashes.length);
+	ITransientMap ret = t;
+	boolean changed = false;
+	for(int i = 0; i < b.hashes.length; i++)
+		{
+		Object key = b.array[2 * i];
+		Object val = b.array[2 * i + 1];
+		if(ret == t)
+			{
+			int j = indexOf(t.table, t.hashes, t.array, key, b.hashes[i]);
+			if(j >= 0)
+				{
+				if(f != null)
+					val = f.invoke(t.array[2 * j + 1], val);
+				if(t.array[2 * j + 1] != val)
+					{
+					t.array[2 * j + 1] = val;
+					changed = true;
+					}
+				continue;
+				}
+			changed = true;
+			if(t.count < MAX_SIZE)
+				{
+				t.append(-(j + 1), b.hashes[i], key, val);
+				continue;
+				}
+			ret = PersistentHashMap.create(Arrays.copyOf(t.array, 2 * t.count)).asTransient();
+			}
+		IMapEntry e = f == null ? null : ((ITransientAssociative2) ret).entryAt(key);
+		ret = ret.assoc(key, e != null ? f.invoke(e.val(), val) : val);
+		}
+	if(!changed)
+		return a;
+	IPersistentMap m = ret.persistent();
+	return a._meta == null ? m : (IPersistentMap) ((IObj) m).withMeta(a._meta);
+}
+
+/**
+ * Returns the keys at which a and b hold values that are not identical,
+ * including keys found in only one of them, as
+ * PersistentHashMap.differingKeys does. Maps sharing their entries, as one
+ * and its withMeta do, are equal without a look at them.
+ */
+static public IPersistentVector differingKeys(PersistentFlatMap a, PersistentFlatMap b){
+	ITransientCollection ret = PersistentVector.EMPTY.asTransient();
+	if(a.array == b.array)
+		return (IPersistentVector) ret.persistent();
+	for(int i = 0; i < a.hashes.length; i++)
+		{
+		int j = indexOf(b.table, b.hashes, b.array, a.array[2 * i], a.hashes[i]);
+		if(j < 0 || b.array[2 * j + 1] != a.array[2 * i + 1])
+			ret = ret.conj(a.array[2 * i]);
+		}
+	for(int j = 0; j < b.hashes.length; j++)
+		if(indexOf(a.table, a.hashes, a.array, b.array[2 * j], b.hashes[j]) < 0)
+			ret = ret.conj(b.array[2 * j]);
+	return (IPersistentVector) ret.persistent();
+}
+
+int indexOf(Object key){
+	return indexOf(table, hashes, array, key, Util.hasheq(key));
+}
+
+public PersistentFlatMap withMeta(IPersistentMap meta){
+	if(meta() == meta)
+		return this;
+	return new PersistentFlatMap(meta, hashes, array, table);
+}
+
+public IPersistentMap meta(){
+	return _meta;
+}
+
+public int count(){
+	return hashes.length;
+}
+
+public int hasheq(){
+	int cached = this._hasheq;
+	if(cached == 0)
+		{
+		//the key hashes are at hand, so this is Murmur3.hashEntry less a hasheq per key
+		int hash = 0;
+		for(int i = 0; i < hashes.length; i++)
+			hash += Murmur3.mixCollHash(31 * (31 + hashes[i]) + Util.hasheq(array[2 * i + 1]), 2);
+		this._hasheq = cached = Murmur3.mixCollHash(hash, hashes.length);
+		}
+	return cached;
+}
+
+public boolean containsKey(Object key){
+	return indexOf(key) >= 0;
+}
+
+public IMapEntry entryAt(Object key){
+	int i = indexOf(key);
+	if(i >= 0)
+		return MapEntry.create(array[2 * i], array[2 * i + 1]);
+	return null;
+}
+
+public Object valAt(Object key, Object notFound){
+	int i = indexOf(key);
+	if(i >= 0)
+		return array[2 * i + 1];
+	return notFound;
+}
+
+public Object valAt(Object key){
+	return valAt(key, null);
+}
+
+public IPersistentMap assocEx(Object key, Object val){
+	if(indexOf(key) >= 0)
+		throw Util.runtimeException("Key already present");
+	return assoc(key, val);
+}
+
+public IPersistentMap assoc(Object key, Object val){
+	int h = Util.hasheq(key);
+	int i = indexOf(table, hashes, array, key, h);
+	if(i >= 0) //already have key, same-sized replacement
+		{
+		if(array[2 * i + 1] == val)
+			return this;
+		Object[] newArray = array.clone();
+		newArray[2 * i + 1] = val;
+		return new PersistentFlatMap(_meta, hashes, newArray, table);
+		}
+	int n = hashes.length;
+	if(n >= MAX_SIZE)
+		return PersistentHashMap.create(_meta, array).assoc(key, val);
+	int[] newHashes = Arrays.copyOf(hashes, n + 1);
+	newHashes[n] = h;
+	Object[] newArray = Arrays.copyOf(array, 2 * n + 2);
+	newArray[2 * n] = key;
+	newArray[2 * n + 1] = val;
+	byte[] newTable;
+	if(tableSize(n + 1) == table.length)
+		{
+		newTable = table.clone();
+		newTable[-(i + 1)] = (byte) (n + 1);
+		}
+	else
+		newTable = index(newHashes, n + 1, tableSize(n + 1));
+	return new PersistentFlatMap(_meta, newHashes, newArray, newTable);
+}
+
+public IPersistentMap without(Object key){
+	int i = indexOf(key);
+	if(i < 0)
+		return this;
+	int n = hashes.length - 1;
+	if(n == 0)
+		return empty();
+	int[] newHashes = new int[n];
+	System.arraycopy(hashes, 0, newHashes, 0, i);
+	System.arraycopy(hashes, i + 1, newHashes, i, n - i);
+	Object[] newArray = new Object[2 * n];
+	System.arraycopy(array, 0, newArray, 0, 2 * i);
+	System.arraycopy(array, 2 * i + 2, newArray, 2 * i, 2 * (n - i));
+	return new PersistentFlatMap(_meta, newHashes, newArray, index(newHashes, n, tableSize(n)));
+}
+
+public IPersistentMap empty(){
+	return (IPersistentMap) PersistentArrayMap.EMPTY.withMeta(meta());
+}
+
+//the entries are laid out as in an array map, so its seq and iterators serve
+public ISeq seq(){
+	if(array.length > 0)
+		return new PersistentArrayMap.Seq(array, 0);
+	return null;
+}
+
+public Iterator iterator(){
+	return new PersistentArrayMap.Iter(array, APersistentMap.MAKE_ENTRY);
+}
+
+public Iterator keyIterator(){
+	return new PersistentArrayMap.Iter(array, APersistentMap.MAKE_KEY);
+}
+
+public Iterator valIterator(){
+	return new PersistentArrayMap.Iter(array, APersistentMap.MAKE_VAL);
+}
+
+public Object kvreduce(IFn f, Object init){
+	for(int i = 0; i < array.length; i += 2)
+		{
+		init = f.invoke(init, array[i], array[i + 1]);
+		if(RT.isReduced(init))
+			return ((IDeref) init).deref();
+		}
+	return init;
+}
+
+public ITransientMap asTransient(){
+	return new TransientFlatMap(hashes, array, hashes.length);
+}
+
+static final class TransientFlatMap extends ATransientMap{
+	volatile int count;
+	int[] hashes;
+	Object[] array;
+	byte[] table;
+	volatile Thread owner;
+
+	TransientFlatMap(int[] hashes, Object[] array, int capacity){
+		this.owner = Thread.currentThread();
+		int n = Math.max(hashes.length, Math.min(MAX_SIZE, Math.max(capacity, 16)));
+		this.hashes = Arrays.copyOf(hashes, n);
+		this.array = Arrays.copyOf(array, 2 * n);
+		this.count = hashes.length;
+		this.table = index(this.hashes, count, tableSize(n));
+	}
+
+	//adds an entry whose key is not in the map, at the empty slot its hash probed to
+	void append(int slot, int h, Object key, Object val){
+		int n = count;
+		if(n == hashes.length)
+			{
+			int cap = Math.min(MAX_SIZE, 2 * n);
+			hashes = Arrays.copyOf(hashes, cap);
+			array = Arrays.copyOf(array, 2 * cap);
+			table = index(hashes, n, tableSize(cap));
+			slot = emptySlot(table, h);
+			}
+		hashes[n] = h;
+		array[2 * n] = key;
+		array[2 * n + 1] = val;
+		table[slot] = (byte) (n + 1);
+		count = n + 1;
+	}
+
+	ITransientMap doAssoc(Object key, Object val){
+		int h = Util.hasheq(key);
+		int i = indexOf(table, hashes, array, key, h);
+		if(i >= 0) //already have key
+			{
+			if(array[2 * i + 1] != val)
+				array[2 * i + 1] = val;
+			}
+		else //didn't have key, grow
+			{
+			if(count >= MAX_SIZE)
+				return PersistentHashMap.create(Arrays.copyOf(array, 2 * count)).asTransient().assoc(key, val);
+			append(-(i + 1), h, key, val);
+			}
+		return this;
+	}
+
+	ITransientMap doWithout(Object key){
+		int i = indexOf(table, hashes, array, key, Util.hasheq(key));
+		if(i >= 0) //have key, will remove
+			{
+			int n = count - 1;
+			System.arraycopy(hashes, i + 1, hashes, i, n - i);
+			System.arraycopy(array, 2 * i + 2, array, 2 * i, 2 * (n - i));
+			array[2 * n] = null;
+			array[2 * n + 1] = null;
+			count = n;
+			table = index(hashes, n, table.length);
+			}
+		return this;
+	}
+
+	Object doValAt(Object key, Object notFound){
+		int i = indexOf(table, hashes, array, key, Util.hasheq(key));
+		if(i >= 0)
+			return array[2 * i + 1];
+		return notFound;
+	}
+
+	int doCount(){
+		return count;
+	}
+
+	IPersistentMap doPersistent(){
+		ensureEditable();
+		owner = null;
+		int n = count;
+		byte[] t = tableSize(n) == table.length ? table : index(hashes, n, tableSize(n));
+		return new PersistentFlatMap(null, Arrays.copyOf(hashes, n), Arrays.copyOf(array, 2 * n), t);
+	}
+
+	void ensureEditable(){
+		if(owner == null)
+			throw new IllegalAccessError("Transient used after persistent! call");
+	}
+}
+}
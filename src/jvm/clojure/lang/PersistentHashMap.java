@@ -262,6 +262,23 @@ public int count(){
 	return count;
 }
 
+public int hasheq(){
+	int cached = this._hasheq;
+	if(cached == 0)
+		{
+		//kvreduce walks the nodes without making an entry per key
+		final int[] hash = new int[1];
+		kvreduce(new AFn(){
+			public Object invoke(Object acc, Object key, Object val){
+				hash[0] += Murmur3.hashEntry(key, val);
+				return acc;
+			}
+		}, null);
+		this._hasheq = cached = Murmur3.mixCollHash(hash[0], count);
+		}
+	return cached;
+}
+
 public ISeq seq(){
 	ISeq s = root != null ? root.nodeSeq() : null; 
 	return hasNull ? new Cons(MapEntry.create(null, nullValue), s) : s;
@@ -276,6 +293,452 @@ static int mask(int hash, int shift){
 	return (hash >>> shift) & 0x01f;
 }
 
+//passed as f, keeps the entry of a, key and value, for keys in both
+static final IFn KEEP_LEFT = new AFn(){
+	public Object invoke(Object x, Object y){
+		return x;
+	}
+};
+
+/**
+ * Returns a map of the entries of a and b, with meta of a. For keys in both,
+ * the value is (f val-in-a val-in-b), or val-in-b if f is null, as conj'ing b
+ * onto a would give. The tries are walked together node by node: subtrees
+ * under hash prefixes found in only one map, and subtrees the maps share, are
+ * reused as they are, without hashing their keys. Only collision nodes and
+ * lone leaves facing a subtree are merged by assoc, so the cost grows with
+ * the difference between a and b rather than their size.
+ */
+static public PersistentHashMap merge(PersistentHashMap a, PersistentHashMap b, IFn f){
+	//entries of the result not in a
+	int[] added = new int[1];
+	INode root;
+	if(a.root == null)
+		{
+		root = b.root;
+		added[0] = size(b.root);
+		}
+	else if(b.root == null)
+		root = a.root;
+	else
+		root = mergeNodes(0, a.root, b.root, f, added);
+	Object nullValue = a.nullValue;
+	if(a.hasNull && b.hasNull)
+		nullValue = f == null ? b.nullValue : f.invoke(a.nullValue, b.nullValue);
+	else if(b.hasNull)
+		{
+		nullValue = b.nullValue;
+		added[0]++;
+		}
+	if(root == a.root && nullValue == a.nullValue && a.hasNull == (a.hasNull || b.hasNull))
+		return a;
+	return new PersistentHashMap(a._meta, a.count + added[0], root, a.hasNull || b.hasNull, nullValue);
+}
+
+/**
+ * Returns a map of the entries of a whose keys are in b, with meta of a.
+ */
+static public PersistentHashMap intersection(PersistentHashMap a, PersistentHashMap b){
+	int[] removed = new int[1];
+	INode root = null;
+	if(a.root != null && b.root != null)
+		root = intersectNodes(0, a.root, b.root, removed);
+	else
+		removed[0] = size(a.root);
+	boolean hasNull = a.hasNull && b.hasNull;
+	if(a.hasNull && !b.hasNull)
+		removed[0]++;
+	if(root == a.root && hasNull == a.hasNull)
+		return a;
+	return new PersistentHashMap(a._meta, a.count - removed[0], root, hasNull, hasNull ? a.nullValue : null);
+}
+
+/**
+ * Returns a map of the entries of a whose keys are not in b, with meta of a.
+ */
+static public PersistentHashMap difference(PersistentHashMap a, PersistentHashMap b){
+	int[] kept = new int[1];
+	INode root;
+	if(a.root != null && b.root != null)
+		root = differNodes(0, a.root, b.root, kept);
+	else
+		{
+		root = a.root;
+		kept[0] = size(a.root);
+		}
+	boolean hasNull = a.hasNull && !b.hasNull;
+	if(hasNull)
+		kept[0]++;
+	if(root == a.root && hasNull == a.hasNull)
+		return a;
+	return new PersistentHashMap(a._meta, kept[0], root, hasNull, hasNull ? a.nullValue : null);
+}
+
+/**
+ * Returns the keys at which a and b hold values that are not identical,
+ * including keys found in only one of them. Subtrees the maps share, and
+ * leaves holding identical values, are skipped, so maps derived one from
+ * the other cost in proportion to how far apart they have grown.
+ */
+static public IPersistentVector differingKeys(PersistentHashMap a, PersistentHashMap b){
+	ITransientCollection ret = PersistentVector.EMPTY.asTransient();
+	if(a.hasNull != b.hasNull || a.nullValue != b.nullValue)
+		ret = ret.conj(null);
+	return (IPersistentVector) differingKeys(0, a.root, b.root, ret).persistent();
+}
+
+static private ITransientCollection differingKeys(int shift, INode x, INode y, ITransientCollection ret){
+	if(x == y)
+		return ret;
+	if(x == null || y == null || x instanceof HashCollisionNode || y instanceof HashCollisionNode)
+		return addDiffering(shift, y, x, false, addDiffering(shift, x, y, true, ret));
+
+	Object[] keys = new Object[32];
+	Object[] vals = new Object[32];
+	Object[] yKeys = new Object[32];
+	Object[] yVals = new Object[32];
+	for(int i = 0; i < 32; i++)
+		{
+		boolean inX = slot(x, i, keys, vals);
+		boolean inY = slot(y, i, yKeys, yVals);
+		if(!inX && !inY)
+			continue;
+		if(inX && inY && keys[i] != null && yKeys[i] != null)
+			{
+			if(!Util.equiv(keys[i], yKeys[i]))
+				ret = ret.conj(keys[i]).conj(yKeys[i]);
+			else if(vals[i] != yVals[i])
+				ret = ret.conj(keys[i]);
+			}
+		else
+			ret = differingKeys(shift + 5, asNode(shift, inX, keys[i], vals[i]),
+			                    asNode(shift, inY, yKeys[i], yVals[i]), ret);
+		}
+	return ret;
+}
+
+//conjs the keys of node that other lacks, or if both, holds a different value for
+static private ITransientCollection addDiffering(int shift, INode node, INode other, boolean both,
+                                                 ITransientCollection ret){
+	if(node == null)
+		return ret;
+	for(Iterator it = node.iterator(APersistentMap.MAKE_ENTRY); it.hasNext();)
+		{
+		Map.Entry e = (Map.Entry) it.next();
+		Object k = e.getKey();
+		IMapEntry o = other == null ? null : other.find(shift, hash(k), k);
+		if(o == null || (both && o.val() != e.getValue()))
+			ret = ret.conj(k);
+		}
+	return ret;
+}
+
+//the subnode at a slot, or a node of one leaf, as one level down
+static private INode asNode(int shift, boolean present, Object key, Object val){
+	if(!present)
+		return null;
+	if(key == null)
+		return (INode) val;
+	return assocNew(null, shift + 5, hash(key), key, val);
+}
+
+static private INode mergeNodes(int shift, INode x, INode y, IFn f, int[] added){
+	if(x == y && (f == null || f == KEEP_LEFT))
+		return x;
+	if(x instanceof HashCollisionNode)
+		{
+		HashCollisionNode c = (HashCollisionNode) x;
+		INode ret = y;
+		added[0] += size(y);
+		for(int i = 0; i < 2 * c.count; i += 2)
+			ret = assocMerged(ret, shift, c.array[i], c.array[i + 1], false, f, added);
+		return ret;
+		}
+	if(y instanceof HashCollisionNode)
+		{
+		HashCollisionNode c = (HashCollisionNode) y;
+		INode ret = x;
+		for(int i = 0; i < 2 * c.count; i += 2)
+			ret = assocMerged(ret, shift, c.array[i], c.array[i + 1], true, f, added);
+		return ret;
+		}
+
+	Object[] keys = new Object[32];
+	Object[] vals = new Object[32];
+	Object[] yKeys = new Object[32];
+	Object[] yVals = new Object[32];
+	boolean changed = false;
+	for(int i = 0; i < 32; i++)
+		{
+		boolean inX = slot(x, i, keys, vals);
+		boolean inY = slot(y, i, yKeys, yVals);
+		if(!inY)
+			continue;
+		Object xk = keys[i], xv = vals[i], yk = yKeys[i], yv = yVals[i];
+		//a null key marks a subnode, as in BitmapIndexedNode
+		if(!inX)
+			{
+			keys[i] = yk;
+			vals[i] = yv;
+			added[0] += yk == null ? size((INode) yv) : 1;
+			}
+		else if(xk == null && yk == null)
+			vals[i] = mergeNodes(shift + 5, (INode) xv, (INode) yv, f, added);
+		else if(xk == null)
+			vals[i] = assocMerged((INode) xv, shift + 5, yk, yv, true, f, added);
+		else if(yk == null)
+			{
+			keys[i] = null;
+			added[0] += size((INode) yv);
+			vals[i] = assocMerged((INode) yv, shift + 5, xk, xv, false, f, added);
+			}
+		else if(Util.equiv(xk, yk))
+			vals[i] = f == null ? yv : f.invoke(xv, yv);
+		else
+			{
+			keys[i] = null;
+			vals[i] = createNode(shift + 5, xk, xv, hash(yk), yk, yv);
+			added[0]++;
+			}
+		changed |= keys[i] != xk || vals[i] != xv;
+		}
+	return changed ? pack(shift, keys, vals) : x;
+}
+
+//assocs key into node, combining with any value already there in a-then-b
+//order, an entry from a keeping its key
+static private INode assocMerged(INode node, int shift, Object key, Object val, boolean valFromB, IFn f,
+                                 int[] added){
+	int h = hash(key);
+	IMapEntry e = node.find(shift, h, key);
+	if(e == null)
+		{
+		if(valFromB)
+			added[0]++;
+		}
+	else if(valFromB)
+		val = f == null ? val : f.invoke(e.val(), val);
+	else
+		{
+		added[0]--;
+		val = f == null ? e.val() : f.invoke(val, e.val());
+		if(e.key() != key)
+			{
+			node = node.without(shift, h, e.key());
+			if(node == null)
+				node = BitmapIndexedNode.EMPTY;
+			}
+		}
+	return node.assoc(shift, h, key, val, new Box(null));
+}
+
+static private INode intersectNodes(int shift, INode x, INode y, int[] removed){
+	if(x == y)
+		return x;
+	if(x instanceof HashCollisionNode)
+		{
+		HashCollisionNode c = (HashCollisionNode) x;
+		INode ret = null;
+		for(int i = 0; i < 2 * c.count; i += 2)
+			{
+			if(y.find(shift, c.hash, c.array[i]) != null)
+				ret = assocNew(ret, shift, c.hash, c.array[i], c.array[i + 1]);
+			else
+				removed[0]++;
+			}
+		return ret;
+		}
+	if(y instanceof HashCollisionNode)
+		{
+		HashCollisionNode c = (HashCollisionNode) y;
+		INode ret = null;
+		int found = 0;
+		for(int i = 0; i < 2 * c.count; i += 2)
+			{
+			IMapEntry e = x.find(shift, c.hash, c.array[i]);
+			if(e != null)
+				{
+				ret = assocNew(ret, shift, c.hash, e.key(), e.val());
+				found++;
+				}
+			}
+		removed[0] += size(x) - found;
+		return ret;
+		}
+
+	Object[] keys = new Object[32];
+	Object[] vals = new Object[32];
+	Object[] yKeys = new Object[32];
+	Object[] yVals = new Object[32];
+	boolean changed = false;
+	for(int i = 0; i < 32; i++)
+		{
+		if(!slot(x, i, keys, vals))
+			continue;
+		Object xk = keys[i], xv = vals[i];
+		if(!slot(y, i, yKeys, yVals))
+			{
+			removed[0] += xk == null ? size((INode) xv) : 1;
+			keys[i] = vals[i] = null;
+			}
+		else if(xk == null && yKeys[i] == null)
+			vals[i] = intersectNodes(shift + 5, (INode) xv, (INode) yVals[i], removed);
+		else if(xk == null)
+			{
+			IMapEntry e = ((INode) xv).find(shift + 5, hash(yKeys[i]), yKeys[i]);
+			removed[0] += size((INode) xv) - (e != null ? 1 : 0);
+			keys[i] = e != null ? e.key() : null;
+			vals[i] = e != null ? e.val() : null;
+			}
+		else if(yKeys[i] == null ? ((INode) yVals[i]).find(shift + 5, hash(xk), xk) == null
+		                         : !Util.equiv(xk, yKeys[i]))
+			{
+			removed[0]++;
+			keys[i] = vals[i] = null;
+			}
+		changed |= keys[i] != xk || vals[i] != xv;
+		}
+	return changed ? pack(shift, keys, vals) : x;
+}
+
+static private INode differNodes(int shift, INode x, INode y, int[] kept){
+	if(x == y)
+		return null;
+	if(x instanceof HashCollisionNode)
+		{
+		HashCollisionNode c = (HashCollisionNode) x;
+		INode ret = null;
+		for(int i = 0; i < 2 * c.count; i += 2)
+			{
+			if(y.find(shift, c.hash, c.array[i]) == null)
+				{
+				ret = assocNew(ret, shift, c.hash, c.array[i], c.array[i + 1]);
+				kept[0]++;
+				}
+			}
+		return ret;
+		}
+	if(y instanceof HashCollisionNode)
+		{
+		HashCollisionNode c = (HashCollisionNode) y;
+		INode ret = x;
+		for(int i = 0; i < 2 * c.count && ret != null; i += 2)
+			ret = ret.without(shift, c.hash, c.array[i]);
+		kept[0] += size(ret);
+		return ret;
+		}
+
+	Object[] keys = new Object[32];
+	Object[] vals = new Object[32];
+	Object[] yKeys = new Object[32];
+	Object[] yVals = new Object[32];
+	boolean changed = false;
+	for(int i = 0; i < 32; i++)
+		{
+		if(!slot(x, i, keys, vals))
+			continue;
+		Object xk = keys[i], xv = vals[i];
+		if(!slot(y, i, yKeys, yVals))
+			kept[0] += xk == null ? size((INode) xv) : 1;
+		else if(xk == null && yKeys[i] == null)
+			vals[i] = differNodes(shift + 5, (INode) xv, (INode) yVals[i], kept);
+		else if(xk == null)
+			{
+			vals[i] = ((INode) xv).without(shift + 5, hash(yKeys[i]), yKeys[i]);
+			kept[0] += size((INode) vals[i]);
+			}
+		else if(yKeys[i] == null ? ((INode) yVals[i]).find(shift + 5, hash(xk), xk) == null
+		                         : !Util.equiv(xk, yKeys[i]))
+			kept[0]++;
+		else
+			keys[i] = vals[i] = null;
+		changed |= keys[i] != xk || vals[i] != xv;
+		}
+	return changed ? pack(shift, keys, vals) : x;
+}
+
+static private INode assocNew(INode node, int shift, int hash, Object key, Object val){
+	return (node == null ? BitmapIndexedNode.EMPTY : node).assoc(shift, hash, key, val, new Box(null));
+}
+
+//stores the leaf key and value, or null and the subnode, at position i of
+//node into keys[i] and vals[i], returning false if the position is empty
+static private boolean slot(INode node, int i, Object[] keys, Object[] vals){
+	keys[i] = null;
+	vals[i] = null;
+	if(node instanceof ArrayNode)
+		{
+		vals[i] = ((ArrayNode) node).array[i];
+		return vals[i] != null;
+		}
+	BitmapIndexedNode b = (BitmapIndexedNode) node;
+	int bit = 1 << i;
+	if((b.bitmap & bit) == 0)
+		return false;
+	int idx = b.index(bit);
+	keys[i] = b.array[2 * idx];
+	vals[i] = b.array[2 * idx + 1];
+	return true;
+}
+
+//builds a node from the leaves and subnodes gathered by slot, null for none
+static private INode pack(int shift, Object[] keys, Object[] vals){
+	int n = 0;
+	for(int i = 0; i < 32; i++)
+		if(vals[i] != null || keys[i] != null)
+			n++;
+	if(n == 0)
+		return null;
+	if(n >= 16)
+		{
+		INode[] nodes = new INode[32];
+		for(int i = 0; i < 32; i++)
+			{
+			if(keys[i] != null)
+				nodes[i] = assocNew(null, shift + 5, hash(keys[i]), keys[i], vals[i]);
+			else
+				nodes[i] = (INode) vals[i];
+			}
+		return new ArrayNode(null, n, nodes);
+		}
+	int bitmap = 0;
+	Object[] array = new Object[2 * n];
+	for(int i = 0, j = 0; i < 32; i++)
+		{
+		if(keys[i] != null || vals[i] != null)
+			{
+			bitmap |= 1 << i;
+			array[j++] = keys[i];
+			array[j++] = vals[i];
+			}
+		}
+	return new BitmapIndexedNode(null, bitmap, array);
+}
+
+//number of entries under node, found without hashing
+static private int size(INode node){
+	if(node == null)
+		return 0;
+	if(node instanceof HashCollisionNode)
+		return ((HashCollisionNode) node).count;
+	int n = 0;
+	if(node instanceof ArrayNode)
+		{
+		for(INode child : ((ArrayNode) node).array)
+			n += size(child);
+		return n;
+		}
+	Object[] array = ((BitmapIndexedNode) node).array;
+	for(int i = 0; i < array.length; i += 2)
+		{
+		if(array[i] != null)
+			n++;
+		else if(array[i + 1] != null)
+			n += size((INode) array[i + 1]);
+		}
+	return n;
+}
+
 public PersistentHashMap withMeta(IPersistentMap meta){
 	if(_meta == meta)
 		return this;
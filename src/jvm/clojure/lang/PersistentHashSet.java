@@ -87,6 +87,35 @@ PersistentHashSet(IPersistentMap meta, IPersistentMap impl){
 	this._meta = meta;
 }
 
+/**
+ * Returns the union of a and b, with meta of a, keeping the elements of a.
+ * The sets' tries are merged node by node, as by PersistentHashMap.merge.
+ */
+static public PersistentHashSet union(PersistentHashSet a, PersistentHashSet b){
+	return a.withImpl(PersistentHashMap.merge((PersistentHashMap) a.impl, (PersistentHashMap) b.impl,
+	                                          PersistentHashMap.KEEP_LEFT));
+}
+
+/**
+ * Returns the elements of a also in b, with meta of a.
+ */
+static public PersistentHashSet intersection(PersistentHashSet a, PersistentHashSet b){
+	return a.withImpl(PersistentHashMap.intersection((PersistentHashMap) a.impl, (PersistentHashMap) b.impl));
+}
+
+/**
+ * Returns the elements of a not in b, with meta of a.
+ */
+static public PersistentHashSet difference(PersistentHashSet a, PersistentHashSet b){
+	return a.withImpl(PersistentHashMap.difference((PersistentHashMap) a.impl, (PersistentHashMap) b.impl));
+}
+
+PersistentHashSet withImpl(IPersistentMap impl){
+	if(impl == this.impl)
+		return this;
+	return new PersistentHashSet(meta(), impl);
+}
+
 public IPersistentSet disjoin(Object key) {
 	if(contains(key))
 		return new PersistentHashSet(meta(),impl.without(key));
@@ -113,6 +142,20 @@ public ITransientCollection asTransient() {
 	return new TransientHashSet(((PersistentHashMap) impl).asTransient());
 }
 
+public Object fold(long n, IFn combinef, IFn reducef,
+                   IFn fjinvoke, IFn fjtask, IFn fjfork, IFn fjjoin){
+	return ((PersistentHashMap) impl).fold(n, combinef, keyReducer(reducef), fjinvoke, fjtask, fjfork, fjjoin);
+}
+
+//adapts a set reducing fn to the (acc k v) shape of the backing map
+static IFn keyReducer(final IFn reducef){
+	return new AFn(){
+		public Object invoke(Object acc, Object k, Object v){
+			return reducef.invoke(acc, k);
+		}
+	};
+}
+
 public IPersistentMap meta(){
 	return _meta;
 }
@@ -0,0 +1,1211 @@
+/**
+ *   Copyright (c) Rich Hickey. All rights reserved.
+ *   The use and distribution terms for this software are covered by the
+ *   Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ *   which can be found in the file epl-v10.html at the root of this distribution.
+ *   By using this software in any fashion, you are agreeing to be bound by
+ * 	 the terms of this license.
+ *   You must not remove this notice, or any other, from this software.
+ **/
+
+package clojure.lang;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ A PersistentHashMap specialized for primitive long keys
+
+ Same trie shape as PersistentHashMap (bitmap nodes, 32-way array nodes,
+ collision leaves), but leaf keys live unboxed in a long[] alongside the
+ value array. A second bitmap (nodemap) marks which occupied slots hold
+ sub-nodes, since there is no null key to flag them.
+
+ Keys are boxed only when handed out (entries, seqs, iterators, kvreduce).
+ Object-keyed lookups accept any fixed-precision integer and return
+ notFound for everything else.
+ */
+
+public class PersistentLongHashMap extends APersistentMap implements IEditableCollection, IObj, IMapIterable, IKVReduce {
+
+final int count;
+final INode root;
+final IPersistentMap _meta;
+
+final public static PersistentLongHashMap EMPTY = new PersistentLongHashMap(null, 0, null);
+final private static Object NOT_FOUND = new Object();
+
+static public PersistentLongHashMap create(Map other){
+	TransientLongHashMap ret = EMPTY.asTransient();
+	for(Object o : other.entrySet())
+		{
+		Map.Entry e = (Entry) o;
+		ret.assoc(e.getKey(), e.getValue());
+		}
+	return (PersistentLongHashMap) ret.persistent();
+}
+
+/*
+ * @param init {key1,val1,key2,val2,...}
+ */
+public static PersistentLongHashMap create(Object... init){
+	TransientLongHashMap ret = EMPTY.asTransient();
+	for(int i = 0; i < init.length; i += 2)
+		{
+		ret.assoc(init[i], init[i + 1]);
+		}
+	return (PersistentLongHashMap) ret.persistent();
+}
+
+/*
+ * @param keys, vals parallel arrays of equal length
+ */
+public static PersistentLongHashMap create(long[] keys, Object[] vals){
+	if(keys.length != vals.length)
+		throw new IllegalArgumentException("keys and vals must have the same length");
+	TransientLongHashMap ret = EMPTY.asTransient();
+	for(int i = 0; i < keys.length; i++)
+		{
+		ret.assoc(keys[i], vals[i]);
+		}
+	return (PersistentLongHashMap) ret.persistent();
+}
+
+static public PersistentLongHashMap create(ISeq items){
+	TransientLongHashMap ret = EMPTY.asTransient();
+	for(; items != null; items = items.next().next())
+		{
+		if(items.next() == null)
+			throw new IllegalArgumentException(String.format("No value supplied for key: %s", items.first()));
+		ret.assoc(items.first(), RT.second(items));
+		}
+	return (PersistentLongHashMap) ret.persistent();
+}
+
+PersistentLongHashMap(IPersistentMap meta, int count, INode root){
+	this._meta = meta;
+	this.count = count;
+	this.root = root;
+}
+
+static int hash(long k){
+	return Murmur3.hashLong(k);
+}
+
+/*
+ * true if key is a fixed-precision integer that can be held as a long key
+ */
+static boolean isLongKey(Object key){
+	return key instanceof Long
+	       || key instanceof Integer
+	       || key instanceof Short
+	       || key instanceof Byte
+	       || (key instanceof BigInt && ((BigInt) key).bipart == null);
+}
+
+static long longKey(Object key){
+	if(key instanceof BigInt)
+		return ((BigInt) key).lpart;
+	if(isLongKey(key))
+		return ((Number) key).longValue();
+	throw new IllegalArgumentException("Key must be a long: " + key);
+}
+
+public boolean containsKey(long key){
+	return (root != null) ? root.find(0, hash(key), key, NOT_FOUND) != NOT_FOUND : false;
+}
+
+public boolean containsKey(Object key){
+	return isLongKey(key) && containsKey(longKey(key));
+}
+
+public IMapEntry entryAt(long key){
+	return (root != null) ? root.find(0, hash(key), key) : null;
+}
+
+public IMapEntry entryAt(Object key){
+	return isLongKey(key) ? entryAt(longKey(key)) : null;
+}
+
+public PersistentLongHashMap assoc(long key, Object val){
+	Box addedLeaf = new Box(null);
+	INode newroot = (root == null ? BitmapIndexedNode.EMPTY : root)
+			.assoc(0, hash(key), key, val, addedLeaf);
+	if(newroot == root)
+		return this;
+	return new PersistentLongHashMap(meta(), addedLeaf.val == null ? count : count + 1, newroot);
+}
+
+public IPersistentMap assoc(Object key, Object val){
+	return assoc(longKey(key), val);
+}
+
+public Object valAt(long key, Object notFound){
+	return root != null ? root.find(0, hash(key), key, notFound) : notFound;
+}
+
+public Object valAt(long key){
+	return valAt(key, null);
+}
+
+public Object valAt(Object key, Object notFound){
+	return isLongKey(key) ? valAt(longKey(key), notFound) : notFound;
+}
+
+public Object valAt(Object key){
+	return valAt(key, null);
+}
+
+public IPersistentMap assocEx(Object key, Object val) {
+	if(containsKey(key))
+		throw Util.runtimeException("Key already present");
+	return assoc(key, val);
+}
+
+public PersistentLongHashMap without(long key){
+	if(root == null)
+		return this;
+	INode newroot = root.without(0, hash(key), key);
+	if(newroot == root)
+		return this;
+	return new PersistentLongHashMap(meta(), count - 1, newroot);
+}
+
+public IPersistentMap without(Object key){
+	return isLongKey(key) ? without(longKey(key)) : this;
+}
+
+private Iterator iterator(IFn f){
+	return (root == null) ? PersistentHashMap.EMPTY_ITER : root.iterator(f);
+}
+
+public Iterator iterator(){
+	return iterator(APersistentMap.MAKE_ENTRY);
+}
+
+public Iterator keyIterator(){
+	return iterator(APersistentMap.MAKE_KEY);
+}
+
+public Iterator valIterator(){
+	return iterator(APersistentMap.MAKE_VAL);
+}
+
+public Object kvreduce(IFn f, Object init){
+	if(root != null){
+		init = root.kvreduce(f,init);
+		if(RT.isReduced(init))
+			return ((IDeref)init).deref();
+	}
+	return init;
+}
+
+public Object fold(long n, final IFn combinef, final IFn reducef,
+                   IFn fjinvoke, final IFn fjtask, final IFn fjfork, final IFn fjjoin){
+	//we are ignoring n for now
+	Callable top = new Callable(){
+		public Object call() throws Exception{
+			Object ret = combinef.invoke();
+			if(root != null)
+				ret = combinef.invoke(ret, root.fold(combinef,reducef,fjtask,fjfork,fjjoin));
+			return ret;
+		}
+	};
+	return fjinvoke.invoke(top);
+}
+
+public int count(){
+	return count;
+}
+
+public ISeq seq(){
+	return root != null ? root.nodeSeq() : null;
+}
+
+public IPersistentCollection empty(){
+	return EMPTY.withMeta(meta());
+}
+
+static int mask(int hash, int shift){
+	return (hash >>> shift) & 0x01f;
+}
+
+public PersistentLongHashMap withMeta(IPersistentMap meta){
+	if(_meta == meta)
+		return this;
+	return new PersistentLongHashMap(meta, count, root);
+}
+
+public TransientLongHashMap asTransient() {
+	return new TransientLongHashMap(this);
+}
+
+public IPersistentMap meta(){
+	return _meta;
+}
+
+static public final class TransientLongHashMap extends ATransientMap {
+	final AtomicReference<Thread> edit;
+	volatile INode root;
+	volatile int count;
+	final Box leafFlag = new Box(null);
+
+	TransientLongHashMap(PersistentLongHashMap m) {
+		this.edit = new AtomicReference<Thread>(Thread.currentThread());
+		this.root = m.root;
+		this.count = m.count;
+	}
+
+	public TransientLongHashMap assoc(long key, Object val) {
+		ensureEditable();
+		leafFlag.val = null;
+		INode n = (root == null ? BitmapIndexedNode.EMPTY : root)
+			.assoc(edit, 0, hash(key), key, val, leafFlag);
+		if (n != this.root)
+			this.root = n;
+		if(leafFlag.val != null) this.count++;
+		return this;
+	}
+
+	public TransientLongHashMap without(long key) {
+		ensureEditable();
+		if (root == null) return this;
+		leafFlag.val = null;
+		INode n = root.without(edit, 0, hash(key), key, leafFlag);
+		if (n != root)
+			this.root = n;
+		if(leafFlag.val != null) this.count--;
+		return this;
+	}
+
+	public Object valAt(long key, Object notFound) {
+		ensureEditable();
+		if (root == null)
+			return notFound;
+		return root.find(0, hash(key), key, notFound);
+	}
+
+	public Object valAt(long key) {
+		return valAt(key, null);
+	}
+
+	ITransientMap doAssoc(Object key, Object val) {
+		return assoc(longKey(key), val);
+	}
+
+	ITransientMap doWithout(Object key) {
+		return isLongKey(key) ? without(longKey(key)) : this;
+	}
+
+	IPersistentMap doPersistent() {
+		edit.set(null);
+		return new PersistentLongHashMap(null, count, root);
+	}
+
+	Object doValAt(Object key, Object notFound) {
+		return isLongKey(key) ? valAt(longKey(key), notFound) : notFound;
+	}
+
+	int doCount() {
+		return count;
+	}
+
+	void ensureEditable(){
+		if(edit.get() == null)
+			throw new IllegalAccessError("Transient used after persistent! call");
+	}
+}
+
+static interface INode extends Serializable {
+	INode assoc(int shift, int hash, long key, Object val, Box addedLeaf);
+
+	INode without(int shift, int hash, long key);
+
+	IMapEntry find(int shift, int hash, long key);
+
+	Object find(int shift, int hash, long key, Object notFound);
+
+	ISeq nodeSeq();
+
+	INode assoc(AtomicReference<Thread> edit, int shift, int hash, long key, Object val, Box addedLeaf);
+
+	INode without(AtomicReference<Thread> edit, int shift, int hash, long key, Box removedLeaf);
+
+	Object kvreduce(IFn f, Object init);
+
+	Object fold(IFn combinef, IFn reducef, IFn fjtask, IFn fjfork, IFn fjjoin);
+
+	// returns the result of (f k v) for each iterated element
+	Iterator iterator(IFn f);
+}
+
+final static class ArrayNode implements INode{
+	int count;
+	final INode[] array;
+	final AtomicReference<Thread> edit;
+
+	ArrayNode(AtomicReference<Thread> edit, int count, INode[] array){
+		this.array = array;
+		this.edit = edit;
+		this.count = count;
+	}
+
+	public INode assoc(int shift, int hash, long key, Object val, Box addedLeaf){
+		int idx = mask(hash, shift);
+		INode node = array[idx];
+		if(node == null)
+			return new ArrayNode(null, count + 1, cloneAndSet(array, idx, BitmapIndexedNode.EMPTY.assoc(shift + 5, hash, key, val, addedLeaf)));
+		INode n = node.assoc(shift + 5, hash, key, val, addedLeaf);
+		if(n == node)
+			return this;
+		return new ArrayNode(null, count, cloneAndSet(array, idx, n));
+	}
+
+	public INode without(int shift, int hash, long key){
+		int idx = mask(hash, shift);
+		INode node = array[idx];
+		if(node == null)
+			return this;
+		INode n = node.without(shift + 5, hash, key);
+		if(n == node)
+			return this;
+		if (n == null) {
+			if (count <= 8) // shrink
+				return pack(null, idx);
+			return new ArrayNode(null, count - 1, cloneAndSet(array, idx, n));
+		} else
+			return new ArrayNode(null, count, cloneAndSet(array, idx, n));
+	}
+
+	public IMapEntry find(int shift, int hash, long key){
+		INode node = array[mask(hash, shift)];
+		if(node == null)
+			return null;
+		return node.find(shift + 5, hash, key);
+	}
+
+	public Object find(int shift, int hash, long key, Object notFound){
+		INode node = array[mask(hash, shift)];
+		if(node == null)
+			return notFound;
+		return node.find(shift + 5, hash, key, notFound);
+	}
+
+	public ISeq nodeSeq(){
+		return Seq.create(array);
+	}
+
+	public Iterator iterator(IFn f){
+		return new Iter(array, f);
+	}
+
+	public Object kvreduce(IFn f, Object init){
+		for(INode node : array){
+			if(node != null){
+				init = node.kvreduce(f,init);
+				if(RT.isReduced(init))
+					return init;
+				}
+			}
+		return init;
+	}
+
+	public Object fold(final IFn combinef, final IFn reducef,
+	                   final IFn fjtask, final IFn fjfork, final IFn fjjoin){
+		List<Callable> tasks = new ArrayList();
+		for(final INode node : array){
+			if(node != null){
+				tasks.add(new Callable(){
+					public Object call() throws Exception{
+						return node.fold(combinef, reducef, fjtask, fjfork, fjjoin);
+					}
+				});
+				}
+			}
+		return PersistentHashMap.ArrayNode.foldTasks(tasks,combinef,fjtask,fjfork,fjjoin);
+	}
+
+	private ArrayNode ensureEditable(AtomicReference<Thread> edit){
+		if(this.edit == edit)
+			return this;
+		return new ArrayNode(edit, count, this.array.clone());
+	}
+
+	private ArrayNode editAndSet(AtomicReference<Thread> edit, int i, INode n){
+		ArrayNode editable = ensureEditable(edit);
+		editable.array[i] = n;
+		return editable;
+	}
+
+	private INode pack(AtomicReference<Thread> edit, int idx) {
+		Object[] newArray = new Object[count - 1];
+		int j = 0;
+		int bitmap = 0;
+		for(int i = 0; i < array.length; i++)
+			if (i != idx && array[i] != null) {
+				newArray[j++] = array[i];
+				bitmap |= 1 << i;
+			}
+		return new BitmapIndexedNode(edit, bitmap, bitmap, new long[count - 1], newArray);
+	}
+
+	public INode assoc(AtomicReference<Thread> edit, int shift, int hash, long key, Object val, Box addedLeaf){
+		int idx = mask(hash, shift);
+		INode node = array[idx];
+		if(node == null) {
+			ArrayNode editable = editAndSet(edit, idx, BitmapIndexedNode.EMPTY.assoc(edit, shift + 5, hash, key, val, addedLeaf));
+			editable.count++;
+			return editable;
+		}
+		INode n = node.assoc(edit, shift + 5, hash, key, val, addedLeaf);
+		if(n == node)
+			return this;
+		return editAndSet(edit, idx, n);
+	}
+
+	public INode without(AtomicReference<Thread> edit, int shift, int hash, long key, Box removedLeaf){
+		int idx = mask(hash, shift);
+		INode node = array[idx];
+		if(node == null)
+			return this;
+		INode n = node.without(edit, shift + 5, hash, key, removedLeaf);
+		if(n == node)
+			return this;
+		if(n == null) {
+			if (count <= 8) // shrink
+				return pack(edit, idx);
+			ArrayNode editable = editAndSet(edit, idx, n);
+			editable.count--;
+			return editable;
+		}
+		return editAndSet(edit, idx, n);
+	}
+
+	static class Seq extends ASeq {
+		final INode[] nodes;
+		final int i;
+		final ISeq s;
+
+		static ISeq create(INode[] nodes) {
+			return create(null, nodes, 0, null);
+		}
+
+		private static ISeq create(IPersistentMap meta, INode[] nodes, int i, ISeq s) {
+			if (s != null)
+				return new Seq(meta, nodes, i, s);
+			for(int j = i; j < nodes.length; j++)
+				if (nodes[j] != null) {
+					ISeq ns = nodes[j].nodeSeq();
+					if (ns != null)
+						return new Seq(meta, nodes, j + 1, ns);
+				}
+			return null;
+		}
+
+		private Seq(IPersistentMap meta, INode[] nodes, int i, ISeq s) {
+			super(meta);
+			this.nodes = nodes;
+			this.i = i;
+			this.s = s;
+		}
+
+		public Obj withMeta(IPersistentMap meta) {
+			if(meta() == meta)
+				return this;
+			return new Seq(meta, nodes, i, s);
+		}
+
+		public Object first() {
+			return s.first();
+		}
+
+		public ISeq next() {
+			return create(null, nodes, i, s.next());
+		}
+	}
+
+	static class Iter implements Iterator {
+		private final INode[] array;
+		private final IFn f;
+		private int i = 0;
+		private Iterator nestedIter;
+
+		private Iter(INode[] array, IFn f){
+			this.array = array;
+			this.f = f;
+		}
+
+		public boolean hasNext(){
+			while(true)
+			{
+				if(nestedIter != null)
+					if(nestedIter.hasNext())
+						return true;
+					else
+						nestedIter = null;
+
+				if(i < array.length)
+				{
+					INode node = array[i++];
+					if (node != null)
+						nestedIter = node.iterator(f);
+				}
+				else
+					return false;
+			}
+		}
+
+		public Object next(){
+			if(hasNext())
+				return nestedIter.next();
+			else
+				throw new NoSuchElementException();
+		}
+
+		public void remove(){
+			throw new UnsupportedOperationException();
+		}
+	}
+}
+
+final static class BitmapIndexedNode implements INode{
+	static final BitmapIndexedNode EMPTY = new BitmapIndexedNode(null, 0, 0, new long[0], new Object[0]);
+
+	int bitmap;
+	// subset of bitmap whose slots hold an INode rather than a key/val
+	int nodemap;
+	long[] keys;
+	Object[] array;
+	final AtomicReference<Thread> edit;
+
+	final int index(int bit){
+		return Integer.bitCount(bitmap & (bit - 1));
+	}
+
+	BitmapIndexedNode(AtomicReference<Thread> edit, int bitmap, int nodemap, long[] keys, Object[] array){
+		this.bitmap = bitmap;
+		this.nodemap = nodemap;
+		this.keys = keys;
+		this.array = array;
+		this.edit = edit;
+	}
+
+	public INode assoc(int shift, int hash, long key, Object val, Box addedLeaf){
+		int bit = bitpos(hash, shift);
+		int idx = index(bit);
+		if((bitmap & bit) != 0) {
+			Object valOrNode = array[idx];
+			if((nodemap & bit) != 0) {
+				INode n = ((INode) valOrNode).assoc(shift + 5, hash, key, val, addedLeaf);
+				if(n == valOrNode)
+					return this;
+				return new BitmapIndexedNode(null, bitmap, nodemap, keys, cloneAndSet(array, idx, n));
+			}
+			if(key == keys[idx]) {
+				if(val == valOrNode)
+					return this;
+				return new BitmapIndexedNode(null, bitmap, nodemap, keys, cloneAndSet(array, idx, val));
+			}
+			addedLeaf.val = addedLeaf;
+			return new BitmapIndexedNode(null, bitmap, nodemap | bit, keys,
+					cloneAndSet(array, idx, createNode(shift + 5, keys[idx], valOrNode, hash, key, val)));
+		} else {
+			int n = Integer.bitCount(bitmap);
+			if(n >= 16) {
+				INode[] nodes = new INode[32];
+				int jdx = mask(hash, shift);
+				nodes[jdx] = EMPTY.assoc(shift + 5, hash, key, val, addedLeaf);
+				int j = 0;
+				for(int i = 0; i < 32; i++)
+					if(((bitmap >>> i) & 1) != 0) {
+						if (((nodemap >>> i) & 1) != 0)
+							nodes[i] = (INode) array[j];
+						else
+							nodes[i] = EMPTY.assoc(shift + 5, hash(keys[j]), keys[j], array[j], addedLeaf);
+						j++;
+					}
+				return new ArrayNode(null, n + 1, nodes);
+			} else {
+				long[] newKeys = new long[n+1];
+				Object[] newArray = new Object[n+1];
+				System.arraycopy(keys, 0, newKeys, 0, idx);
+				System.arraycopy(array, 0, newArray, 0, idx);
+				newKeys[idx] = key;
+				newArray[idx] = val;
+				addedLeaf.val = addedLeaf;
+				System.arraycopy(keys, idx, newKeys, idx+1, n-idx);
+				System.arraycopy(array, idx, newArray, idx+1, n-idx);
+				return new BitmapIndexedNode(null, bitmap | bit, nodemap, newKeys, newArray);
+			}
+		}
+	}
+
+	public INode without(int shift, int hash, long key){
+		int bit = bitpos(hash, shift);
+		if((bitmap & bit) == 0)
+			return this;
+		int idx = index(bit);
+		if((nodemap & bit) != 0) {
+			INode node = (INode) array[idx];
+			INode n = node.without(shift + 5, hash, key);
+			if (n == node)
+				return this;
+			if (n != null)
+				return new BitmapIndexedNode(null, bitmap, nodemap, keys, cloneAndSet(array, idx, n));
+			if (bitmap == bit)
+				return null;
+			return new BitmapIndexedNode(null, bitmap ^ bit, nodemap ^ bit, removeKey(keys, idx), removeVal(array, idx));
+		}
+		if(key == keys[idx]) {
+			if (bitmap == bit)
+				return null;
+			return new BitmapIndexedNode(null, bitmap ^ bit, nodemap, removeKey(keys, idx), removeVal(array, idx));
+		}
+		return this;
+	}
+
+	public IMapEntry find(int shift, int hash, long key){
+		int bit = bitpos(hash, shift);
+		if((bitmap & bit) == 0)
+			return null;
+		int idx = index(bit);
+		if((nodemap & bit) != 0)
+			return ((INode) array[idx]).find(shift + 5, hash, key);
+		if(key == keys[idx])
+			return (IMapEntry) MapEntry.create(key, array[idx]);
+		return null;
+	}
+
+	public Object find(int shift, int hash, long key, Object notFound){
+		int bit = bitpos(hash, shift);
+		if((bitmap & bit) == 0)
+			return notFound;
+		int idx = index(bit);
+		if((nodemap & bit) != 0)
+			return ((INode) array[idx]).find(shift + 5, hash, key, notFound);
+		if(key == keys[idx])
+			return array[idx];
+		return notFound;
+	}
+
+	public ISeq nodeSeq(){
+		return NodeSeq.create(this, 0, bitmap, null);
+	}
+
+	public Iterator iterator(IFn f){
+		return new NodeIter(this, f);
+	}
+
+	public Object kvreduce(IFn f, Object init){
+		int i = 0;
+		for(int rest = bitmap; rest != 0; rest &= rest - 1, i++)
+			{
+			if((nodemap & Integer.lowestOneBit(rest)) != 0)
+				init = ((INode) array[i]).kvreduce(f, init);
+			else
+				init = f.invoke(init, keys[i], array[i]);
+			if(RT.isReduced(init))
+				return init;
+			}
+		return init;
+	}
+
+	public Object fold(IFn combinef, IFn reducef, IFn fjtask, IFn fjfork, IFn fjjoin){
+		return kvreduce(reducef, combinef.invoke());
+	}
+
+	private BitmapIndexedNode ensureEditable(AtomicReference<Thread> edit){
+		if(this.edit == edit)
+			return this;
+		int n = Integer.bitCount(bitmap);
+		long[] newKeys = new long[n + 1]; // make room for next assoc
+		Object[] newArray = new Object[n + 1];
+		System.arraycopy(keys, 0, newKeys, 0, n);
+		System.arraycopy(array, 0, newArray, 0, n);
+		return new BitmapIndexedNode(edit, bitmap, nodemap, newKeys, newArray);
+	}
+
+	private BitmapIndexedNode editAndSet(AtomicReference<Thread> edit, int i, Object a) {
+		BitmapIndexedNode editable = ensureEditable(edit);
+		editable.array[i] = a;
+		return editable;
+	}
+
+	private BitmapIndexedNode editAndRemove(AtomicReference<Thread> edit, int bit, int i) {
+		if (bitmap == bit)
+			return null;
+		BitmapIndexedNode editable = ensureEditable(edit);
+		int n = Integer.bitCount(editable.bitmap);
+		editable.bitmap ^= bit;
+		editable.nodemap &= ~bit;
+		System.arraycopy(editable.keys, i + 1, editable.keys, i, n - (i + 1));
+		System.arraycopy(editable.array, i + 1, editable.array, i, n - (i + 1));
+		editable.keys[n - 1] = 0;
+		editable.array[n - 1] = null;
+		return editable;
+	}
+
+	public INode assoc(AtomicReference<Thread> edit, int shift, int hash, long key, Object val, Box addedLeaf){
+		int bit = bitpos(hash, shift);
+		int idx = index(bit);
+		if((bitmap & bit) != 0) {
+			Object valOrNode = array[idx];
+			if((nodemap & bit) != 0) {
+				INode n = ((INode) valOrNode).assoc(edit, shift + 5, hash, key, val, addedLeaf);
+				if(n == valOrNode)
+					return this;
+				return editAndSet(edit, idx, n);
+			}
+			if(key == keys[idx]) {
+				if(val == valOrNode)
+					return this;
+				return editAndSet(edit, idx, val);
+			}
+			addedLeaf.val = addedLeaf;
+			BitmapIndexedNode editable = editAndSet(edit, idx,
+					createNode(edit, shift + 5, keys[idx], valOrNode, hash, key, val));
+			editable.nodemap |= bit;
+			return editable;
+		} else {
+			int n = Integer.bitCount(bitmap);
+			if(n < array.length) {
+				addedLeaf.val = addedLeaf;
+				BitmapIndexedNode editable = ensureEditable(edit);
+				System.arraycopy(editable.keys, idx, editable.keys, idx + 1, n - idx);
+				System.arraycopy(editable.array, idx, editable.array, idx + 1, n - idx);
+				editable.keys[idx] = key;
+				editable.array[idx] = val;
+				editable.bitmap |= bit;
+				return editable;
+			}
+			if(n >= 16) {
+				INode[] nodes = new INode[32];
+				int jdx = mask(hash, shift);
+				nodes[jdx] = EMPTY.assoc(edit, shift + 5, hash, key, val, addedLeaf);
+				int j = 0;
+				for(int i = 0; i < 32; i++)
+					if(((bitmap >>> i) & 1) != 0) {
+						if (((nodemap >>> i) & 1) != 0)
+							nodes[i] = (INode) array[j];
+						else
+							nodes[i] = EMPTY.assoc(edit, shift + 5, hash(keys[j]), keys[j], array[j], addedLeaf);
+						j++;
+					}
+				return new ArrayNode(edit, n + 1, nodes);
+			} else {
+				long[] newKeys = new long[n + 4];
+				Object[] newArray = new Object[n + 4];
+				System.arraycopy(keys, 0, newKeys, 0, idx);
+				System.arraycopy(array, 0, newArray, 0, idx);
+				newKeys[idx] = key;
+				newArray[idx] = val;
+				addedLeaf.val = addedLeaf;
+				System.arraycopy(keys, idx, newKeys, idx + 1, n - idx);
+				System.arraycopy(array, idx, newArray, idx + 1, n - idx);
+				BitmapIndexedNode editable = (this.edit == edit) ? this
+						: new BitmapIndexedNode(edit, bitmap, nodemap, null, null);
+				editable.keys = newKeys;
+				editable.array = newArray;
+				editable.bitmap |= bit;
+				return editable;
+			}
+		}
+	}
+
+	public INode without(AtomicReference<Thread> edit, int shift, int hash, long key, Box removedLeaf){
+		int bit = bitpos(hash, shift);
+		if((bitmap & bit) == 0)
+			return this;
+		int idx = index(bit);
+		if((nodemap & bit) != 0) {
+			INode node = (INode) array[idx];
+			INode n = node.without(edit, shift + 5, hash, key, removedLeaf);
+			if (n == node)
+				return this;
+			if (n != null)
+				return editAndSet(edit, idx, n);
+			if (bitmap == bit)
+				return null;
+			return editAndRemove(edit, bit, idx);
+		}
+		if(key == keys[idx]) {
+			removedLeaf.val = removedLeaf;
+			return editAndRemove(edit, bit, idx);
+		}
+		return this;
+	}
+}
+
+final static class HashCollisionNode implements INode{
+
+	final int hash;
+	int count;
+	long[] keys;
+	Object[] vals;
+	final AtomicReference<Thread> edit;
+
+	HashCollisionNode(AtomicReference<Thread> edit, int hash, int count, long[] keys, Object[] vals){
+		this.edit = edit;
+		this.hash = hash;
+		this.count = count;
+		this.keys = keys;
+		this.vals = vals;
+	}
+
+	public INode assoc(int shift, int hash, long key, Object val, Box addedLeaf){
+		if(hash == this.hash) {
+			int idx = findIndex(key);
+			if(idx != -1) {
+				if(vals[idx] == val)
+					return this;
+				return new HashCollisionNode(null, hash, count, keys, cloneAndSet(vals, idx, val));
+			}
+			long[] newKeys = new long[count + 1];
+			Object[] newVals = new Object[count + 1];
+			System.arraycopy(keys, 0, newKeys, 0, count);
+			System.arraycopy(vals, 0, newVals, 0, count);
+			newKeys[count] = key;
+			newVals[count] = val;
+			addedLeaf.val = addedLeaf;
+			return new HashCollisionNode(null, hash, count + 1, newKeys, newVals);
+		}
+		// nest it in a bitmap node
+		int bit = bitpos(this.hash, shift);
+		return new BitmapIndexedNode(null, bit, bit, new long[1], new Object[] {this})
+			.assoc(shift, hash, key, val, addedLeaf);
+	}
+
+	public INode without(int shift, int hash, long key){
+		int idx = findIndex(key);
+		if(idx == -1)
+			return this;
+		if(count == 1)
+			return null;
+		return new HashCollisionNode(null, hash, count - 1,
+				removeKey(Arrays.copyOf(keys, count), idx), removeVal(Arrays.copyOf(vals, count), idx));
+	}
+
+	public IMapEntry find(int shift, int hash, long key){
+		int idx = findIndex(key);
+		if(idx < 0)
+			return null;
+		else
+			return (IMapEntry) MapEntry.create(keys[idx], vals[idx]);
+	}
+
+	public Object find(int shift, int hash, long key, Object notFound){
+		int idx = findIndex(key);
+		if(idx < 0)
+			return notFound;
+		else
+			return vals[idx];
+	}
+
+	public ISeq nodeSeq(){
+		return CollisionSeq.create(null, keys, vals, 0, count);
+	}
+
+	public Iterator iterator(final IFn f){
+		final long[] keys = this.keys;
+		final Object[] vals = this.vals;
+		final int count = this.count;
+		return new Iterator(){
+			int i = 0;
+
+			public boolean hasNext(){
+				return i < count;
+			}
+
+			public Object next(){
+				if(i >= count)
+					throw new NoSuchElementException();
+				Object ret = f.invoke(keys[i], vals[i]);
+				i++;
+				return ret;
+			}
+
+			public void remove(){
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	public Object kvreduce(IFn f, Object init){
+		for(int i = 0; i < count; i++)
+			{
+			init = f.invoke(init, keys[i], vals[i]);
+			if(RT.isReduced(init))
+				return init;
+			}
+		return init;
+	}
+
+	public Object fold(IFn combinef, IFn reducef, IFn fjtask, IFn fjfork, IFn fjjoin){
+		return kvreduce(reducef, combinef.invoke());
+	}
+
+	public int findIndex(long key){
+		for(int i = 0; i < count; i++)
+			{
+			if(key == keys[i])
+				return i;
+			}
+		return -1;
+	}
+
+	private HashCollisionNode ensureEditable(AtomicReference<Thread> edit){
+		if(this.edit == edit)
+			return this;
+		// make room for next assoc
+		return new HashCollisionNode(edit, hash, count, Arrays.copyOf(keys, count + 1), Arrays.copyOf(vals, count + 1));
+	}
+
+	public INode assoc(AtomicReference<Thread> edit, int shift, int hash, long key, Object val, Box addedLeaf){
+		if(hash == this.hash) {
+			int idx = findIndex(key);
+			if(idx != -1) {
+				if(vals[idx] == val)
+					return this;
+				HashCollisionNode editable = ensureEditable(edit);
+				editable.vals[idx] = val;
+				return editable;
+			}
+			HashCollisionNode editable = ensureEditable(edit);
+			if (editable.keys.length == count) {
+				editable.keys = Arrays.copyOf(editable.keys, count + 2);
+				editable.vals = Arrays.copyOf(editable.vals, count + 2);
+			}
+			editable.keys[count] = key;
+			editable.vals[count] = val;
+			editable.count++;
+			addedLeaf.val = addedLeaf;
+			return editable;
+		}
+		// nest it in a bitmap node
+		int bit = bitpos(this.hash, shift);
+		return new BitmapIndexedNode(edit, bit, bit, new long[2], new Object[] {this, null})
+			.assoc(edit, shift, hash, key, val, addedLeaf);
+	}
+
+	public INode without(AtomicReference<Thread> edit, int shift, int hash, long key, Box removedLeaf){
+		int idx = findIndex(key);
+		if(idx == -1)
+			return this;
+		removedLeaf.val = removedLeaf;
+		if(count == 1)
+			return null;
+		HashCollisionNode editable = ensureEditable(edit);
+		editable.keys[idx] = editable.keys[count - 1];
+		editable.vals[idx] = editable.vals[count - 1];
+		editable.keys[count - 1] = 0;
+		editable.vals[count - 1] = null;
+		editable.count--;
+		return editable;
+	}
+}
+
+private static INode[] cloneAndSet(INode[] array, int i, INode a) {
+	INode[] clone = array.clone();
+	clone[i] = a;
+	return clone;
+}
+
+private static Object[] cloneAndSet(Object[] array, int i, Object a) {
+	Object[] clone = array.clone();
+	clone[i] = a;
+	return clone;
+}
+
+private static long[] removeKey(long[] keys, int i) {
+	long[] newKeys = new long[keys.length - 1];
+	System.arraycopy(keys, 0, newKeys, 0, i);
+	System.arraycopy(keys, i + 1, newKeys, i, newKeys.length - i);
+	return newKeys;
+}
+
+private static Object[] removeVal(Object[] array, int i) {
+	Object[] newArray = new Object[array.length - 1];
+	System.arraycopy(array, 0, newArray, 0, i);
+	System.arraycopy(array, i + 1, newArray, i, newArray.length - i);
+	return newArray;
+}
+
+private static INode createNode(int shift, long key1, Object val1, int key2hash, long key2, Object val2) {
+	int key1hash = hash(key1);
+	if(key1hash == key2hash)
+		return new HashCollisionNode(null, key1hash, 2, new long[] {key1, key2}, new Object[] {val1, val2});
+	Box addedLeaf = new Box(null);
+	AtomicReference<Thread> edit = new AtomicReference<Thread>();
+	return BitmapIndexedNode.EMPTY
+		.assoc(edit, shift, key1hash, key1, val1, addedLeaf)
+		.assoc(edit, shift, key2hash, key2, val2, addedLeaf);
+}
+
+private static INode createNode(AtomicReference<Thread> edit, int shift, long key1, Object val1, int key2hash, long key2, Object val2) {
+	int key1hash = hash(key1);
+	if(key1hash == key2hash)
+		return new HashCollisionNode(null, key1hash, 2, new long[] {key1, key2}, new Object[] {val1, val2});
+	Box addedLeaf = new Box(null);
+	return BitmapIndexedNode.EMPTY
+		.assoc(edit, shift, key1hash, key1, val1, addedLeaf)
+		.assoc(edit, shift, key2hash, key2, val2, addedLeaf);
+}
+
+private static int bitpos(int hash, int shift){
+	return 1 << mask(hash, shift);
+}
+
+static final class NodeIter implements Iterator {
+	private static final Object NULL = new Object();
+	final BitmapIndexedNode node;
+	final IFn f;
+	private int i = 0;
+	private int rest;
+	private Object nextEntry = NULL;
+	private Iterator nextIter;
+
+	NodeIter(BitmapIndexedNode node, IFn f){
+		this.node = node;
+		this.f = f;
+		this.rest = node.bitmap;
+	}
+
+	private boolean advance(){
+		while (rest != 0)
+		{
+			int bit = Integer.lowestOneBit(rest);
+			int idx = i;
+			rest ^= bit;
+			i++;
+			if ((node.nodemap & bit) == 0)
+			{
+				nextEntry = f.invoke(node.keys[idx], node.array[idx]);
+				return true;
+			}
+			Iterator iter = ((INode) node.array[idx]).iterator(f);
+			if(iter != null && iter.hasNext())
+			{
+				nextIter = iter;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean hasNext(){
+		if (nextEntry != NULL || nextIter != null)
+			return true;
+		return advance();
+	}
+
+	public Object next(){
+		Object ret = nextEntry;
+		if(ret != NULL)
+		{
+			nextEntry = NULL;
+			return ret;
+		}
+		else if(nextIter != null)
+		{
+			ret = nextIter.next();
+			if(! nextIter.hasNext())
+				nextIter = null;
+			return ret;
+		}
+		else if(advance())
+			return next();
+		throw new NoSuchElementException();
+	}
+
+	public void remove(){
+		throw new UnsupportedOperationException();
+	}
+}
+
+static final class NodeSeq extends ASeq {
+	final BitmapIndexedNode node;
+	// slot index of the head, and the bits of node.bitmap from the head onward
+	final int i;
+	final int rest;
+	final ISeq s;
+
+	static ISeq create(BitmapIndexedNode node, int i, int rest, ISeq s) {
+		if(s != null)
+			return new NodeSeq(null, node, i, rest, s);
+		for(; rest != 0; rest &= rest - 1, i++) {
+			if((node.nodemap & Integer.lowestOneBit(rest)) == 0)
+				return new NodeSeq(null, node, i, rest, null);
+			ISeq nodeSeq = ((INode) node.array[i]).nodeSeq();
+			if(nodeSeq != null)
+				return new NodeSeq(null, node, i + 1, rest & (rest - 1), nodeSeq);
+		}
+		return null;
+	}
+
+	NodeSeq(IPersistentMap meta, BitmapIndexedNode node, int i, int rest, ISeq s) {
+		super(meta);
+		this.node = node;
+		this.i = i;
+		this.rest = rest;
+		this.s = s;
+	}
+
+	public Obj withMeta(IPersistentMap meta) {
+		if(meta() == meta)
+			return this;
+		return new NodeSeq(meta, node, i, rest, s);
+	}
+
+	public Object first() {
+		if(s != null)
+			return s.first();
+		return MapEntry.create(node.keys[i], node.array[i]);
+	}
+
+	public ISeq next() {
+		if(s != null)
+			return create(node, i, rest, s.next());
+		return create(node, i + 1, rest & (rest - 1), null);
+	}
+}
+
+static final class CollisionSeq extends ASeq {
+	final long[] keys;
+	final Object[] vals;
+	final int i;
+	final int count;
+
+	static ISeq create(IPersistentMap meta, long[] keys, Object[] vals, int i, int count) {
+		return i < count ? new CollisionSeq(meta, keys, vals, i, count) : null;
+	}
+
+	CollisionSeq(IPersistentMap meta, long[] keys, Object[] vals, int i, int count) {
+		super(meta);
+		this.keys = keys;
+		this.vals = vals;
+		this.i = i;
+		this.count = count;
+	}
+
+	public Obj withMeta(IPersistentMap meta) {
+		if(meta() == meta)
+			return this;
+		return new CollisionSeq(meta, keys, vals, i, count);
+	}
+
+	public Object first() {
+		return MapEntry.create(keys[i], vals[i]);
+	}
+
+	public ISeq next() {
+		return create(null, keys, vals, i + 1, count);
+	}
+
+	public int count() {
+		return count - i;
+	}
+}
+
+}
@@ -0,0 +1,848 @@
+/**
+ *   Copyright (c) Rich Hickey. All rights reserved.
+ *   The use and distribution terms for this software are covered by the
+ *   Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ *   which can be found in the file epl-v10.html at the root of this distribution.
+ *   By using this software in any fashion, you are agreeing to be bound by
+ * 	 the terms of this license.
+ *   You must not remove this notice, or any other, from this software.
+ **/
+
+package clojure.lang;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A relaxed radix balanced vector, after Bagwell and Rompf's RRB-Trees.
+ *
+ * Like PersistentVector it is a 32-way trie of leaf arrays plus a tail, but
+ * its leaves and nodes need not be full: each node keeps the running counts
+ * of its children, and a lookup guesses a child by radix, as PersistentVector
+ * does, then steps right past any short siblings. So two vectors concatenate
+ * by joining their tries along the seam, and a range slices off by copying
+ * only its two edge paths, both in O(log n), keeping nothing else of the
+ * parent reachable. Along a seam, the nodes at each level are packed until
+ * there is at most one more than the fewest that could hold their children,
+ * which bounds both the steps lookups take and the height, however many
+ * concats a vector is built from.
+ */
+public class PersistentRRBVector extends APersistentVector implements IObj, IEditableCollection, IReduce, IKVReduce{
+
+static final Object[] EMPTY_LEAF = new Object[0];
+
+public static final PersistentRRBVector EMPTY = new PersistentRRBVector(null, 0, 0, EMPTY_LEAF, EMPTY_LEAF);
+
+//children are Nodes, or leaf arrays for a node at shift 5, and sizes[j] is
+//the count of the elements under children 0 through j
+static final class Node implements Serializable{
+	final Object[] children;
+	final int[] sizes;
+
+	Node(Object[] children, int[] sizes){
+		this.children = children;
+		this.sizes = sizes;
+	}
+}
+
+final IPersistentMap _meta;
+final int cnt;
+//5 times the height of the trie, 0 when root is a leaf
+final int shift;
+final Object root;
+//the last elements, at most 32, empty only when the vector is
+final Object[] tail;
+
+PersistentRRBVector(IPersistentMap meta, int cnt, int shift, Object root, Object[] tail){
+	this._meta = meta;
+	this.cnt = cnt;
+	this.shift = shift;
+	this.root = root;
+	this.tail = tail;
+}
+
+static public PersistentRRBVector create(Object coll){
+	if(coll instanceof PersistentRRBVector)
+		return (PersistentRRBVector) coll;
+	if(coll instanceof PersistentVector)
+		return adopt((PersistentVector) coll);
+	ITransientCollection ret = EMPTY.asTransient();
+	for(ISeq s = RT.seq(coll); s != null; s = s.next())
+		ret = ret.conj(s.first());
+	return (PersistentRRBVector) ret.persistent();
+}
+
+//takes over the trie of v, sharing its leaf arrays
+static PersistentRRBVector adopt(PersistentVector v){
+	int treeCount = v.tailoff();
+	if(treeCount == 0)
+		return new PersistentRRBVector(v.meta(), v.cnt, 0, EMPTY_LEAF, v.tail);
+	return make(v.meta(), adopt(v.root, v.shift, treeCount), v.shift, v.tail);
+}
+
+static Object adopt(PersistentVector.Node node, int shift, int count){
+	if(shift == 0)
+		return node.array;
+	int width = 1 << shift;
+	Object[] children = new Object[(count + width - 1) / width];
+	for(int j = 0; j < children.length; j++)
+		children[j] = adopt((PersistentVector.Node) node.array[j], shift - 5, Math.min(width, count - j * width));
+	return node(children, shift);
+}
+
+//a vector of the trie and tail, collapsing single child roots and refilling
+//an empty tail from the trie
+static PersistentRRBVector make(IPersistentMap meta, Object root, int shift, Object[] tail){
+	int[] shiftOut = new int[]{shift};
+	root = collapse(root, shiftOut);
+	if(tail.length == 0 && size(root, shiftOut[0]) > 0)
+		{
+		tail = lastLeaf(root, shiftOut[0]);
+		root = withoutLastLeaf(root, shiftOut[0], shiftOut);
+		}
+	return new PersistentRRBVector(meta, size(root, shiftOut[0]) + tail.length, shiftOut[0], root, tail);
+}
+
+static int size(Object node, int shift){
+	if(shift == 0)
+		return ((Object[]) node).length;
+	int[] sizes = ((Node) node).sizes;
+	return sizes[sizes.length - 1];
+}
+
+static Node node(Object[] children, int shift){
+	int[] sizes = new int[children.length];
+	int sum = 0;
+	for(int j = 0; j < children.length; j++)
+		{
+		sum += size(children[j], shift - 5);
+		sizes[j] = sum;
+		}
+	return new Node(children, sizes);
+}
+
+//index of the child of n holding i, a child at shift s holding at most
+//1 << s elements, so the radix guess is never past it
+static int childIndex(Node n, int shift, int i){
+	int j = i >>> shift;
+	while(n.sizes[j] <= i)
+		j++;
+	return j;
+}
+
+final int treeCount(){
+	return cnt - tail.length;
+}
+
+//the array holding index i, with i's offset in it stored in at[0]
+Object[] arrayFor(int i, int[] at){
+	int t = treeCount();
+	if(i >= t)
+		{
+		at[0] = i - t;
+		return tail;
+		}
+	Object node = root;
+	for(int level = shift; level > 0; level -= 5)
+		{
+		Node n = (Node) node;
+		int j = childIndex(n, level, i);
+		if(j > 0)
+			i -= n.sizes[j - 1];
+		node = n.children[j];
+		}
+	at[0] = i;
+	return (Object[]) node;
+}
+
+public Object nth(int i){
+	if(i >= 0 && i < cnt)
+		{
+		int t = treeCount();
+		if(i >= t)
+			return tail[i - t];
+		return nthInTree(root, shift, i);
+		}
+	throw new IndexOutOfBoundsException();
+}
+
+static Object nthInTree(Object node, int shift, int i){
+	for(; shift > 0; shift -= 5)
+		{
+		Node n = (Node) node;
+		int j = childIndex(n, shift, i);
+		if(j > 0)
+			i -= n.sizes[j - 1];
+		node = n.children[j];
+		}
+	return ((Object[]) node)[i];
+}
+
+public Object nth(int i, Object notFound){
+	if(i >= 0 && i < cnt)
+		return nth(i);
+	return notFound;
+}
+
+public PersistentRRBVector assocN(int i, Object val){
+	if(i >= 0 && i < cnt)
+		{
+		int t = treeCount();
+		if(i >= t)
+			{
+			Object[] newTail = tail.clone();
+			newTail[i - t] = val;
+			return new PersistentRRBVector(_meta, cnt, shift, root, newTail);
+			}
+		return new PersistentRRBVector(_meta, cnt, shift, doAssoc(root, shift, i, val), tail);
+		}
+	if(i == cnt)
+		return cons(val);
+	throw new IndexOutOfBoundsException();
+}
+
+static Object doAssoc(Object node, int shift, int i, Object val){
+	if(shift == 0)
+		{
+		Object[] leaf = ((Object[]) node).clone();
+		leaf[i] = val;
+		return leaf;
+		}
+	Node n = (Node) node;
+	int j = childIndex(n, shift, i);
+	Object[] children = n.children.clone();
+	children[j] = doAssoc(children[j], shift - 5, j > 0 ? i - n.sizes[j - 1] : i, val);
+	return new Node(children, n.sizes);
+}
+
+public int count(){
+	return cnt;
+}
+
+public int hasheq(){
+	int hash = this._hasheq;
+	if(hash == 0)
+		{
+		hash = 1;
+		int[] at = new int[1];
+		for(int i = 0; i < cnt;)
+			{
+			Object[] array = arrayFor(i, at);
+			hash = Murmur3.hashOrdered(hash, array, at[0], array.length);
+			i += array.length - at[0];
+			}
+		this._hasheq = hash = Murmur3.mixCollHash(hash, cnt);
+		}
+	return hash;
+}
+
+public PersistentRRBVector cons(Object val){
+	if(tail.length < 32)
+		{
+		Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+		newTail[tail.length] = val;
+		return new PersistentRRBVector(_meta, cnt + 1, shift, root, newTail);
+		}
+	int[] shiftOut = new int[1];
+	Object newRoot = pushLeaf(root, shift, tail, shiftOut);
+	return new PersistentRRBVector(_meta, cnt + 1, shiftOut[0], newRoot, new Object[]{val});
+}
+
+//appends leaf to the trie, storing the new shift in shiftOut[0]
+static Object pushLeaf(Object root, int shift, Object[] leaf, int[] shiftOut){
+	shiftOut[0] = shift;
+	if(size(root, shift) == 0)
+		{
+		shiftOut[0] = 0;
+		return leaf;
+		}
+	Object ret = pushLeaf(root, shift, leaf);
+	if(ret != null)
+		return ret;
+	shiftOut[0] = shift + 5;
+	return node(new Object[]{root, newPath(leaf, shift)}, shift + 5);
+}
+
+//null if node has no room on its right edge
+static Node pushLeaf(Object node, int shift, Object[] leaf){
+	if(shift == 0)
+		return null;
+	Node n = (Node) node;
+	int last = n.children.length - 1;
+	if(shift > 5)
+		{
+		Node child = pushLeaf(n.children[last], shift - 5, leaf);
+		if(child != null)
+			{
+			Object[] children = n.children.clone();
+			int[] sizes = n.sizes.clone();
+			children[last] = child;
+			sizes[last] += leaf.length;
+			return new Node(children, sizes);
+			}
+		}
+	if(n.children.length == 32)
+		return null;
+	Object[] children = Arrays.copyOf(n.children, last + 2);
+	int[] sizes = Arrays.copyOf(n.sizes, last + 2);
+	children[last + 1] = newPath(leaf, shift - 5);
+	sizes[last + 1] = sizes[last] + leaf.length;
+	return new Node(children, sizes);
+}
+
+static Object newPath(Object[] leaf, int shift){
+	if(shift == 0)
+		return leaf;
+	return new Node(new Object[]{newPath(leaf, shift - 5)}, new int[]{leaf.length});
+}
+
+static Object[] lastLeaf(Object node, int shift){
+	for(; shift > 0; shift -= 5)
+		{
+		Object[] children = ((Node) node).children;
+		node = children[children.length - 1];
+		}
+	return (Object[]) node;
+}
+
+//the trie less its last leaf, collapsed, storing the new shift in shiftOut[0]
+static Object withoutLastLeaf(Object root, int shift, int[] shiftOut){
+	Object ret = popLeaf(root, shift);
+	shiftOut[0] = shift;
+	if(ret == null)
+		{
+		shiftOut[0] = 0;
+		return EMPTY_LEAF;
+		}
+	return collapse(ret, shiftOut);
+}
+
+//null if node held only the last leaf
+static Object popLeaf(Object node, int shift){
+	if(shift == 0)
+		return null;
+	Node n = (Node) node;
+	int last = n.children.length - 1;
+	Object child = popLeaf(n.children[last], shift - 5);
+	if(child == null)
+		{
+		if(last == 0)
+			return null;
+		return new Node(Arrays.copyOf(n.children, last), Arrays.copyOf(n.sizes, last));
+		}
+	Object[] children = n.children.clone();
+	int[] sizes = n.sizes.clone();
+	children[last] = child;
+	sizes[last] = (last > 0 ? sizes[last - 1] : 0) + size(child, shift - 5);
+	return new Node(children, sizes);
+}
+
+static Object collapse(Object root, int[] shiftOut){
+	while(shiftOut[0] > 0 && ((Node) root).children.length == 1)
+		{
+		root = ((Node) root).children[0];
+		shiftOut[0] -= 5;
+		}
+	return root;
+}
+
+public PersistentRRBVector pop(){
+	if(cnt == 0)
+		throw new IllegalStateException("Can't pop empty vector");
+	if(cnt == 1)
+		return EMPTY.withMeta(meta());
+	if(tail.length > 1)
+		return new PersistentRRBVector(_meta, cnt - 1, shift, root, Arrays.copyOf(tail, tail.length - 1));
+	return make(_meta, root, shift, EMPTY_LEAF);
+}
+
+/**
+ * Returns the elements of this vector followed by those of v, in O(log n)
+ * when v is a PersistentRRBVector. A PersistentVector v has its trie taken
+ * over in O(n / 32), and other vectors are copied.
+ */
+public PersistentRRBVector concat(IPersistentVector v){
+	if(v.count() <= 32)
+		{
+		PersistentRRBVector ret = this;
+		for(int i = 0; i < v.count(); i++)
+			ret = ret.cons(v.nth(i));
+		return ret;
+		}
+	PersistentRRBVector b = create(v);
+	if(cnt == 0)
+		return b.withMeta(_meta);
+	int[] shiftOut = new int[1];
+	Object left = pushLeaf(root, shift, tail, shiftOut);
+	int leftShift = shiftOut[0];
+	if(b.treeCount() == 0)
+		return make(_meta, left, leftShift, b.tail);
+	Object[] joined = join(left, leftShift, b.root, b.shift);
+	int top = Math.max(leftShift, b.shift);
+	if(joined.length == 1)
+		return make(_meta, joined[0], top, b.tail);
+	return make(_meta, node(joined, top + 5), top + 5, b.tail);
+}
+
+//joins tries l and r into one or two nodes at the greater of their shifts
+static Object[] join(Object l, int ls, Object r, int rs){
+	if(ls > rs)
+		{
+		Object[] lc = ((Node) l).children;
+		return rebuild(ls, lc, lc.length - 1, join(lc[lc.length - 1], ls - 5, r, rs), EMPTY_LEAF, 0);
+		}
+	if(rs > ls)
+		{
+		Object[] rc = ((Node) r).children;
+		return rebuild(rs, EMPTY_LEAF, 0, join(l, ls, rc[0], rs - 5), rc, 1);
+		}
+	if(ls == 0)
+		return rebuild(0, (Object[]) l, ((Object[]) l).length, EMPTY_LEAF, (Object[]) r, 0);
+	Object[] lc = ((Node) l).children;
+	Object[] rc = ((Node) r).children;
+	return rebuild(ls, lc, lc.length - 1, join(lc[lc.length - 1], ls - 5, rc[0], rs - 5), rc, 1);
+}
+
+//the items left[0, leftEnd) ++ mid ++ right[rightStart, ) as one node, or
+//as two if they don't fit. Items are elements at shift 0, else children,
+//rebalanced first; two leaves are left alone if both at least half full,
+//else evened out.
+static Object[] rebuild(int shift, Object[] left, int leftEnd, Object[] mid, Object[] right, int rightStart){
+	int n = leftEnd + mid.length + right.length - rightStart;
+	Object[] items = new Object[n];
+	System.arraycopy(left, 0, items, 0, leftEnd);
+	System.arraycopy(mid, 0, items, leftEnd, mid.length);
+	System.arraycopy(right, rightStart, items, leftEnd + mid.length, right.length - rightStart);
+	if(shift > 0)
+		{
+		items = rebalance(items, shift - 5);
+		n = items.length;
+		}
+	if(n <= 32)
+		return new Object[]{build(items, shift)};
+	if(shift == 0 && leftEnd >= 16 && right.length >= 16)
+		return new Object[]{left, right};
+	int split = n >>> 1;
+	return new Object[]{build(Arrays.copyOfRange(items, 0, split), shift),
+	                    build(Arrays.copyOfRange(items, split, n), shift)};
+}
+
+static Object build(Object[] items, int shift){
+	return shift == 0 ? items : node(items, shift);
+}
+
+static Object[] slots(Object node, int shift){
+	return shift == 0 ? (Object[]) node : ((Node) node).children;
+}
+
+//the tries at shift, their slots moved left so there is at most one more
+//trie than the fewest that could hold them, after Bagwell and Rompf's
+//concatenation plan. Without this, seams of half full nodes would pile up
+//over repeated concats, growing the height past PersistentVector's.
+static Object[] rebalance(Object[] tries, int shift){
+	int n = tries.length;
+	int[] plan = new int[n];
+	int total = 0;
+	for(int j = 0; j < n; j++)
+		total += plan[j] = slots(tries[j], shift).length;
+	int optimal = (total + 31) >>> 5;
+	if(n <= optimal + 1)
+		return tries;
+	//a trie not full is followed by more slots than it lacks, else n would
+	//already be the fewest
+	for(int i = 0; n > optimal + 1; i--, n--)
+		{
+		while(plan[i] == 32)
+			i++;
+		int remaining = plan[i];
+		do
+			{
+			int fill = Math.min(remaining + plan[i + 1], 32);
+			remaining += plan[i + 1] - fill;
+			plan[i++] = fill;
+			} while(remaining > 0);
+		System.arraycopy(plan, i + 1, plan, i, n - i - 1);
+		}
+	Object[] ret = new Object[n];
+	for(int k = 0, j = 0, at = 0; k < n; k++)
+		{
+		if(at == 0 && slots(tries[j], shift).length == plan[k])
+			{
+			ret[k] = tries[j++];
+			continue;
+			}
+		Object[] items = new Object[plan[k]];
+		for(int filled = 0; filled < items.length;)
+			{
+			Object[] from = slots(tries[j], shift);
+			int count = Math.min(from.length - at, items.length - filled);
+			System.arraycopy(from, at, items, filled, count);
+			filled += count;
+			at += count;
+			if(at == from.length)
+				{
+				j++;
+				at = 0;
+				}
+			}
+		ret[k] = build(items, shift);
+		}
+	return ret;
+}
+
+/**
+ * Returns the elements from start (inclusive) to end (exclusive), copying
+ * only the paths to the two ends, in O(log n).
+ */
+public PersistentRRBVector slice(int start, int end){
+	if(start == 0 && end == cnt)
+		return withMeta(null);
+	if(start == end)
+		return EMPTY;
+	int t = treeCount();
+	if(start >= t)
+		return new PersistentRRBVector(null, end - start, 0, EMPTY_LEAF, Arrays.copyOfRange(tail, start - t, end - t));
+	if(end <= t)
+		return make(null, sliceTree(root, shift, start, end), shift, EMPTY_LEAF);
+	return make(null, sliceTree(root, shift, start, t), shift, Arrays.copyOfRange(tail, 0, end - t));
+}
+
+static Object sliceTree(Object node, int shift, int start, int end){
+	if(start == 0 && end == size(node, shift))
+		return node;
+	if(shift == 0)
+		return Arrays.copyOfRange((Object[]) node, start, end);
+	Node n = (Node) node;
+	int first = childIndex(n, shift, start);
+	int last = childIndex(n, shift, end - 1);
+	Object[] children = new Object[last - first + 1];
+	for(int j = first; j <= last; j++)
+		{
+		int base = j > 0 ? n.sizes[j - 1] : 0;
+		children[j - first] = sliceTree(n.children[j], shift - 5, Math.max(start - base, 0),
+		                                Math.min(end, n.sizes[j]) - base);
+		}
+	return node(children, shift);
+}
+
+/**
+ * Returns this vector with val inserted before index i, which may be the
+ * count, in O(log n).
+ */
+public PersistentRRBVector insertNth(int i, Object val){
+	if(i < 0 || i > cnt)
+		throw new IndexOutOfBoundsException();
+	if(i == cnt)
+		return cons(val);
+	return slice(0, i).withMeta(_meta).cons(val).concat(slice(i, cnt));
+}
+
+/**
+ * Returns this vector without the element at index i, in O(log n).
+ */
+public PersistentRRBVector removeNth(int i){
+	if(i < 0 || i >= cnt)
+		throw new IndexOutOfBoundsException();
+	if(i == cnt - 1)
+		return pop();
+	return slice(0, i).withMeta(_meta).concat(slice(i + 1, cnt));
+}
+
+public ISeq seq(){
+	if(cnt == 0)
+		return null;
+	return new ChunkedSeq(this, 0, 0);
+}
+
+public Iterator iterator(){
+	return new Iterator(){
+		int i = 0;
+		int start = 0;
+		Object[] array = EMPTY_LEAF;
+		final int[] at = new int[1];
+
+		public boolean hasNext(){
+			return i < cnt;
+		}
+
+		public Object next(){
+			if(i >= cnt)
+				throw new NoSuchElementException();
+			if(i - start == array.length)
+				{
+				array = arrayFor(i, at);
+				start = i;
+				}
+			return array[i++ - start];
+		}
+
+		public void remove(){
+			throw new UnsupportedOperationException();
+		}
+	};
+}
+
+public Object reduce(IFn f){
+	if(cnt == 0)
+		return f.invoke();
+	return reduceFrom(f, nth(0), 1);
+}
+
+public Object reduce(IFn f, Object init){
+	return reduceFrom(f, init, 0);
+}
+
+Object reduceFrom(IFn f, Object init, int i){
+	int[] at = new int[1];
+	while(i < cnt)
+		{
+		Object[] array = arrayFor(i, at);
+		for(int j = at[0]; j < array.length; j++)
+			{
+			init = f.invoke(init, array[j]);
+			if(RT.isReduced(init))
+				return ((IDeref) init).deref();
+			}
+		i += array.length - at[0];
+		}
+	return init;
+}
+
+public Object kvreduce(IFn f, Object init){
+	int[] at = new int[1];
+	for(int i = 0; i < cnt;)
+		{
+		Object[] array = arrayFor(i, at);
+		for(int j = at[0]; j < array.length; j++, i++)
+			{
+			init = f.invoke(init, i, array[j]);
+			if(RT.isReduced(init))
+				return ((IDeref) init).deref();
+			}
+		}
+	return init;
+}
+
+static public final class ChunkedSeq extends ASeq implements IChunkedSeq, Counted{
+
+	final PersistentRRBVector vec;
+	final Object[] array;
+	final int i;
+	final int offset;
+
+	ChunkedSeq(PersistentRRBVector vec, int i, int offset){
+		this.vec = vec;
+		this.i = i;
+		this.offset = offset;
+		this.array = vec.arrayFor(i, new int[1]);
+	}
+
+	ChunkedSeq(IPersistentMap meta, PersistentRRBVector vec, Object[] array, int i, int offset){
+		super(meta);
+		this.vec = vec;
+		this.array = array;
+		this.i = i;
+		this.offset = offset;
+	}
+
+	public IChunk chunkedFirst(){
+		return new ArrayChunk(array, offset);
+	}
+
+	public ISeq chunkedNext(){
+		if(i + array.length < vec.cnt)
+			return new ChunkedSeq(vec, i + array.length, 0);
+		return null;
+	}
+
+	public ISeq chunkedMore(){
+		ISeq s = chunkedNext();
+		if(s == null)
+			return PersistentList.EMPTY;
+		return s;
+	}
+
+	public Obj withMeta(IPersistentMap meta){
+		if(meta == this._meta)
+			return this;
+		return new ChunkedSeq(meta, vec, array, i, offset);
+	}
+
+	public Object first(){
+		return array[offset];
+	}
+
+	public ISeq next(){
+		if(offset + 1 < array.length)
+			return new ChunkedSeq(null, vec, array, i, offset + 1);
+		return chunkedNext();
+	}
+
+	public int count(){
+		return vec.cnt - (i + offset);
+	}
+}
+
+public IPersistentCollection empty(){
+	return EMPTY.withMeta(meta());
+}
+
+public PersistentRRBVector withMeta(IPersistentMap meta){
+	if(_meta == meta)
+		return this;
+	return new PersistentRRBVector(meta, cnt, shift, root, tail);
+}
+
+public IPersistentMap meta(){
+	return _meta;
+}
+
+public ITransientCollection asTransient(){
+	return new TransientRRBVector(this);
+}
+
+/**
+ * Appends to a tail array of its own, pushing full tails into the trie as
+ * leaves. Updates to the trie copy the path, as the persistent vector does.
+ */
+static final class TransientRRBVector extends AFn implements ITransientVector, ITransientAssociative2, Counted{
+	int cnt;
+	int shift;
+	Object root;
+	Object[] tail;
+	int tailLen;
+	boolean editable = true;
+
+	TransientRRBVector(PersistentRRBVector v){
+		this.cnt = v.cnt;
+		this.shift = v.shift;
+		this.root = v.root;
+		this.tail = Arrays.copyOf(v.tail, 32);
+		this.tailLen = v.tail.length;
+	}
+
+	void ensureEditable(){
+		if(!editable)
+			throw new IllegalAccessError("Transient used after persistent! call");
+	}
+
+	public int count(){
+		ensureEditable();
+		return cnt;
+	}
+
+	public TransientRRBVector conj(Object val){
+		ensureEditable();
+		if(tailLen == 32)
+			{
+			int[] shiftOut = new int[1];
+			root = pushLeaf(root, shift, tail, shiftOut);
+			shift = shiftOut[0];
+			tail = new Object[32];
+			tailLen = 0;
+			}
+		tail[tailLen++] = val;
+		cnt++;
+		return this;
+	}
+
+	public PersistentRRBVector persistent(){
+		ensureEditable();
+		editable = false;
+		return new PersistentRRBVector(null, cnt, shift, root, Arrays.copyOf(tail, tailLen));
+	}
+
+	public Object valAt(Object key){
+		return valAt(key, null);
+	}
+
+	public Object valAt(Object key, Object notFound){
+		ensureEditable();
+		if(Util.isInteger(key))
+			{
+			int i = ((Number) key).intValue();
+			if(i >= 0 && i < cnt)
+				return nth(i);
+			}
+		return notFound;
+	}
+
+	private static final Object NOT_FOUND = new Object();
+
+	public final boolean containsKey(Object key){
+		return valAt(key, NOT_FOUND) != NOT_FOUND;
+	}
+
+	public final IMapEntry entryAt(Object key){
+		Object v = valAt(key, NOT_FOUND);
+		if(v != NOT_FOUND)
+			return MapEntry.create(key, v);
+		return null;
+	}
+
+	public Object invoke(Object arg1){
+		if(Util.isInteger(arg1))
+			return nth(((Number) arg1).intValue());
+		throw new IllegalArgumentException("Key must be integer");
+	}
+
+	public Object nth(int i){
+		ensureEditable();
+		if(i < 0 || i >= cnt)
+			throw new IndexOutOfBoundsException();
+		int t = cnt - tailLen;
+		if(i >= t)
+			return tail[i - t];
+		return nthInTree(root, shift, i);
+	}
+
+	public Object nth(int i, Object notFound){
+		if(i >= 0 && i < count())
+			return nth(i);
+		return notFound;
+	}
+
+	public TransientRRBVector assocN(int i, Object val){
+		ensureEditable();
+		if(i >= 0 && i < cnt)
+			{
+			int t = cnt - tailLen;
+			if(i >= t)
+				tail[i - t] = val;
+			else
+				root = doAssoc(root, shift, i, val);
+			return this;
+			}
+		if(i == cnt)
+			return conj(val);
+		throw new IndexOutOfBoundsException();
+	}
+
+	public TransientRRBVector assoc(Object key, Object val){
+		if(Util.isInteger(key))
+			return assocN(((Number) key).intValue(), val);
+		throw new IllegalArgumentException("Key must be integer");
+	}
+
+	public TransientRRBVector pop(){
+		ensureEditable();
+		if(cnt == 0)
+			throw new IllegalStateException("Can't pop empty vector");
+		if(tailLen > 1 || cnt == 1)
+			tail[--tailLen] = null;
+		else
+			{
+			Object[] leaf = lastLeaf(root, shift);
+			int[] shiftOut = new int[1];
+			root = withoutLastLeaf(root, shift, shiftOut);
+			shift = shiftOut[0];
+			tail = Arrays.copyOf(leaf, 32);
+			tailLen = leaf.length;
+			}
+		cnt--;
+		return this;
+	}
+}
+}
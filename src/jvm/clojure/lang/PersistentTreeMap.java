@@ -13,6 +13,7 @@
 package clojure.lang;
 
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * Persistent Red Black Tree
@@ -232,6 +233,40 @@ public Object kvreduce(IFn f, Object init){
     return init;
 }
 
+public Object fold(final long n, final IFn combinef, final IFn reducef,
+                   IFn fjinvoke, final IFn fjtask, final IFn fjfork, final IFn fjjoin){
+	Callable top = new Callable(){
+		public Object call() throws Exception{
+			return fold(tree, _count, n, combinef, reducef, fjtask, fjfork, fjjoin);
+		}
+	};
+	return fjinvoke.invoke(top);
+}
+
+//size is an estimate - the tree is balanced only to within a factor of 2
+static Object fold(Node t, long size, final long n, final IFn combinef, final IFn reducef,
+                   final IFn fjtask, final IFn fjfork, final IFn fjjoin){
+	if(t == null)
+		return combinef.invoke();
+	if(size <= n)
+		{
+		Object ret = t.kvreduce(reducef, combinef.invoke());
+		return RT.isReduced(ret) ? ((IDeref)ret).deref() : ret;
+		}
+	final long half = size / 2;
+	final Node right = t.right();
+	Object forked = fjfork.invoke(fjtask.invoke(new Callable(){
+		public Object call() throws Exception{
+			return fold(right, half, n, combinef, reducef, fjtask, fjfork, fjjoin);
+		}
+	}));
+	Object left = fold(t.left(), half, n, combinef, reducef, fjtask, fjfork, fjjoin);
+	Object mid = reducef.invoke(combinef.invoke(), t.key(), t.val());
+	if(RT.isReduced(mid))
+		mid = ((IDeref)mid).deref();
+	return combinef.invoke(combinef.invoke(left, mid), fjjoin.invoke(forked));
+}
+
 
 public NodeIterator reverseIterator(){
 	return new NodeIterator(tree, false);
@@ -331,6 +366,105 @@ public int doCompare(Object k1, Object k2){
 //	return ((Comparable) k1).compareTo(k2);
 }
 
+/**
+ * Returns, in key order, the keys at which a and b hold values that are not
+ * identical, including keys found in only one of them. The trees are walked
+ * in order together, and subtrees they share are skipped whole, so maps
+ * derived one from the other cost in proportion to how far apart they have
+ * grown. a and b must share a comparator.
+ */
+static public IPersistentVector differingKeys(PersistentTreeMap a, PersistentTreeMap b){
+	if(a.comp != b.comp)
+		throw new IllegalArgumentException("Sorted maps have different comparators");
+	ITransientCollection ret = PersistentVector.EMPTY.asTransient();
+	DiffCursor x = new DiffCursor(a.tree);
+	DiffCursor y = new DiffCursor(b.tree);
+	while(!x.done() && !y.done())
+		{
+		if(x.whole() && y.whole())
+			{
+			if(x.top() == y.top())
+				{
+				x.pop();
+				y.pop();
+				}
+			//the subtree with the greater root may hold the other one
+			else if(a.doCompare(x.top().key(), y.top().key()) >= 0)
+				x.expand();
+			else
+				y.expand();
+			}
+		else if(x.whole())
+			x.expand();
+		else if(y.whole())
+			y.expand();
+		else
+			{
+			int c = a.doCompare(x.top().key(), y.top().key());
+			if(c < 0)
+				ret = ret.conj(x.pop().key());
+			else if(c > 0)
+				ret = ret.conj(y.pop().key());
+			else
+				{
+				Node n = x.pop();
+				if(n.val() != y.pop().val())
+					ret = ret.conj(n.key());
+				}
+			}
+		}
+	for(DiffCursor rest = x.done() ? y : x; !rest.done();)
+		{
+		if(rest.whole())
+			rest.expand();
+		else
+			ret = ret.conj(rest.pop().key());
+		}
+	return (IPersistentVector) ret.persistent();
+}
+
+//the rest of an in order walk, as a stack of whole subtrees and single entries
+static final class DiffCursor{
+	final ArrayList<Node> nodes = new ArrayList<Node>();
+	final ArrayList<Boolean> whole = new ArrayList<Boolean>();
+
+	DiffCursor(Node root){
+		push(root, true);
+	}
+
+	void push(Node node, boolean isWhole){
+		if(node != null)
+			{
+			nodes.add(node);
+			whole.add(isWhole);
+			}
+	}
+
+	boolean done(){
+		return nodes.isEmpty();
+	}
+
+	Node top(){
+		return nodes.get(nodes.size() - 1);
+	}
+
+	boolean whole(){
+		return whole.get(whole.size() - 1);
+	}
+
+	Node pop(){
+		whole.remove(whole.size() - 1);
+		return nodes.remove(nodes.size() - 1);
+	}
+
+	void expand(){
+		Node node = pop();
+		push(node.right(), true);
+		push(node, false);
+		push(node.left(), true);
+	}
+}
+
 Node add(Node t, Object key, Object val, Box found){
 	if(t == null)
 		{
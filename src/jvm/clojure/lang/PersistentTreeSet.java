@@ -102,6 +102,11 @@ public ISeq seqFrom(Object key, boolean ascending){
 	return RT.keys(m.seqFrom(key,ascending));
 }
 
+public Object fold(long n, IFn combinef, IFn reducef,
+                   IFn fjinvoke, IFn fjtask, IFn fjfork, IFn fjjoin){
+	return ((PersistentTreeMap) impl).fold(n, combinef, PersistentHashSet.keyReducer(reducef), fjinvoke, fjtask, fjfork, fjjoin);
+}
+
 public IPersistentMap meta(){
 	return _meta;
 }
@@ -206,6 +206,71 @@ public int count(){
 	return cnt;
 }
 
+public int hasheq(){
+	int hash = this._hasheq;
+	if(hash == 0)
+		{
+		//a leaf at a time, rather than a path from the root per element
+		hash = 1;
+		int step = 0;
+		for(int i = 0; i < cnt; i += step)
+			{
+			Object[] array = arrayFor(i);
+			hash = Murmur3.hashOrdered(hash, array, 0, array.length);
+			step = array.length;
+			}
+		this._hasheq = hash = Murmur3.mixCollHash(hash, cnt);
+		}
+	return hash;
+}
+
+/**
+ * Returns, in order, the indexes at which a and b hold elements that are not
+ * identical, including those past the end of the shorter. Subtrees the
+ * vectors share are skipped without visiting their elements.
+ */
+static public IPersistentVector differingIndexes(PersistentVector a, PersistentVector b){
+	ITransientCollection ret = EMPTY.asTransient();
+	int common = Math.min(a.cnt, b.cnt);
+	int treeEnd = Math.min(Math.min(a.tailoff(), b.tailoff()), common);
+	if(treeEnd > 0)
+		{
+		Node x = a.root, y = b.root;
+		int level = Math.min(a.shift, b.shift);
+		for(int s = a.shift; s > level; s -= 5)
+			x = (Node) x.array[0];
+		for(int s = b.shift; s > level; s -= 5)
+			y = (Node) y.array[0];
+		ret = differingIndexes(x, y, level, 0, treeEnd, ret);
+		}
+	for(int i = treeEnd; i < common; i++)
+		if(a.nth(i) != b.nth(i))
+			ret = ret.conj(i);
+	for(int i = common; i < Math.max(a.cnt, b.cnt); i++)
+		ret = ret.conj(i);
+	return (IPersistentVector) ret.persistent();
+}
+
+static private ITransientCollection differingIndexes(Node x, Node y, int level, int base, int end,
+                                                     ITransientCollection ret){
+	if(x == y)
+		return ret;
+	for(int j = 0; j < 32; j++)
+		{
+		int i = base + (j << level);
+		if(i >= end)
+			break;
+		if(level == 0)
+			{
+			if(x.array[j] != y.array[j])
+				ret = ret.conj(i);
+			}
+		else
+			ret = differingIndexes((Node) x.array[j], (Node) y.array[j], level - 5, i, end, ret);
+		}
+	return ret;
+}
+
 public PersistentVector withMeta(IPersistentMap meta){
 	if(meta() == meta)
 		return this;
@@ -0,0 +1,223 @@
+/**
+ *   Copyright (c) Rich Hickey. All rights reserved.
+ *   The use and distribution terms for this software are covered by the
+ *   Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ *   which can be found in the file epl-v10.html at the root of this distribution.
+ *   By using this software in any fashion, you are agreeing to be bound by
+ * 	 the terms of this license.
+ *   You must not remove this notice, or any other, from this software.
+ **/
+
+package clojure.lang;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.util.Arrays;
+
+/**
+ * invokedynamic call site for a protocol function, emitted in place of the
+ * cached-class check when the compiler option :indy-protocols is true.
+ *
+ * The site's target is bound to a Cache, a polymorphic inline cache of the
+ * protocol's implementations for the classes of first arg seen so far. A class
+ * not in the cache is looked up and added, relinking the site, until
+ * MAX_ENTRIES classes are cached; after that, other classes go through the
+ * protocol function itself.
+ *
+ * Every call first checks that the protocol function var's root is the one the
+ * cache was built for. extend, redefining the protocol and with-redefs all
+ * change the root, and a site that sees a new root starts over. Instances of
+ * the protocol's interface are cached as calls to the protocol function, which
+ * calls the interface method. Protocols that extend via metadata, and roots
+ * that aren't protocol functions, are always called through the root.
+ *
+ * Args are passed in an array whose slots are cleared as they are passed on.
+ * Method handle frames would otherwise hold them, and with them the head of any
+ * lazy seq, for the length of the call.
+ */
+public class ProtocolCallSite extends MutableCallSite{
+
+static final int MAX_ENTRIES = 8;
+//calls with more args are compiled as before
+public static final int MAX_ARITY = 10;
+
+static final Var FIND_PROTOCOL_METHOD = RT.var("clojure.core", "find-protocol-method");
+static final Keyword ON_INTERFACE = Keyword.intern(null, "on-interface");
+static final Keyword EXTEND_VIA_METADATA = Keyword.intern(null, "extend-via-metadata");
+
+static final MethodType TYPE = MethodType.methodType(Object.class, Object[].class);
+//Cache.invokeN for the sites of each arity, the array's length being fixed by the caller
+static final MethodHandle[] INVOKERS = new MethodHandle[MAX_ARITY + 1];
+
+static
+	{
+	try
+		{
+		for(int n = 1; n <= MAX_ARITY; n++)
+			INVOKERS[n] = MethodHandles.lookup().findVirtual(Cache.class, "invoke" + n, TYPE);
+		}
+	catch(ReflectiveOperationException e)
+		{
+		throw Util.sneakyThrow(e);
+		}
+	}
+
+final Var v;
+final MethodHandle invoker;
+//guarded by this
+Cache cache;
+
+ProtocolCallSite(Var v, int arity){
+	super(TYPE);
+	this.v = v;
+	this.invoker = INVOKERS[arity];
+	link(new Cache(this, null, new Object[0], new IFn[0], false));
+}
+
+static public CallSite bootstrap(MethodHandles.Lookup lookup, String name, MethodType type, String ns, String sym,
+                                 int arity){
+	return new ProtocolCallSite(RT.var(ns, sym), arity);
+}
+
+void link(Cache c){
+	cache = c;
+	setTarget(invoker.bindTo(c));
+}
+
+static final class Cache{
+	final ProtocolCallSite site;
+	final Object root;
+	//classes of first arg, null for nil, and the fns to call for them
+	final Object[] classes;
+	final IFn[] fns;
+	//true if classes not in the cache go to root
+	final boolean closed;
+
+	Cache(ProtocolCallSite site, Object root, Object[] classes, IFn[] fns, boolean closed){
+		this.site = site;
+		this.root = root;
+		this.classes = classes;
+		this.fns = fns;
+		this.closed = closed;
+	}
+
+	//the fn to call for x
+	IFn fnFor(Object x){
+		Object r = site.v.getRawRoot();
+		if(r == root)
+			{
+			Class c = Util.classOf(x);
+			for(int i = 0; i < classes.length; i++)
+				if(classes[i] == c)
+					return fns[i];
+			if(closed)
+				return (IFn) r;
+			}
+		return site.relink(x);
+	}
+
+	Object invoke1(Object[] a){
+		return fnFor(a[0]).invoke(take(a, 0));
+	}
+
+	Object invoke2(Object[] a){
+		return fnFor(a[0]).invoke(take(a, 0), take(a, 1));
+	}
+
+	Object invoke3(Object[] a){
+		return fnFor(a[0]).invoke(take(a, 0), take(a, 1), take(a, 2));
+	}
+
+	Object invoke4(Object[] a){
+		return fnFor(a[0]).invoke(take(a, 0), take(a, 1), take(a, 2), take(a, 3));
+	}
+
+	Object invoke5(Object[] a){
+		return fnFor(a[0]).invoke(take(a, 0), take(a, 1), take(a, 2), take(a, 3), take(a, 4));
+	}
+
+	Object invoke6(Object[] a){
+		return fnFor(a[0]).invoke(take(a, 0), take(a, 1), take(a, 2), take(a, 3), take(a, 4), take(a, 5));
+	}
+
+	Object invoke7(Object[] a){
+		return fnFor(a[0]).invoke(take(a, 0), take(a, 1), take(a, 2), take(a, 3), take(a, 4), take(a, 5),
+		                          take(a, 6));
+	}
+
+	Object invoke8(Object[] a){
+		return fnFor(a[0]).invoke(take(a, 0), take(a, 1), take(a, 2), take(a, 3), take(a, 4), take(a, 5),
+		                          take(a, 6), take(a, 7));
+	}
+
+	Object invoke9(Object[] a){
+		return fnFor(a[0]).invoke(take(a, 0), take(a, 1), take(a, 2), take(a, 3), take(a, 4), take(a, 5),
+		                          take(a, 6), take(a, 7), take(a, 8));
+	}
+
+	Object invoke10(Object[] a){
+		return fnFor(a[0]).invoke(take(a, 0), take(a, 1), take(a, 2), take(a, 3), take(a, 4), take(a, 5),
+		                          take(a, 6), take(a, 7), take(a, 8), take(a, 9));
+	}
+}
+
+//adds x's class to the cache, starting over if the root has changed, and returns the fn to call for x
+synchronized IFn relink(Object x){
+	Object r = v.getRawRoot();
+	Cache c = cache;
+	if(r != c.root)
+		c = new Cache(this, r, new Object[0], new IFn[0], !dispatches(r));
+	if(c.closed)
+		{
+		link(c);
+		return (IFn) r;
+		}
+	Class xc = Util.classOf(x);
+	//another thread may have added x's class since this one missed
+	for(int i = 0; i < c.classes.length; i++)
+		if(c.classes[i] == xc)
+			return c.fns[i];
+	IFn impl = implFor((AFunction) r, x);
+	IFn f = impl != null ? impl : (IFn) r;
+	int n = c.classes.length;
+	if(n < MAX_ENTRIES)
+		{
+		Object[] classes = Arrays.copyOf(c.classes, n + 1);
+		IFn[] fns = Arrays.copyOf(c.fns, n + 1);
+		classes[n] = xc;
+		fns[n] = f;
+		link(new Cache(this, r, classes, fns, false));
+		}
+	else
+		link(new Cache(this, r, c.classes, c.fns, true));
+	return f;
+}
+
+//true if r is a protocol function whose implementation depends only on the class of its first arg
+static boolean dispatches(Object r){
+	if(!(r instanceof AFunction))
+		return false;
+	MethodImplCache cache = ((AFunction) r).__methodImplCache;
+	return cache != null && !RT.booleanCast(cache.protocol.valAt(EXTEND_VIA_METADATA));
+}
+
+//the protocol's implementation for x, or null if the protocol function must be called, as it
+//calls the interface method on x, or throws for an x without an implementation
+static IFn implFor(AFunction pf, Object x){
+	MethodImplCache cache = pf.__methodImplCache;
+	Object iface = cache.protocol.valAt(ON_INTERFACE);
+	if(iface instanceof Class && ((Class) iface).isInstance(x))
+		return null;
+	Object impl = FIND_PROTOCOL_METHOD.invoke(cache.protocol, cache.methodk, x);
+	return impl instanceof IFn ? (IFn) impl : null;
+}
+
+static Object take(Object[] args, int i){
+	Object x = args[i];
+	args[i] = null;
+	return x;
+}
+}
@@ -340,6 +340,7 @@ static{
 	catch(Exception e) {
 		throw Util.sneakyThrow(e);
 	}
+	ClassCache.ready = true;
 
 	CHECK_SPECS = RT.instrumentMacros;
 }
@@ -453,8 +454,10 @@ static public void load(String scriptbase, boolean failIfNotFound) throws IOExce
 		}
 	}
 	if(!loaded && cljURL != null) {
-		if(booleanCast(Compiler.COMPILE_FILES.deref()))
+		if(booleanCast(Compiler.COMPILE_FILES.deref()) && !ClassCache.isCaching())
 			compile(scriptfile);
+		else if(ClassCache.isEnabled())
+			ClassCache.load(scriptfile, cljURL);
 		else
 			loadResourceScript(RT.class, scriptfile);
 	}
@@ -1593,6 +1596,8 @@ static public IPersistentMap map(Object... init){
 		return PersistentArrayMap.EMPTY;
 	else if(init.length <= PersistentArrayMap.HASHTABLE_THRESHOLD)
 		return PersistentArrayMap.createWithCheck(init);
+	else if(init.length <= 2 * PersistentFlatMap.MAX_SIZE)
+		return PersistentFlatMap.createWithCheck(init);
 	return PersistentHashMap.createWithCheck(init);
 }
 
@@ -1601,6 +1606,8 @@ static public IPersistentMap mapUniqueKeys(Object... init){
 		return PersistentArrayMap.EMPTY;
 	else if(init.length <= PersistentArrayMap.HASHTABLE_THRESHOLD)
 		return new PersistentArrayMap(init);
+	else if(init.length <= 2 * PersistentFlatMap.MAX_SIZE)
+		return PersistentFlatMap.create(init);
 	return PersistentHashMap.create(init);
 }
 
@@ -1615,6 +1622,8 @@ static public IPersistentVector vector(Object... init){
 static public IPersistentVector subvec(IPersistentVector v, int start, int end){
 	if(end < start || start < 0 || end > v.count())
 		throw new IndexOutOfBoundsException();
+	if(v instanceof PersistentRRBVector)
+		return ((PersistentRRBVector) v).slice(start, end);
 	if(start == end)
 		return PersistentVector.EMPTY;
 	return new APersistentVector.SubVector(null, v, start, end);
@@ -44,6 +44,31 @@ public Ref setMaxHistory(int maxHistory){
 	return this;
 }
 
+//contention counters for this ref, nil until a transaction records some
+public IPersistentMap getStats(){
+	LockingTransaction.Stats s = stats;
+	return s == null ? null : s.toMap();
+}
+
+public Ref resetStats(){
+	stats = null;
+	return this;
+}
+
+LockingTransaction.Stats stats(){
+	LockingTransaction.Stats s = stats;
+	if(s == null)
+		{
+		synchronized(this)
+			{
+			s = stats;
+			if(s == null)
+				stats = s = new LockingTransaction.Stats();
+			}
+		}
+	return s;
+}
+
 public static class TVal{
 	Object val;
 	long point;
@@ -77,6 +102,7 @@ final long id;
 
 volatile int minHistory = 0;
 volatile int maxHistory = 10;
+volatile LockingTransaction.Stats stats;
 
 static final AtomicLong ids = new AtomicLong();
 
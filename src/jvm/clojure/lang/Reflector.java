@@ -20,6 +20,7 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class Reflector{
@@ -93,13 +94,100 @@ private static Method toAccessibleSuperMethod(Method m, Object target) {
 	return null;
 }
 
+//receiver class -> methods already resolved for calls on it, so a reflective
+//call with the same name and argument classes as an earlier one skips the
+//search. ClassValue lets the cache go with the receiver class when it is
+//unloaded. The argument classes are held strongly, so calls are only cached
+//when those classes can't outlive the receiver's, see cacheMethod
+static final int MAX_CALL_SITES = 256;
+
+static final ClassLoader SYSTEM_LOADER = ClassLoader.getSystemClassLoader();
+
+static final ClassValue<ConcurrentHashMap<CallSite, Method>> instanceCallSites =
+		new ClassValue<ConcurrentHashMap<CallSite, Method>>(){
+			protected ConcurrentHashMap<CallSite, Method> computeValue(Class c){
+				return new ConcurrentHashMap<CallSite, Method>();
+			}
+		};
+
+static final ClassValue<ConcurrentHashMap<CallSite, Method>> staticCallSites =
+		new ClassValue<ConcurrentHashMap<CallSite, Method>>(){
+			protected ConcurrentHashMap<CallSite, Method> computeValue(Class c){
+				return new ConcurrentHashMap<CallSite, Method>();
+			}
+		};
+
+//a method name and the classes of the args it was called with, null for null
+static final class CallSite{
+	final String methodName;
+	final Class[] argClasses;
+	final int hash;
+
+	CallSite(String methodName, Object[] args){
+		this.methodName = methodName;
+		this.argClasses = new Class[args.length];
+		int h = methodName.hashCode();
+		for(int i = 0; i < args.length; i++)
+			{
+			Class c = args[i] == null ? null : args[i].getClass();
+			argClasses[i] = c;
+			h = 31 * h + (c == null ? 0 : c.hashCode());
+			}
+		this.hash = h;
+	}
+
+	public int hashCode(){
+		return hash;
+	}
+
+	public boolean equals(Object o){
+		if(!(o instanceof CallSite))
+			return false;
+		CallSite s = (CallSite) o;
+		return hash == s.hash && methodName.equals(s.methodName) && Arrays.equals(argClasses, s.argClasses);
+	}
+}
+
+static void cacheMethod(Class c, ConcurrentHashMap<CallSite, Method> sites, CallSite site, Method m){
+	//an entry keyed on, say, a deftype from the REPL would pin its loader for as
+	//long as a JDK receiver lives, so only cache classes from loaders at least as
+	//long-lived as the receiver's: its own and its parents, and the system loader's
+	ClassLoader loader = c.getClassLoader();
+	for(Class a : site.argClasses)
+		if(a != null && !isAncestor(a.getClassLoader(), loader) && !isAncestor(a.getClassLoader(), SYSTEM_LOADER))
+			return;
+	//start over when full, so stale entries for reloaded classes don't keep a
+	//receiver off the cache for good
+	if(sites.size() >= MAX_CALL_SITES)
+		sites.clear();
+	sites.putIfAbsent(site, m);
+}
+
+//whether a is l or one of its parents, the bootstrap loader (null) being everyone's
+static boolean isAncestor(ClassLoader a, ClassLoader l){
+	if(a == null)
+		return true;
+	for(; l != null; l = l.getParent())
+		if(l == a)
+			return true;
+	return false;
+}
+
 public static Object invokeInstanceMethod(Object target, String methodName, Object[] args) {
 	Class c = target.getClass();
-	List methods = getMethods(c, args.length, methodName, false).stream()
-					.map(method -> toAccessibleSuperMethod(method, target))
-					.filter(method -> (method != null))
-					.collect(Collectors.toList());
-	return invokeMatchingMethod(methodName, methods, target, args);
+	ConcurrentHashMap<CallSite, Method> sites = instanceCallSites.get(c);
+	CallSite site = new CallSite(methodName, args);
+	Method m = sites.get(site);
+	if(m == null)
+		{
+		List methods = getMethods(c, args.length, methodName, false).stream()
+						.map(method -> toAccessibleSuperMethod(method, target))
+						.filter(method -> (method != null))
+						.collect(Collectors.toList());
+		m = matchingMethod(methodName, methods, target, args);
+		cacheMethod(c, sites, site, m);
+		}
+	return invokeMethod(m, target, args);
 }
 
 private static Throwable getCauseOrElse(Exception e) {
@@ -120,8 +208,11 @@ private static String noMethodReport(String methodName, Object target, Object[]
 }
 static Object invokeMatchingMethod(String methodName, List methods, Object target, Object[] args)
 		{
+	return invokeMethod(matchingMethod(methodName, methods, target, args), target, args);
+}
+
+static Method matchingMethod(String methodName, List methods, Object target, Object[] args){
 	Method m = null;
-	Object[] boxedArgs = null;
 	if(methods.isEmpty())
 		{
 		throw new IllegalArgumentException(noMethodReport(methodName,target,args));
@@ -129,7 +220,6 @@ static Object invokeMatchingMethod(String methodName, List methods, Object targe
 	else if(methods.size() == 1)
 		{
 		m = (Method) methods.get(0);
-		boxedArgs = boxArgs(m.getParameterTypes(), args);
 		}
 	else //overloaded w/same arity
 		{
@@ -144,7 +234,6 @@ static Object invokeMatchingMethod(String methodName, List methods, Object targe
 				if(foundm == null || Compiler.subsumes(params, foundm.getParameterTypes()))
 					{
 					foundm = m;
-					boxedArgs = boxArgs(params, args);
 					}
 				}
 			}
@@ -162,9 +251,15 @@ static Object invokeMatchingMethod(String methodName, List methods, Object targe
 			throw new IllegalArgumentException("Can't call public method of non-public class: " +
 			                                    oldm.toString());
 		}
+	return m;
+}
+
+static Object invokeMethod(Method m, Object target, Object[] args){
+	if(RuntimeEvents.ENABLED)
+		RuntimeEvents.reflectiveCall(m);
 	try
 		{
-		return prepRet(m.getReturnType(), m.invoke(target, boxedArgs));
+		return prepRet(m.getReturnType(), m.invoke(target, boxArgs(m.getParameterTypes(), args)));
 		}
 	catch(Exception e)
 		{
@@ -291,6 +386,8 @@ public static Object invokeConstructor(Class c, Object[] args) {
 		else if(ctors.size() == 1)
 			{
 			Constructor ctor = (Constructor) ctors.get(0);
+			if(RuntimeEvents.ENABLED)
+				RuntimeEvents.reflectiveCall(ctor);
 			return ctor.newInstance(boxArgs(ctor.getParameterTypes(), args));
 			}
 		else //overloaded w/same arity
@@ -302,6 +399,8 @@ public static Object invokeConstructor(Class c, Object[] args) {
 				if(isCongruent(params, args))
 					{
 					Object[] boxedArgs = boxArgs(params, args);
+					if(RuntimeEvents.ENABLED)
+						RuntimeEvents.reflectiveCall(ctor);
 					return ctor.newInstance(boxedArgs);
 					}
 				}
@@ -328,8 +427,16 @@ public static Object invokeStaticMethod(String className, String methodName, Obj
 public static Object invokeStaticMethod(Class c, String methodName, Object[] args) {
 	if(methodName.equals("new"))
 		return invokeConstructor(c, args);
-	List methods = getMethods(c, args.length, methodName, true);
-	return invokeMatchingMethod(methodName, methods, null, args);
+	ConcurrentHashMap<CallSite, Method> sites = staticCallSites.get(c);
+	CallSite site = new CallSite(methodName, args);
+	Method m = sites.get(site);
+	if(m == null)
+		{
+		List methods = getMethods(c, args.length, methodName, true);
+		m = matchingMethod(methodName, methods, null, args);
+		cacheMethod(c, sites, site, m);
+		}
+	return invokeMethod(m, null, args);
 }
 
 public static Object getStaticField(String className, String fieldName) {
@@ -0,0 +1,210 @@
+/**
+ *   Copyright (c) Rich Hickey. All rights reserved.
+ *   The use and distribution terms for this software are covered by the
+ *   Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ *   which can be found in the file epl-v10.html at the root of this distribution.
+ *   By using this software in any fashion, you are agreeing to be bound by
+ * 	 the terms of this license.
+ *   You must not remove this notice, or any other, from this software.
+ **/
+
+package clojure.lang;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+
+/**
+ * Counters for runtime events worth finding in production: reflective calls,
+ * multimethod cache misses, class definitions, STM retries, agent queue depth
+ * and keyword interning.
+ *
+ * Collection is fixed at startup by the system property clojure.runtime.events.
+ * Every call site tests the static final ENABLED first, so when it is off the
+ * JIT drops the instrumentation altogether. When it is on, the counters are
+ * also published as the MXBean clojure.lang:type=RuntimeEvents, readable from
+ * a running JVM with jconsole, JMC or any JMX client.
+ */
+public class RuntimeEvents{
+
+public static final boolean ENABLED = Boolean.getBoolean("clojure.runtime.events");
+
+static final String OBJECT_NAME = "clojure.lang:type=RuntimeEvents";
+
+static final LongAdder reflectiveCalls = new LongAdder();
+//Class/method -> calls, overloads together. Keyed by name rather than by Member,
+//which would keep the class, and its loader, from ever being unloaded
+static final ConcurrentHashMap<String, LongAdder> reflectiveSites = new ConcurrentHashMap<String, LongAdder>();
+static final LongAdder multiFnCacheMisses = new LongAdder();
+//multimethod name -> misses
+static final ConcurrentHashMap<String, LongAdder> multiFnSites = new ConcurrentHashMap<String, LongAdder>();
+static final LongAdder classesDefined = new LongAdder();
+static final LongAdder classBytesDefined = new LongAdder();
+static final LongAdder stmRetries = new LongAdder();
+static final LongAdder agentActionsQueued = new LongAdder();
+static final AtomicLong agentQueueDepthMax = new AtomicLong();
+static final LongAdder keywordsInterned = new LongAdder();
+
+static
+	{
+	if(ENABLED)
+		{
+		try
+			{
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+			}
+		catch(Exception e)
+			{
+			//another copy of Clojure in this JVM got there first, its counters are still readable
+			}
+		}
+	}
+
+static void reflectiveCall(Member m){
+	reflectiveCalls.increment();
+	count(reflectiveSites, m.getDeclaringClass().getName() + "/" + (m instanceof Constructor ? "new" : m.getName()));
+}
+
+static void multiFnCacheMiss(String name){
+	multiFnCacheMisses.increment();
+	count(multiFnSites, name);
+}
+
+static void classDefined(int bytes){
+	classesDefined.increment();
+	classBytesDefined.add(bytes);
+}
+
+static void stmRetry(){
+	stmRetries.increment();
+}
+
+static void agentActionQueued(int depth){
+	agentActionsQueued.increment();
+	long max;
+	while(depth > (max = agentQueueDepthMax.get()) && !agentQueueDepthMax.compareAndSet(max, depth))
+		;
+}
+
+static void keywordInterned(){
+	keywordsInterned.increment();
+}
+
+static <K> void count(ConcurrentHashMap<K, LongAdder> sites, K key){
+	LongAdder n = sites.get(key);
+	if(n == null)
+		{
+		LongAdder fresh = new LongAdder();
+		n = sites.putIfAbsent(key, fresh);
+		if(n == null)
+			n = fresh;
+		}
+	n.increment();
+}
+
+static Map<String, Long> sums(ConcurrentHashMap<String, LongAdder> sites){
+	Map<String, Long> ret = new HashMap<String, Long>();
+	for(Map.Entry<String, LongAdder> e : sites.entrySet())
+		ret.put(e.getKey(), e.getValue().sum());
+	return ret;
+}
+
+static public IPersistentMap getStats(){
+	return RT.map(Keyword.intern(null, "enabled"), ENABLED,
+	              Keyword.intern(null, "reflective-calls"), reflectiveCalls.sum(),
+	              Keyword.intern(null, "reflective-call-sites"), PersistentHashMap.create(sums(reflectiveSites)),
+	              Keyword.intern(null, "multifn-cache-misses"), multiFnCacheMisses.sum(),
+	              Keyword.intern(null, "multifn-cache-miss-sites"), PersistentHashMap.create(sums(multiFnSites)),
+	              Keyword.intern(null, "classes-defined"), classesDefined.sum(),
+	              Keyword.intern(null, "class-bytes-defined"), classBytesDefined.sum(),
+	              Keyword.intern(null, "stm-retries"), stmRetries.sum(),
+	              Keyword.intern(null, "agent-actions-queued"), agentActionsQueued.sum(),
+	              Keyword.intern(null, "agent-queue-depth-max"), agentQueueDepthMax.get(),
+	              Keyword.intern(null, "keywords-interned"), keywordsInterned.sum(),
+	              Keyword.intern(null, "keyword-table-size"), (long) Keyword.tableSize());
+}
+
+static public void reset(){
+	reflectiveCalls.reset();
+	reflectiveSites.clear();
+	multiFnCacheMisses.reset();
+	multiFnSites.clear();
+	classesDefined.reset();
+	classBytesDefined.reset();
+	stmRetries.reset();
+	agentActionsQueued.reset();
+	agentQueueDepthMax.set(0);
+	keywordsInterned.reset();
+}
+
+public interface RuntimeEventsMXBean{
+	long getReflectiveCalls();
+	Map<String, Long> getReflectiveCallSites();
+	long getMultiFnCacheMisses();
+	Map<String, Long> getMultiFnCacheMissSites();
+	long getClassesDefined();
+	long getClassBytesDefined();
+	long getStmRetries();
+	long getAgentActionsQueued();
+	long getAgentQueueDepthMax();
+	long getKeywordsInterned();
+	long getKeywordTableSize();
+	void reset();
+}
+
+static class Bean implements RuntimeEventsMXBean{
+	public long getReflectiveCalls(){
+		return reflectiveCalls.sum();
+	}
+
+	public Map<String, Long> getReflectiveCallSites(){
+		return sums(reflectiveSites);
+	}
+
+	public long getMultiFnCacheMisses(){
+		return multiFnCacheMisses.sum();
+	}
+
+	public Map<String, Long> getMultiFnCacheMissSites(){
+		return sums(multiFnSites);
+	}
+
+	public long getClassesDefined(){
+		return classesDefined.sum();
+	}
+
+	public long getClassBytesDefined(){
+		return classBytesDefined.sum();
+	}
+
+	public long getStmRetries(){
+		return stmRetries.sum();
+	}
+
+	public long getAgentActionsQueued(){
+		return agentActionsQueued.sum();
+	}
+
+	public long getAgentQueueDepthMax(){
+		return agentQueueDepthMax.get();
+	}
+
+	public long getKeywordsInterned(){
+		return keywordsInterned.sum();
+	}
+
+	public long getKeywordTableSize(){
+		return Keyword.tableSize();
+	}
+
+	public void reset(){
+		RuntimeEvents.reset();
+	}
+}
+}
@@ -164,12 +164,16 @@ static public int hash(Object o){
 public static int hasheq(Object o){
 	if(o == null)
 		return 0;
+	//the commonest keys first, as final classes are cheap to test for and the
+	//IHashEq test is slow when it fails
+	if(o instanceof String)
+		return Murmur3.hashInt(o.hashCode());
+	if(o instanceof Long)
+		return Numbers.hasheq((Number)o);
 	if(o instanceof IHashEq)
 		return dohasheq((IHashEq) o);	
 	if(o instanceof Number)
 		return Numbers.hasheq((Number)o);
-	if(o instanceof String)
-		return Murmur3.hashInt(o.hashCode());
 	return o.hashCode();
 }
 
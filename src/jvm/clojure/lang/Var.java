@@ -14,6 +14,7 @@ package clojure.lang;
 
 import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 
@@ -47,25 +48,57 @@ static public class Unbound extends AFn{
 }
 
 static class Frame{
-	final static Frame TOP = new Frame(PersistentHashMap.EMPTY, null);
-	//Var->TBox
+	final static Frame TOP = new Frame(PersistentHashMap.EMPTY, new Object[0], null);
+	//Var->TBox, made from pairs on demand for frames that have them
 	Associative bindings;
-	//Var->val
-//	Associative frameBindings;
+	//Var, TBox, Var, TBox... for all the bindings in effect while there are
+	//at most MAX_PAIRS, as scanning them beats a map lookup
+	final Object[] pairs;
 	Frame prev;
 
 	public Frame(Associative bindings, Frame prev){
-//		this.frameBindings = frameBindings;
+		this(bindings, null, prev);
+	}
+
+	Frame(Associative bindings, Object[] pairs, Frame prev){
 		this.bindings = bindings;
+		this.pairs = pairs;
 		this.prev = prev;
 	}
 
+	//racy, but any thread builds the same map
+	Associative bindings(){
+		Associative ret = bindings;
+		if(ret == null)
+			{
+			ret = PersistentHashMap.EMPTY;
+			for(int i = 0; i < pairs.length; i += 2)
+				ret = ret.assoc(pairs[i], pairs[i + 1]);
+			bindings = ret;
+			}
+		return ret;
+	}
+
+	TBox binding(Var v){
+		if(pairs != null)
+			{
+			for(int i = 0; i < pairs.length; i += 2)
+				if(pairs[i] == v)
+					return (TBox) pairs[i + 1];
+			return null;
+			}
+		IMapEntry e = bindings.entryAt(v);
+		return e == null ? null : (TBox) e.val();
+	}
+
     	protected Object clone() {
-		return new Frame(this.bindings, null);
+		return new Frame(this.bindings, this.pairs, null);
     	}
 
 }
 
+static final int MAX_PAIRS = 8;
+
 static final ThreadLocal<Frame> dvals = new ThreadLocal<Frame>(){
 
 	protected Frame initialValue(){
@@ -83,6 +116,8 @@ static Keyword nsKey = Keyword.intern(null, "ns");
 //static Keyword tagKey = Keyword.intern(null, "tag");
 
 volatile Object root;
+//shared by the invokedynamic sites calling this var's root, created on first use
+transient VarCallSite callSite;
 
 volatile boolean dynamic = false;
 transient final AtomicBoolean threadBound;
@@ -187,7 +222,7 @@ Var(Namespace ns, Symbol sym, Object root){
 }
 
 public boolean isBound(){
-	return hasRoot() || (threadBound.get() && dvals.get().bindings.containsKey(this));
+	return hasRoot() || (threadBound.get() && dvals.get().binding(this) != null);
 }
 
 final public Object get(){
@@ -268,6 +303,18 @@ public void setTag(Symbol tag) {
     alterMeta(assoc, RT.list(RT.TAG_KEY, tag));
 }
 
+synchronized VarCallSite callSite(){
+	if(callSite == null)
+		callSite = new VarCallSite(this, root);
+	return callSite;
+}
+
+//must hold this var's lock
+void relinkCallSite(){
+	if(callSite != null)
+		callSite.relink(root);
+}
+
 final public boolean hasRoot(){
 	return !(root instanceof Unbound);
 }
@@ -278,6 +325,7 @@ synchronized public void bindRoot(Object root){
 	Object oldroot = this.root;
 	this.root = root;
 	++rev;
+	relinkCallSite();
         alterMeta(dissoc, RT.list(macroKey));
     notifyWatches(oldroot,this.root);
 }
@@ -287,12 +335,14 @@ synchronized void swapRoot(Object root){
 	Object oldroot = this.root;
 	this.root = root;
 	++rev;
+	relinkCallSite();
     notifyWatches(oldroot,root);
 }
 
 synchronized public void unbindRoot(){
 	this.root = new Unbound(this);
 	++rev;
+	relinkCallSite();
 }
 
 synchronized public void commuteRoot(IFn fn) {
@@ -301,6 +351,7 @@ synchronized public void commuteRoot(IFn fn) {
 	Object oldroot = root;
 	this.root = newRoot;
 	++rev;
+	relinkCallSite();
     notifyWatches(oldroot,newRoot);
 }
 
@@ -310,24 +361,95 @@ synchronized public Object alterRoot(IFn fn, ISeq args) {
 	Object oldroot = root;
 	this.root = newRoot;
 	++rev;
+	relinkCallSite();
     notifyWatches(oldroot,newRoot);
 	return newRoot;
 }
 
 public static void pushThreadBindings(Associative bindings){
-	Frame f = dvals.get();
-	Associative bmap = f.bindings;
+	Object[] varVals = new Object[2 * bindings.count()];
+	int i = 0;
 	for(ISeq bs = bindings.seq(); bs != null; bs = bs.next())
 		{
 		IMapEntry e = (IMapEntry) bs.first();
-		Var v = (Var) e.key();
+		varVals[i++] = e.key();
+		varVals[i++] = e.val();
+		}
+	push(varVals);
+}
+
+//for binding, which binds few vars at a time; a later binding of a var wins
+public static void pushThreadBindings(Var v1, Object val1){
+	push(new Object[]{v1, val1});
+}
+
+public static void pushThreadBindings(Var v1, Object val1, Var v2, Object val2){
+	push(new Object[]{v1, val1, v2, val2});
+}
+
+public static void pushThreadBindings(Var v1, Object val1, Var v2, Object val2, Var v3, Object val3){
+	push(new Object[]{v1, val1, v2, val2, v3, val3});
+}
+
+public static void pushThreadBindings(Var v1, Object val1, Var v2, Object val2, Var v3, Object val3,
+                                      Var v4, Object val4){
+	push(new Object[]{v1, val1, v2, val2, v3, val3, v4, val4});
+}
+
+//varVals holds Var, val, Var, val..., and is reused for the TBoxes
+static void push(Object[] varVals){
+	Frame f = dvals.get();
+	Thread thread = Thread.currentThread();
+	int n = 0;
+	for(int i = 0; i < varVals.length; i += 2)
+		{
+		Var v = (Var) varVals[i];
 		if(!v.dynamic)
 			throw new IllegalStateException(String.format("Can't dynamically bind non-dynamic var: %s/%s", v.ns, v.sym));
-		v.validate(v.getValidator(), e.val());
-		v.threadBound.set(true);
-		bmap = bmap.assoc(v, new TBox(Thread.currentThread(), e.val()));
+		if(bindsLater(varVals, i))
+			continue;
+		v.validate(v.getValidator(), varVals[i + 1]);
+		//skip the volatile write once set, it never goes back
+		if(!v.threadBound.get())
+			v.threadBound.set(true);
+		varVals[n++] = v;
+		varVals[n++] = new TBox(thread, varVals[i + 1]);
+		}
+	if(f.pairs != null && f.pairs.length + n <= 2 * MAX_PAIRS)
+		{
+		Object[] pairs = Arrays.copyOf(f.pairs, f.pairs.length + n);
+		int end = f.pairs.length;
+		for(int i = 0; i < n; i += 2)
+			{
+			int j = 0;
+			while(j < f.pairs.length && pairs[j] != varVals[i])
+				j += 2;
+			if(j == f.pairs.length)
+				{
+				j = end;
+				end += 2;
+				}
+			pairs[j] = varVals[i];
+			pairs[j + 1] = varVals[i + 1];
+			}
+		if(end < pairs.length)
+			pairs = Arrays.copyOf(pairs, end);
+		dvals.set(new Frame(null, pairs, f));
+		}
+	else
+		{
+		Associative bmap = f.bindings();
+		for(int i = 0; i < n; i += 2)
+			bmap = bmap.assoc(varVals[i], varVals[i + 1]);
+		dvals.set(new Frame(bmap, f));
 		}
-	dvals.set(new Frame(bmap, f));
+}
+
+static boolean bindsLater(Object[] varVals, int i){
+	for(int j = i + 2; j < varVals.length; j += 2)
+		if(varVals[j] == varVals[i])
+			return true;
+	return false;
 }
 
 public static void popThreadBindings(){
@@ -344,6 +466,12 @@ public static void popThreadBindings(){
 public static Associative getThreadBindings(){
 	Frame f = dvals.get();
 	IPersistentMap ret = PersistentHashMap.EMPTY;
+	if(f.pairs != null)
+		{
+		for(int i = 0; i < f.pairs.length; i += 2)
+			ret = ret.assoc(f.pairs[i], ((TBox) f.pairs[i + 1]).val);
+		return ret;
+		}
 	for(ISeq bs = f.bindings.seq(); bs != null; bs = bs.next())
 		{
 		IMapEntry e = (IMapEntry) bs.first();
@@ -356,11 +484,7 @@ public static Associative getThreadBindings(){
 
 public final TBox getThreadBinding(){
 	if(threadBound.get())
-		{
-		IMapEntry e = dvals.get().bindings.entryAt(this);
-		if(e != null)
-			return (TBox) e.val();
-		}
+		return dvals.get().binding(this);
 	return null;
 }
 
@@ -0,0 +1,76 @@
+/**
+ *   Copyright (c) Rich Hickey. All rights reserved.
+ *   The use and distribution terms for this software are covered by the
+ *   Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ *   which can be found in the file epl-v10.html at the root of this distribution.
+ *   By using this software in any fashion, you are agreeing to be bound by
+ * 	 the terms of this license.
+ *   You must not remove this notice, or any other, from this software.
+ **/
+
+package clojure.lang;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VolatileCallSite;
+
+/**
+ * invokedynamic call site yielding a var's root, emitted in place of
+ * getRawRoot for the fn of a call when the compiler option :indy-vars is true.
+ *
+ * All the sites of a var share one VarCallSite, whose target returns the root
+ * as a constant. The JIT folds it into the calling code, so the call that
+ * follows is to a known fn, much as with direct linking. Every change to the
+ * root relinks the site, which deoptimizes the code that folded the old one.
+ * A var whose root has changed MAX_RELINKS times, as one redefined in a loop
+ * or by with-redefs over and over, is instead read through getRawRoot.
+ *
+ * Only the fn goes through the site, the args don't: method handle frames
+ * would hold them, and with them the head of any lazy seq, for the length of
+ * the call.
+ */
+public class VarCallSite extends VolatileCallSite{
+
+static final int MAX_RELINKS = 32;
+
+static final MethodType TYPE = MethodType.methodType(Object.class);
+static final MethodHandle GET_RAW_ROOT;
+
+static
+	{
+	try
+		{
+		GET_RAW_ROOT = MethodHandles.lookup().findVirtual(Var.class, "getRawRoot", TYPE);
+		}
+	catch(ReflectiveOperationException e)
+		{
+		throw Util.sneakyThrow(e);
+		}
+	}
+
+final Var v;
+//guarded by v
+int relinks;
+
+VarCallSite(Var v, Object root){
+	super(TYPE);
+	this.v = v;
+	setTarget(MethodHandles.constant(Object.class, root));
+}
+
+static public CallSite bootstrap(MethodHandles.Lookup lookup, String name, MethodType type, String ns, String sym){
+	return RT.var(ns, sym).callSite();
+}
+
+//called by v, holding its lock, after its root has changed
+void relink(Object root){
+	if(relinks > MAX_RELINKS)
+		return;
+	if(++relinks > MAX_RELINKS)
+		setTarget(GET_RAW_ROOT.bindTo(v));
+	else
+		setTarget(MethodHandles.constant(Object.class, root));
+}
+}
@@ -193,3 +193,21 @@
 ; add-watch remove-watch
 ; shutdown-agents
 
+
+(deftest virtual-thread-send-off
+  (if (clojure.lang.Agent/virtualThreadsSupported)
+    (let [old clojure.lang.Agent/soloExecutor
+          exec (virtual-thread-executor)]
+      (try
+        (set-agent-send-off-executor! exec)
+        (let [a (agent [])]
+          (binding [*bind-me* :conveyed]
+            (send-off a (fn [v] (conj v *bind-me*)))
+            (is (= :conveyed @(future *bind-me*)))
+            (is (= [2 4 6] (pmap #(* 2 %) [1 2 3]))))
+          (await a)
+          (is (= [:conveyed] @a)))
+        (finally
+          (set-agent-send-off-executor! old)
+          (.shutdown ^java.util.concurrent.ExecutorService exec))))
+    (is (thrown? UnsupportedOperationException (virtual-thread-executor)))))
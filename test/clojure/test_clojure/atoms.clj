@@ -42,3 +42,67 @@
 (deftest reset-on-deref-reset-equality
   (let [a (atom :usual-value)]
     (is (= :usual-value (reset! a (first (reset-vals! a :almost-never-seen-value)))))))
+
+(deftest watch-executor
+  (let [ex (java.util.concurrent.Executors/newSingleThreadExecutor)
+        a (atom 0 :watch-executor ex)
+        gate (java.util.concurrent.CountDownLatch. 1)
+        calls (atom [])
+        done (promise)]
+    (add-watch a :slow (fn [k r o n]
+                         (.await gate)
+                         (swap! calls conj [k r o n (Thread/currentThread)])
+                         (when (= n 100) (deliver done true))))
+    (dotimes [_ 100] (swap! a inc))
+    (is (empty? @calls) "writers don't wait for the watch")
+    (.countDown gate)
+    (is (deref done 5000 false))
+    (let [[k r o n t] (first @calls)]
+      (is (= [:slow a 0] [k r o]))
+      (is (not= t (Thread/currentThread))))
+    (is (every? (fn [[[_ _ _ n1] [_ _ o2 n2]]] (and (= n1 o2) (< o2 n2))) (partition 2 1 @calls))
+        "calls are in order, with intermediate states coalesced")
+    (set-watch-executor! a nil)
+    (reset! calls [])
+    (swap! a inc)
+    (is (= [[:slow a 100 101 (Thread/currentThread)]] @calls))
+    (.shutdown ex)))
+
+(deftest watch-executor-swap-and-remove
+  (let [ex1 (java.util.concurrent.Executors/newSingleThreadExecutor)
+        ex2 (java.util.concurrent.Executors/newCachedThreadPool)
+        a (atom 0 :watch-executor ex1)
+        gate (java.util.concurrent.CountDownLatch. 1)
+        running (atom 0)
+        overlapped (atom false)
+        seen (atom [])
+        done (promise)]
+    (add-watch a :w (fn [_ _ o n]
+                      (when (< 1 (swap! running inc)) (reset! overlapped true))
+                      (.await gate)
+                      (swap! seen conj [o n])
+                      (swap! running dec)
+                      (when (= n 20) (deliver done true))))
+    (dotimes [_ 10] (swap! a inc))
+    (set-watch-executor! a ex2)
+    (dotimes [_ 10] (swap! a inc))
+    (.countDown gate)
+    (is (deref done 5000 false))
+    (is (not @overlapped) "the old and new executors don't call the watch at once")
+    (is (every? (fn [[[_ n1] [o2 _]]] (= n1 o2)) (partition 2 1 @seen)))
+    (let [gate (java.util.concurrent.CountDownLatch. 1)
+          started (java.util.concurrent.CountDownLatch. 1)
+          calls (atom [])]
+      (add-watch a :w (fn [_ _ o n]
+                        (.countDown started)
+                        (.await gate)
+                        (swap! calls conj n)))
+      (swap! a inc)
+      (.await started)
+      (swap! a inc)
+      (remove-watch a :w)
+      (.countDown gate)
+      (Thread/sleep 100)
+      (is (= [21] @calls) "the call pending at remove-watch is dropped"))
+    (.shutdown ex1)
+    (.shutdown ex2)))
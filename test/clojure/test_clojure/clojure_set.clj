@@ -124,6 +124,22 @@
       (set/difference #{1 2 3} #{1 3 4} #{1 3}) #{2}
       (set/difference #{1 2 3} #{3 4 5} #{8 2 3}) #{1} ))
 
+(deftest test-hash-set-structural-ops
+  (let [pool (concat (range 3000) ["Aa" "BB" "AaAa" "BBBB" "AaBB" "BBAa" nil false])
+        s1 (set (take-nth 2 pool))
+        s2 (set (take-nth 3 pool))
+        s3 (conj s1 :x "zz")]
+    (doseq [[x y] [[s1 s2] [s2 s1] [s1 s3] [s3 s1] [s1 #{}] [#{} s1]]]
+      (is (= (into (set (seq x)) y) (set/union x y)))
+      (is (= (set (filter #(contains? y %) x)) (set/intersection x y)))
+      (is (= (set (remove #(contains? y %) x)) (set/difference x y)))
+      (is (= (count (set/union x y)) (count (seq (set/union x y))))))
+    (is (identical? s1 (set/union s1 s1)))
+    (is (identical? s1 (set/union s1 (set (take 10 s1)))))
+    (is (identical? s1 (set/intersection s1 s3)))
+    (is (= #{:x "zz"} (set/difference s3 s1)))
+    (is (= {:m 1} (meta (set/difference (with-meta s1 {:m 1}) s2))))))
+
 (deftest test-select
   (are [x y] (= x y)
     (set/select integer? #{}) #{}
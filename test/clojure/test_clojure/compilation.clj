@@ -443,3 +443,71 @@
   (testing "CLJ-2580 Correctly calculate exit branches of case"
     (is (zero? (let [d (case nil :x nil 0)] d)))
     (is (nil? (let [d (case nil :x 0 nil)] d)))))
+
+(defn- delete-tree [^java.io.File f]
+  (doseq [c (.listFiles f)] (delete-tree c))
+  (.delete f))
+
+(deftest class-cache-reuses-compiled-source
+  (let [dir (doto (java.io.File/createTempFile "class-cache" "") .delete)
+        ns-sym 'clojure.test-clojure.compilation.load-ns
+        call-f #((resolve (symbol (str ns-sym) "f"))
+                 (eval (list 'new (symbol (str (munge ns-sym) ".x")))))]
+    (try
+      (clojure.lang.ClassCache/setDirectory dir)
+      (require ns-sym :reload)
+      (is (= 1 (call-f)))
+      (let [entries (vec (.list dir))]
+        (is (= 1 (count entries)))
+        (require ns-sym :reload)
+        (is (= 1 (call-f)))
+        (is (= entries (vec (.list dir))))
+        (binding [*assert* false]
+          (require ns-sym :reload))
+        (is (= 2 (count (.list dir))) "*assert* is part of the key")
+        (binding [*default-data-reader-fn* (fn [tag v] v)]
+          (require ns-sym :reload))
+        (binding [*data-readers* {'cache/tag identity}]
+          (require ns-sym :reload))
+        (is (= 1 (call-f)))
+        (is (= 2 (count (.list dir))) "reader fns that aren't vars skip the cache"))
+      (finally
+        (clojure.lang.ClassCache/setDirectory nil)
+        (delete-tree dir)))))
+
+(deftest class-cache-cleans-up-failed-compile
+  (let [dir (doto (java.io.File/createTempFile "class-cache" "") .delete)
+        src (doto (java.io.File/createTempFile "bad_ns" ".clj")
+              (spit "(ns bad-ns) (defn f [] (no-such-fn))"))]
+    (try
+      (clojure.lang.ClassCache/setDirectory dir)
+      (is (thrown? Exception (clojure.lang.ClassCache/load "bad_ns.clj" (.toURL (.toURI src)))))
+      (is (empty? (.list dir)))
+      (finally
+        (clojure.lang.ClassCache/setDirectory nil)
+        (delete-tree dir)
+        (.delete src)))))
+
+(defn indy-var-target [x] [:first x])
+(declare indy-var-declared)
+
+(deftest indy-var-call-sites
+  (let [[call call-declared]
+        (binding [*compiler-options* (assoc *compiler-options* :indy-vars true)]
+          (eval '[(fn [x] (clojure.test-clojure.compilation/indy-var-target x))
+                  (fn [] (clojure.test-clojure.compilation/indy-var-declared))]))
+        first-root indy-var-target]
+    (try
+      (is (= [:first 1] (call 1)))
+      (is (= [:redef 1] (with-redefs [indy-var-target (fn [x] [:redef x])] (call 1))))
+      (is (= [:first 1] (call 1)))
+      ;; past the relink limit the site reads the root on every call
+      (dotimes [i 40]
+        (alter-var-root #'indy-var-target (constantly (fn [x] [i x])))
+        (is (= [i 1] (call 1))))
+      (finally
+        (alter-var-root #'indy-var-target (constantly first-root))))
+    (is (= [:first 1] (call 1)))
+    (is (thrown? IllegalStateException (call-declared)))
+    (alter-var-root #'indy-var-declared (constantly (fn [] :defined)))
+    (is (= :defined (call-declared)))))
@@ -30,3 +30,26 @@
        [{:a {:c [1]}} {:a {:c [0]}} {:a {:c [nil 2] :b 1}}] {:a {:b 1 :c [1 2]}} {:a {:b 1 :c [0 2]}}
        [{:a nil} {:a false} {:b nil :c false}] {:a nil :b nil :c false} {:a false :b nil :c false}))
 
+
+(deftest diff-shared-structure
+  (let [m (into {} (map (fn [i] [i {:v i}]) (range 5000)))
+        v (vec (range 5000))
+        s (into (sorted-map) (map (fn [i] [i i]) (range 5000)))]
+    (is (= [nil nil m] (diff m (assoc m 1 {:v 1}))))
+    (is (= [{1 {:v 1}} {1 {:v 2} 2 {:v 2} :new 1} (dissoc m 1 2)]
+           (diff (dissoc m 2) (assoc m 1 {:v 2} :new 1))))
+    (is (= [{7 {:v 7}} nil (dissoc m 7)] (diff m (dissoc m 7))))
+    (is (= [{nil 1} {nil 2} (dissoc m 0)] (diff (assoc (dissoc m 0) nil 1) (assoc (dissoc m 0) nil 2))))
+    (is (= [nil nil v] (diff v (assoc v 3 3))))
+    (is (= [[nil nil :a] [nil nil :b] (assoc v 2 nil)] (diff (assoc v 2 :a) (assoc v 2 :b))))
+    (is (= [nil (into (vec (repeat 5000 nil)) [:x :y]) v] (diff v (conj v :x :y))))
+    (is (= [(into (vec (repeat 4000 nil)) (range 4000 5000)) nil (subvec v 0 4000)]
+           (diff v (nth (iterate pop v) 1000))))
+    (is (= [{10 10} {10 :x 5000 1} (dissoc s 10)] (diff s (assoc s 10 :x 5000 1))))
+    (is (= [nil nil s] (diff s (assoc s 10 10))))
+    (is (= [{:a {3 3}} {:a {3 4}} {:a (dissoc s 3)}] (diff {:a s} {:a (assoc s 3 4)}))))
+  (let [f (into {} (map (fn [i] [i {:v i}]) (range 30)))]
+    (is (instance? clojure.lang.PersistentFlatMap f))
+    (is (= [nil nil f] (diff f (assoc f 1 {:v 1}))))
+    (is (= [{1 {:v 1}} {1 {:v 2} 2 {:v 2} :new 1} (dissoc f 1 2)]
+           (diff (dissoc f 2) (assoc f 1 {:v 2} :new 1))))))
@@ -1215,6 +1215,75 @@
     (is (= (hash s)
            (hash-unordered unique-elem)))))
 
+(deftest bulk-hashes-match
+  (doseq [n [1 2 31 32 33 1055 1056 1057 40000]]
+    (let [elem (map #(if (even? %) (str %) [% nil]) (range n))
+          v (vec elem)
+          r (catvec (subvec v (quot n 3)) v)]
+      (is (= (hash-ordered elem)
+             (hash v)
+             (hash (rrb-vec v))
+             (hash (seq v))
+             (hash (map identity v))
+             (hash (lazy-seq (seq v)))
+             (hash (apply list elem))))
+      (is (= (hash-ordered (concat (drop (quot n 3) elem) elem)) (hash r) (hash (seq r))))
+      (is (= (hash-ordered (drop 1 elem)) (hash (subvec v (min n 1))) (hash (rest (seq v)))))
+      (is (= (hash-ordered (range n)) (hash (range n)) (hash (seq (vec (range n))))))
+      (is (= (hash-ordered (concat elem elem)) (hash (concat v v)))))
+    (let [entries (map (fn [i] [(str "k" i) i]) (range n))
+          m (into {} entries)]
+      (doseq [m (cond-> [m (assoc m nil :nil) (assoc m :k nil)]
+                  ;; array-map checks for duplicate keys in O(n^2)
+                  (<= n 1057) (conj (apply array-map (mapcat identity entries))))]
+        (is (= (hash-unordered (map vec m)) (hash m)))))))
+
+(deftype Collider [k]
+  Object
+  (hashCode [_] 7)
+  (equals [_ o] (and (instance? Collider o) (= k (.-k ^Collider o))))
+  clojure.lang.IHashEq
+  (hasheq [_] 7))
+
+(deftest flat-map-tier
+  (let [hm (fn [kvs] (into clojure.lang.PersistentHashMap/EMPTY kvs))]
+    (doseq [n [9 10 33 63 64 65 100]]
+      (let [kvs (map (fn [i] [(if (even? i) (str i) (->Collider i)) i]) (range n))
+            ks (map first kvs)
+            expected (if (<= n 64) clojure.lang.PersistentFlatMap clojure.lang.PersistentHashMap)
+            m (into {} kvs)]
+        (is (= (hm kvs) m (apply hash-map (mapcat identity kvs)) (zipmap ks (range))))
+        (is (instance? expected m))
+        (is (= (hash (hm kvs)) (hash m)))
+        (is (= (range n) (map m ks)))
+        (when (<= n 64)
+          (is (= ks (keys m))))
+        (is (= (hm (rest kvs)) (dissoc m (first ks)) (persistent! (dissoc! (transient m) (first ks)))))
+        (is (= (assoc (hm kvs) :x 1) (assoc m :x 1) (persistent! (assoc! (transient m) :x 1))))
+        (is (= (hm kvs) (persistent! (reduce (fn [t [k v]] (assoc! t k v)) (transient (array-map)) kvs))))
+        (is (= {:a 1} (meta (with-meta m {:a 1})) (meta (assoc (with-meta m {:a 1}) :x 1)) (meta (dissoc (with-meta m {:a 1}) (first ks)))))
+        (is (= (+ n 1) (count (assoc m (->Collider -1) nil))))
+        (is (nil? (get m (->Collider -1))))
+        (is (= (reduce + (range n)) (reduce-kv (fn [acc _ v] (+ acc v)) 0 m)))
+        (is (empty? (reduce dissoc m ks)))))
+    (let [a (into {} (map vector (range 30) (range)))
+          b (into {} (map vector (range 20 50) (repeat 1)))]
+      (is (= (merge-with + (into (sorted-map) a) b) (merge-with + a b)))
+      (is (= (conj (hm a) b) (merge a b) (merge (with-meta a {:m 1}) b)))
+      (is (= {:m 1} (meta (merge (with-meta a {:m 1}) b))))
+      (is (instance? clojure.lang.PersistentHashMap (merge a (zipmap (range 100 150) (range)))))
+      (is (identical? a (merge a (select-keys a [1 2 3])))))
+    (let [a :k9 b :k9]
+      (is (instance? clojure.lang.PersistentFlatMap {:k0 0 :k1 1 :k2 2 :k3 3 :k4 4 :k5 5 :k6 6 :k7 7 :k8 8 a 9}))
+      (is (thrown-with-msg? IllegalArgumentException #"Duplicate key: :k9"
+            {:k0 0 :k1 1 :k2 2 :k3 3 :k4 4 :k5 5 :k6 6 :k7 7 :k8 8 a 9 b 10})))
+    (let [m (into {} (map vector (range 20) (range)))
+          t (transient m)]
+      (is (= m (read-string (binding [*print-dup* true] (pr-str m)))))
+      (is (= m (read-string (str "#=(clojure.lang.PersistentFlatMap/create " (pr-str m) ")"))))
+      (persistent! t)
+      (is (thrown? IllegalAccessError (assoc! t 1 2))))))
+
 (deftest ireduce-reduced
   (let [f (fn [_ a] (if (= a 5) (reduced "foo")))]
     (is (= "foo" (.reduce ^clojure.lang.IReduce (list 1 2 3 4 5) f)))
@@ -1330,3 +1399,46 @@
     (is (= (hash (->Rec 1 1)) (hash (assoc r :a 1))))
     (is (= (hash (->Rec 1 1)) (hash (dissoc r2 :c))))
     (is (= (hash (->Rec 1 1)) (hash (dissoc (assoc r :c 1) :c))))))
+
+(deftest test-long-hash-map
+  (let [ks (concat (range -100 100) [Long/MIN_VALUE Long/MAX_VALUE])
+        ref (zipmap ks (map str ks))
+        m (into clojure.lang.PersistentLongHashMap/EMPTY ref)
+        t (persistent! (reduce (fn [t k] (assoc! t k (str k)))
+                               (transient clojure.lang.PersistentLongHashMap/EMPTY)
+                               ks))]
+    (is (= ref m t))
+    (is (= m ref))
+    (is (= (hash ref) (hash m) (hash t)))
+    (is (= (count ref) (count m) (count (seq m))))
+    (seq-iter-match m m)
+    (is (= "5" (get m 5) (get m (int 5)) (m 5) (t 5)))
+    (is (= :nf (get m :a :nf) (get m 1.0 :nf) (get m 1000 :nf)))
+    (is (contains? m Long/MIN_VALUE))
+    (is (= (reduce-kv (fn [acc k v] (+' acc k)) 0 ref)
+           (reduce-kv (fn [acc k v] (+' acc k)) 0 m)))
+    (is (= (dissoc ref 0 1 2) (dissoc m 0 1 2)))
+    (is (empty? (reduce dissoc m ks)))
+    (is (empty? (persistent! (reduce dissoc! (transient m) ks))))
+    (is (= {1 :b} (-> clojure.lang.PersistentLongHashMap/EMPTY (assoc 1 :a) (assoc 1 :b))))
+    (is (thrown? IllegalArgumentException (assoc m :a 1)))
+    (is (= clojure.lang.PersistentLongHashMap (class (empty m))))))
+
+(deftest test-hash-map-structural-ops
+  (let [ks (concat (range 3000) ["Aa" "BB" "AaAa" "BBBB" "AaBB" "BBAa" nil])
+        a (into clojure.lang.PersistentHashMap/EMPTY (zipmap (take-nth 2 ks) (repeat :a)))
+        b (into clojure.lang.PersistentHashMap/EMPTY (zipmap (take-nth 3 ks) (repeat :b)))
+        a2 (assoc a :x 1 "zz" :c)
+        conj-merge #(reduce-kv assoc %1 %2)]
+    (doseq [[x y] [[a b] [b a] [a a2] [a2 a] [a (dissoc a2 0 nil)]]]
+      (is (= (conj-merge x y) (merge x y)))
+      (is (= (count (conj-merge x y)) (count (merge x y)) (count (seq (merge x y)))))
+      (is (= (hash (conj-merge x y)) (hash (merge x y))))
+      (is (= (reduce-kv (fn [m k v] (assoc m k (if (contains? m k) [(m k) v] v))) x y)
+             (merge-with vector x y)))
+      (is (= (select-keys x (keys y)) (clojure.lang.PersistentHashMap/intersection x y)))
+      (is (= (apply dissoc x (keys y)) (clojure.lang.PersistentHashMap/difference x y))))
+    (is (identical? a (merge a a)))
+    (is (identical? a (merge a (select-keys a (take 10 (keys a))))))
+    (is (= {:x 1 "zz" :c} (clojure.lang.PersistentHashMap/difference a2 a)))
+    (is (= {:m 1} (meta (merge (with-meta a {:m 1}) b))))))
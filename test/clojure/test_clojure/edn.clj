@@ -10,6 +10,7 @@
 
 
 (ns clojure.test-clojure.edn
+  (:use clojure.test)
   (:require [clojure.test.generative :refer (defspec)]
             [clojure.test-clojure.generators :as cgen]
             [clojure.edn :as edn]))
@@ -36,3 +37,49 @@
   [^{:tag cgen/non-ednable} o]
   (when-not (instance? Throwable %)
     (throw (ex-info "edn/read should have thrown, see ex-data" {:printed o :read %}))))
+
+(def buffer-samples
+  ["0" "-42" "+7" "017" "0x1F" "2r101" "12N" "9223372036854775808" "1.5" "-2.5E-3"
+   "1.5M" "3/4" "foo" "foo/bar" ":kw" ":ns/kw" "nil" "true" "false"
+   "\"a\\nb\\u00e9\\101 \u00e9\ud83d\ude00\"" "\\a" "\\newline" "\\u00e9" "\\o101"
+   "(1 (2))" "()" "[1 [2] #{3}]" "{:a 1 :b [2 3]}" "#:foo{:a 1 :_/b 2 c 3}" "##Inf"
+   "^:m [1]" "#inst \"2020-01-01T00:00:00.000-00:00\"" "; c\n 42" "#_ 1 2" "[a,b #_ c d]"])
+
+(deftest read-buffer-matches-read-string
+  (doseq [s buffer-samples]
+    (let [v (edn/read-string s)]
+      (is (= v (edn/read-buffer (java.nio.CharBuffer/wrap s))) s)
+      (is (= v (edn/read-buffer (java.nio.ByteBuffer/wrap (.getBytes ^String s "UTF-8")))) s)
+      (is (= (class v) (class (edn/read-buffer (java.nio.CharBuffer/wrap s)))) s)
+      (is (= (meta v) (meta (edn/read-buffer (java.nio.CharBuffer/wrap s)))) s))))
+
+(deftest read-buffer-errors
+  (doseq [s [")" "{:a}" "#{1 1}" "\"abc" "::foo" "#<x>" "@a" "09" "#foo 1" "[1"]]
+    (is (thrown? Exception (edn/read-string s)) s)
+    (is (thrown? Exception (edn/read-buffer (java.nio.CharBuffer/wrap s))) s))
+  (is (= ::eof (edn/read-buffer {:eof ::eof} (java.nio.CharBuffer/wrap " ")))))
+
+(deftest read-buffer-position
+  (let [buf (java.nio.ByteBuffer/wrap (.getBytes "12 [3]x" "UTF-8"))]
+    (is (= 12 (edn/read-buffer buf)))
+    (is (= 2 (.position buf)))
+    (is (= [3] (edn/read-buffer buf)))
+    (is (= 'x (edn/read-buffer buf)))
+    (is (nil? (edn/read-buffer {:eof nil} buf)))))
+
+(deftest forms-of-sources
+  (let [text (apply str (for [i (range 5000)] (str "{:id " i " :name \"\u00e9\ud83d\ude00" i "\"} nil\n")))
+        expected (edn/read-string (str "[" text "]"))
+        bytes #(.getBytes ^String text "UTF-8")
+        f (java.io.File/createTempFile "forms" ".edn")]
+    (try
+      (spit f text :encoding "UTF-8")
+      (is (= expected (into [] (edn/forms (java.nio.CharBuffer/wrap text)))))
+      (is (= expected (into [] (edn/forms (java.nio.ByteBuffer/wrap (bytes))))))
+      (is (= expected (vec (edn/forms (java.nio.channels.Channels/newChannel
+                                        (java.io.ByteArrayInputStream. (bytes)))))))
+      (is (= expected (into [] (edn/forms f))))
+      (is (= expected (vec (edn/forms f))))
+      (is (= (take 3 expected) (into [] (take 3) (edn/forms f))))
+      (finally
+        (.delete f)))))
@@ -9,10 +9,11 @@
 (ns clojure.test-clojure.java.io
   (:use clojure.test clojure.java.io
         [clojure.test-helper :only [platform-newlines]])
+  (:require clojure.core.reducers)
   (:import (java.io File BufferedInputStream
                     FileInputStream InputStreamReader InputStream
                     FileOutputStream OutputStreamWriter OutputStream
-                    ByteArrayInputStream ByteArrayOutputStream)
+                    ByteArrayInputStream ByteArrayOutputStream StringReader)
            (java.net URL URI Socket ServerSocket)))
 
 (defn temp-file
@@ -232,3 +233,36 @@
       (is (instance? OutputStream (output-stream client-socket)))
       (finally (.close server-socket)
                (.close client-socket)))))
+
+(defn- closing-stream
+  "Returns an input stream of the UTF-8 bytes of s that sets closed to
+  true when closed."
+  [^String s closed]
+  (proxy [ByteArrayInputStream] [(.getBytes s "UTF-8")]
+    (close [] (reset! closed true))))
+
+(deftest test-reducible-sources
+  (let [f (temp-file "clojure.java.io" "test-reducible-sources")]
+    (spit f "a\nbc\n\nd")
+    (is (= ["a" "bc" "" "d"] (into [] (lines f))))
+    (is (= 4 (transduce (map count) + (lines f))))
+    (is (= "abcd" (reduce str (lines f))))
+    (is (= 4 (clojure.core.reducers/fold + ((map count) +) (lines f))))
+    (spit f "a;;b;;;;c;;")
+    (is (= ["a" "b" "" "c"] (into [] (records f ";;"))))
+    (is (= ["a" "" "b"] (into [] (records (StringReader. "a,,b,") ","))))
+    (spit f "{:a 1} [2 #inst \"2020-01-01T00:00:00.000-00:00\"] nil x")
+    (is (= [{:a 1} [2 #inst "2020-01-01T00:00:00.000-00:00"] nil 'x] (into [] (edn-forms f))))
+    (is (= [['foo 1]] (into [] (edn-forms (StringReader. "#foo 1") :default vector))))
+    (spit f (apply str (repeat 1000 "x")))
+    (is (= [300 300 300 100] (into [] (map alength) (byte-chunks f :chunk-size 300))))
+    (is (= 1000 (transduce (map alength) + (byte-chunks f)))))
+  (testing "closes the source"
+    (doseq [source [#(lines %) #(records % "\n") #(edn-forms %) #(byte-chunks % :chunk-size 1)]]
+      (let [closed (atom false)]
+        (is (= 1 (count (into [] (take 1) (source (closing-stream "1\n2\n3" closed))))))
+        (is @closed))
+      (let [closed (atom false)]
+        (is (thrown? ArithmeticException
+                     (reduce (fn [_ _] (/ 1 0)) nil (source (closing-stream "1\n2" closed)))))
+        (is @closed)))))
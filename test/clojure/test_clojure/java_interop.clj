@@ -588,4 +588,61 @@
   (is (instance? java.lang.Character (char \a)))
   (is (= (char \a) \a)))
 
+(defn- reflective-append [sb x] (.append sb x))
+(defn- reflective-abs [x] (Math/abs x))
+
+(deftest test-reflective-call-site-types
+  ; same call sites, argument classes changing between calls
+  (let [sb (StringBuilder.)]
+    (dotimes [_ 3]
+      (doseq [x ["a" 1 nil \c 2.5 (char-array [\d]) (StringBuilder. "e")]]
+        (reflective-append sb x)))
+    (is (= (apply str (repeat 3 "a1nullc2.5de")) (str sb))))
+  ; argument classes from a DynamicClassLoader, not cached against StringBuilder
+  (let [sb (StringBuilder.)
+        t (eval '(do (deftype ReflectiveArg [] Object (toString [_] "t")) (ReflectiveArg.)))]
+    (dotimes [_ 3] (reflective-append sb t))
+    (is (= "ttt" (str sb))))
+  (dotimes [_ 3]
+    (is (= 3 (reflective-abs -3)))
+    (is (= 3.5 (reflective-abs -3.5)))
+    (is (thrown? IllegalArgumentException (reflective-abs "x")))))
+
+(defmulti runtime-events-multi identity)
+(defmethod runtime-events-multi :default [x] x)
+
+; the build runs this namespace a second time with clojure.runtime.events
+; set, so both branches are checked
+(deftest test-runtime-events
+  (reset-runtime-events!)
+  (let [s (identity "abc")]
+    (dotimes [_ 3] (is (= 3 (.length s)))))
+  (runtime-events-multi (gensym))
+  (keyword (str (gensym "runtime-events")))
+  (eval '(fn []))
+  (let [{:keys [enabled reflective-calls reflective-call-sites multifn-cache-misses
+                multifn-cache-miss-sites classes-defined keywords-interned keyword-table-size]}
+        (runtime-events)]
+    (is (= enabled (Boolean/getBoolean "clojure.runtime.events")))
+    (if enabled
+      (let [bean (javax.management.ObjectName. "clojure.lang:type=RuntimeEvents")
+            server (java.lang.management.ManagementFactory/getPlatformMBeanServer)]
+        (is (= 3 reflective-calls))
+        (is (= {"java.lang.String/length" 3} reflective-call-sites))
+        (is (pos? multifn-cache-misses))
+        (is (contains? multifn-cache-miss-sites "runtime-events-multi"))
+        (is (pos? classes-defined))
+        (is (pos? keywords-interned))
+        (is (= 3 (.getAttribute server bean "ReflectiveCalls")))
+        (is (= {"java.lang.String/length" 3}
+               (into {} (map (fn [^javax.management.openmbean.CompositeData d] [(.get d "key") (.get d "value")]))
+                     (.values ^javax.management.openmbean.TabularData (.getAttribute server bean "ReflectiveCallSites")))))
+        (.invoke server bean "reset" (object-array 0) (make-array String 0))
+        (is (zero? (:reflective-calls (runtime-events)))))
+      (do (is (zero? reflective-calls))
+          (is (empty? reflective-call-sites))
+          (is (zero? multifn-cache-misses))
+          (is (zero? classes-defined))))
+    (is (pos? keyword-table-size))))
+
 ;; Note: More coercions in numbers.clj
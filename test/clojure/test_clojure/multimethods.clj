@@ -232,3 +232,26 @@
     (is (fn? (get-method simple3 :b)))
     (is (= :b ((get-method simple3 :b) 1)))
     (is (nil? (get-method simple3 :c)))))
+
+(deftest hierarchy-change-invalidation-test
+  (let [h (atom (make-hierarchy))
+        mf (clojure.lang.MultiFn. "hier-test" identity :default (reify clojure.lang.IRef (deref [_] @h)))]
+    (.addMethod mf ::animal (constantly :animal))
+    (.addMethod mf :default (constantly :default))
+    (testing "unrelated derives keep cached dispatch correct"
+      (is (= :default (mf ::cat)))
+      (swap! h derive ::rock ::mineral)
+      (is (= :default (mf ::cat))))
+    (testing "derives affecting the dispatch value are seen"
+      (swap! h derive ::cat ::animal)
+      (is (= :animal (mf ::cat)))
+      (swap! h derive ::mammal ::animal)
+      (swap! h underive ::cat ::animal)
+      (is (= :default (mf ::cat)))
+      (swap! h derive ::cat ::mammal)
+      (is (= :animal (mf ::cat))))
+    (testing "vector dispatch values track each element"
+      (.addMethod mf [::animal ::animal] (constantly :pair))
+      (is (= :default (mf [::cat ::dog])))
+      (swap! h derive ::dog ::animal)
+      (is (= :pair (mf [::cat ::dog]))))))
@@ -103,3 +103,18 @@
   (is (thrown-with-cause-msg? clojure.lang.Compiler$CompilerException
                         #"defrecord and deftype fields must be symbols, user\.MyType had: :key1"
                         (eval '(deftype MyType [:key1])))))
+
+(def parallel-loads (atom []))
+
+(deftest parallel-require
+  (require 'clojure.test-clojure.ns-libs.parallel-a :parallel)
+  (is (= 4 ((resolve 'clojure.test-clojure.ns-libs.parallel-a/f))))
+  (let [loads @parallel-loads
+        order (zipmap loads (range))]
+    (is (= '#{a b c d} (set loads)))
+    (is (= 4 (count loads)))
+    (is (< (order 'd) (order 'b) (order 'a)))
+    (is (< (order 'd) (order 'c) (order 'a))))
+  (is (every? (loaded-libs) '[clojure.test-clojure.ns-libs.parallel-a
+                              clojure.test-clojure.ns-libs.parallel-d]))
+  (is (thrown? Exception (require 'clojure.test-clojure.ns-libs.parallel-a :parallel :bogus))))
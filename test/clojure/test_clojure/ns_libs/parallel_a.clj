@@ -0,0 +1,7 @@
+(ns clojure.test-clojure.ns-libs.parallel-a
+  (:require [clojure.test-clojure.ns-libs.parallel-b :as b]
+            [clojure.test-clojure.ns-libs parallel-c]))
+
+(swap! clojure.test-clojure.ns-libs/parallel-loads conj 'a)
+
+(defn f [] (+ (b/f) (clojure.test-clojure.ns-libs.parallel-c/f)))
@@ -0,0 +1,6 @@
+(ns clojure.test-clojure.ns-libs.parallel-b
+  (:require [clojure.test-clojure.ns-libs.parallel-d :as d]))
+
+(swap! clojure.test-clojure.ns-libs/parallel-loads conj 'b)
+
+(defn f [] (inc (d/f)))
@@ -0,0 +1,5 @@
+(ns clojure.test-clojure.ns-libs.parallel-d)
+
+(swap! clojure.test-clojure.ns-libs/parallel-loads conj 'd)
+
+(defn f [] 1)
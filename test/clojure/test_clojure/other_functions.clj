@@ -379,3 +379,55 @@
     ;; rest arity
     {:a 5} (update {:a 1} :a + 1 1 1 1)
     {:a 6} (update {:a 1} :a + 1 1 1 1 1)))
+
+(deftest test-memoize-opts
+  (let [calls (atom 0)
+        f (memoize (fn [x] (swap! calls inc) (* x 10)) {:max-size 8})]
+    (is (= [10 20 10] [(f 1) (f 2) (f 1)]))
+    (is (= 2 @calls))
+    (is (= {:hits 1 :misses 2 :evictions 0 :size 2} (memoize-stats f)))
+    (dotimes [i 100] (f i))
+    (is (<= (:size (memoize-stats f)) 8))
+    (is (pos? (:evictions (memoize-stats f)))))
+  (testing "no args and nil args"
+    (let [f (memoize (fn [& args] (count args)) {})]
+      (is (= [0 1 0 1] [(f) (f nil) (f) (f nil)]))
+      (is (= 2 (:misses (memoize-stats f))))))
+  (testing "args are compared by = and hash"
+    (let [f (memoize (fn [x] [x]) {:max-size 8})]
+      (is (= [[1] [1] [[1 2]] [[1 2]]] [(f 1) (f (int 1)) (f [1 2]) (f '(1 2))]))
+      (is (= {:hits 2 :misses 2} (select-keys (memoize-stats f) [:hits :misses])))))
+  (testing "lru keeps recently used entries"
+    (let [f (memoize identity {:max-size 8})]
+      (dotimes [i 8] (f i))
+      (dotimes [_ 3] (f 0))
+      (f 8)
+      (f 0)
+      (is (= 9 (:misses (memoize-stats f))))))
+  (testing "exceptions are not cached"
+    (let [n (atom 0)
+          f (memoize (fn [] (if (= 1 (swap! n inc)) (throw (Exception. "first")) :ok)) {})]
+      (is (thrown-with-msg? Exception #"first" (f)))
+      (is (= :ok (f)))))
+  (testing "ttl"
+    (let [n (atom 0)
+          f (memoize (fn [] (swap! n inc)) {:ttl-ms 1})]
+      (f)
+      (Thread/sleep 10)
+      (f)
+      (is (= 2 @n))))
+  (testing "concurrent misses compute once"
+    (let [n (atom 0)
+          f (memoize (fn [x] (swap! n inc) (Thread/sleep 50) x) {})
+          results (doall (map deref (doall (repeatedly 8 #(future (f :k))))))]
+      (is (= (repeat 8 :k) results))
+      (is (= 1 @n))))
+  (testing "recursion on the key being computed"
+    (let [self (promise)
+          entered (atom false)
+          f (memoize (fn [x] (if (compare-and-set! entered false true) (inc (@self x)) x)) {})]
+      (deliver self f)
+      (is (= 2 (f 1)))
+      (is (= 2 (f 1)))))
+  (is (nil? (memoize-stats (memoize inc))))
+  (is (thrown? IllegalArgumentException (memoize inc {:policy :mru}))))
@@ -38,3 +38,17 @@
                  (binding [*print-dup* false]
                    (swap! a conj *test-value*))))
       (is (= [2 2 2] @a)))))
+
+(deftest pmap-with-does-its-thing
+  (let [xs (range 1000)
+        expected (map inc xs)]
+    (is (= expected (into [] (pmap-with {} inc) xs)))
+    (is (= expected (seq (pmap-with {:batch-size 7 :parallelism 3 :buffer 1} inc xs))))
+    (is (= (set expected) (set (into [] (pmap-with {:ordered? false :batch-size 5} inc) xs))))
+    (is (= (reduce + expected) (transduce (pmap-with {:batch-size 10} inc) + xs)))
+    (is (= [1 2 3] (into [] (comp (pmap-with {:batch-size 2} inc) (take 3)) xs)))
+    (is (= [] (into [] (pmap-with {} inc) [])))
+    (binding [*test-value* 3]
+      (is (= [3 3] (into [] (pmap-with {} (fn [_] *test-value*)) [0 0]))))
+    (is (thrown-with-msg? ArithmeticException #"Divide by zero"
+                          (into [] (pmap-with {:batch-size 1} #(/ 1 %)) [1 0 2])))))
@@ -674,3 +674,41 @@
 (deftest test-leading-dashes
   (is (= 10 (-do-dashed (Dashed.))))
   (is (= [10] (map -do-dashed [(Dashed.)]))))
+
+(defprotocol IndyProtocol
+  (indy-p [x] [x y]))
+(defprotocol IndyMetaProtocol
+  :extend-via-metadata true
+  (indy-m [x]))
+(deftype IndyInline []
+  IndyProtocol
+  (indy-p [x] :inline)
+  (indy-p [x y] [:inline y]))
+
+(deftest indy-protocol-call-sites
+  (extend-protocol IndyProtocol
+    String (indy-p ([x] :string) ([x y] [:string y]))
+    nil (indy-p ([x] :nil) ([x y] [:nil y])))
+  (extend-protocol IndyMetaProtocol
+    Object (indy-m [x] :object))
+  (let [[call call2 callm]
+        (binding [*compiler-options* (assoc *compiler-options* :indy-protocols true)]
+          (eval '[(fn [x] (clojure.test-clojure.protocols/indy-p x))
+                  (fn [x y] (clojure.test-clojure.protocols/indy-p x y))
+                  (fn [x] (clojure.test-clojure.protocols/indy-m x))]))]
+    (is (= [:string :nil :inline] (map call ["a" nil (IndyInline.)])))
+    (is (= [[:string 1] [:nil 2] [:inline 3]] (map call2 ["a" nil (IndyInline.)] [1 2 3])))
+    (is (thrown? IllegalArgumentException (call 1)))
+    (extend-protocol IndyProtocol
+      Number (indy-p ([x] :number) ([x y] [:number y])))
+    (is (= [:number :number :string] (map call [1 1.5 "a"])))
+    (extend-protocol IndyProtocol
+      String (indy-p ([x] :string2) ([x y] [:string2 y])))
+    (is (= :string2 (call "a")))
+    (is (= :redef (with-redefs [indy-p (fn [& _] :redef)] (call "a"))))
+    (is (= :string2 (call "a")))
+    (extend-protocol IndyProtocol
+      Object (indy-p ([x] :object) ([x y] [:object y])))
+    (is (= (concat [:number :number :string2 :nil] (repeat 10 :object))
+           (map call (concat [1 2.5 "a" nil] [:k 'a \c [] {} #{} () (Object.) (StringBuilder.) (atom 0)]))))
+    (is (= [:object :meta] (map callm [1 (with-meta [] {`indy-m (fn [_] :meta)})])))))
@@ -90,6 +90,50 @@
                                         (throw (IndexOutOfBoundsException.)))))
                          (zipmap (range test-map-count) (repeat :dummy)))))))
 
+(deftest test-fold-sets-and-sorted-maps
+  (let [n 10000
+        hs (set (range n))
+        ss (apply sorted-set (range n))
+        sm (apply sorted-map (interleave (range n) (range n)))
+        sum (reduce + (range n))]
+    (is (= sum (r/fold + hs) (r/fold 100 + + ss)))
+    (is (= sum (r/fold 100 + (fn [acc k v] (+ acc v)) sm)))
+    (is (= (sort hs) (sort (into [] (r/foldcat (r/map identity hs))))))
+    (is (= (range n) (into [] (r/fold 100 r/cat r/append! ss)))
+        "Sorted sets should fold in order")
+    (is (= (range n) (into [] (r/fold 100 r/cat (fn [acc k v] (r/append! acc k)) sm)))
+        "Sorted maps should fold in order")
+    (is (= (filter even? (range n)) (into [] (r/fold 100 r/cat r/append! (r/filter even? ss)))))
+    (is (= 0 (r/fold + #{}) (r/fold + (sorted-set)) (r/fold + (fn [acc k v] (+ acc v)) (sorted-map))))
+    (is (= #{nil 1} (into #{} (r/foldcat (r/map identity #{nil 1}))))
+        "Hash sets should fold a nil element")))
+
+(deftest test-frequencies-and-group-by
+  (let [v (vec (map #(mod (* % 7919) 1000) (range 50000)))
+        words (vec (take 20000 (cycle ["Aa" "BB" "AaAa" "BBBB" "AaBB" "BBAa" nil :k 1 2.0])))]
+    (is (= (frequencies v) (r/frequencies v) (r/frequencies 100 v)))
+    (is (= (frequencies words) (r/frequencies 64 words)))
+    (is (= (frequencies (filter even? v)) (r/frequencies 100 (r/filter even? v))))
+    (is (= (group-by even? v) (r/group-by even? v) (r/group-by 100 even? v)))
+    (is (= (group-by #(mod % 37) v) (r/group-by 100 #(mod % 37) v))
+        "Groups should keep the order of the input")
+    (is (= (group-by str words) (r/group-by 64 str words)))
+    (is (= {} (r/frequencies []) (r/group-by identity [])))
+    (is (= (frequencies (vals (zipmap (range 1000) (cycle [:a :b :c]))))
+           (r/frequencies 10 (r/map (fn [_ v] v) (zipmap (range 1000) (cycle [:a :b :c]))))))))
+
+(deftest test-hash-map-merge
+  (let [ks (concat (range 2000) ["Aa" "BB" "AaAa" "BBBB" "AaBB" "BBAa" nil])
+        a (zipmap (take-nth 2 ks) (repeat 1))
+        b (zipmap (take-nth 3 ks) (repeat 10))
+        f (fn [x y] [x y])
+        e clojure.lang.PersistentHashMap/EMPTY
+        m (clojure.lang.PersistentHashMap/merge a b f)]
+    (is (= (merge-with f a b) m))
+    (is (= (count (merge-with f a b)) (count m)))
+    (is (= a (clojure.lang.PersistentHashMap/merge a e f)))
+    (is (= b (clojure.lang.PersistentHashMap/merge e b f)))))
+
 (deftest test-closed-over-clearing
   ;; this will throw OutOfMemory without proper reference clearing
   (is (number? (reduce + 0 (r/map identity (range 1e8))))))
@@ -20,3 +20,45 @@
 ; ensure ref-set alter commute
 ; set-validator get-validator
 
+
+(deftest stm-stats-test
+  (let [r (ref 0)
+        n 8
+        per 200]
+    (try
+      (set-stm-stats! true)
+      (is (nil? (ref-stats r)))
+      (dorun (apply pcalls (repeat n #(dotimes [_ per] (dosync (alter r inc))))))
+      (is (= (* n per) @r))
+      (let [{:keys [commits retries commit-ns max-commit-ns]} (ref-stats r)]
+        (is (= (* n per) commits))
+        (is (<= 0 retries))
+        (is (<= max-commit-ns commit-ns)))
+      (is (some #(= (* n per) (:commits %)) (vals (stm-stats))))
+      (.resetStats ^clojure.lang.Ref r)
+      (is (nil? (ref-stats r)))
+      (finally
+        (set-stm-stats! false)))
+    (dosync (alter r inc))
+    (is (nil? (ref-stats r)))))
+
+(deftest adaptive-stm-test
+  (let [r (ref 0 :max-history 2)
+        stop (atom false)]
+    (try
+      (set-stm-adaptive! true)
+      (let [writers (doall (repeatedly 4 #(future (while (not @stop)
+                                                   (dosync (alter r inc))
+                                                   (Thread/sleep 1)))))]
+        ;; each read starts before a burst of writes it then has to look past
+        (dotimes [_ 20]
+          (dosync (Thread/sleep 5) @r))
+        (reset! stop true)
+        (dorun (map deref writers)))
+      (finally
+        (reset! stop true)
+        (set-stm-adaptive! false)))
+    (is (pos? (:history-faults (ref-stats r))))
+    (is (< 2 (ref-max-history r) 101) "max-history grew for the faulting ref")
+    (is (< 0 (ref-history-count r)) "history is kept beyond min-history")
+    (is (= @r (:commits (ref-stats r))))))
@@ -1369,6 +1369,36 @@
   (is (= {:a true} (meta (sort (with-meta (range 10) {:a true})))))
   (is (= {:a true} (meta (sort-by :a (with-meta (seq [{:a 5} {:a 2} {:a 3}]) {:a true}))))))
 
+(def ^:dynamic *sort-key* nil)
+
+(deftest test-sort-large
+  (let [n (* 2 clojure.lang.ParallelSort/THRESHOLD)
+        recs (vec (for [i (range n)] {:a (mod (* i 7919) 1000) :i i}))
+        sorted (binding [*sort-key* :a]
+                 (sort-by #(get % *sort-key*) recs))]
+    (is (= n (count sorted)))
+    (is (every? (fn [[x y]] (or (< (:a x) (:a y))
+                                (and (= (:a x) (:a y)) (< (:i x) (:i y)))))
+                (partition 2 1 sorted))
+        "stable, with the caller's bindings")))
+
+(deftest test-sort-primitives
+  (let [xs (map #(mod (* % 7919) 1000) (range 5000))]
+    (is (= (sort xs) (sort (into (vector-of :long) xs))))
+    (is (= (sort (map double xs)) (sort (into (vector-of :double) xs))))
+    (is (= [1 2 3] (sort (vector-of :long 3 1 2))))
+    (is (= {:a true} (meta (sort (with-meta (vector-of :long 2 1) {:a true})))))
+    (let [a (long-array [3 1 2])]
+      (is (= [1 2 3] (sort a)))
+      (is (= [3 1 2] (vec a))))
+    (let [a (double-array [3 1 2])]
+      (is (= [1.0 2.0 3.0] (sort a))))
+    (let [zs [0.0 -0.0 1.0 -1.0 -0.0 0.0]
+          bits #(map (fn [^double d] (Double/doubleToRawLongBits d)) %)]
+      (is (= (bits (sort zs)) (bits (sort (double-array zs))) (bits (sort (apply vector-of :double zs))))
+          "-0.0 and 0.0 keep their order, as with compare"))
+    (is (= [3 2 1] (sort > (vector-of :long 1 3 2))))))
+
 (deftest test-seqs-implements-iobj
   (doseq [coll [[1 2 3]
                 (vector-of :long 1 2 3)
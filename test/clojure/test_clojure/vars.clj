@@ -107,3 +107,33 @@
                   1000 :timeout)))
   (is (= 0 (deref (future (apply #'sample (range)))
                   1000 :timeout))))
+
+(def ^:dynamic b 0)
+(def ^:dynamic c 0)
+(def ^:dynamic d 0)
+(def ^:dynamic e 0)
+
+(deftest test-nested-binding-frames
+  (binding [a 1]
+    (binding [b 2 a 3]
+      (is (= [3 2] [a b]))
+      (binding [c 4 d 5 e 6]
+        (is (= [3 2 4 5 6] [a b c d e]))
+        (is (= {#'a 3 #'b 2 #'c 4 #'d 5 #'e 6}
+               (select-keys (get-thread-bindings) [#'a #'b #'c #'d #'e])))
+        (binding [a 7 b 8 c 9 d 10 e 11]
+          (is (= [7 8 9 10 11] [a b c d e]))
+          (is (= 7 @(future a)))
+          (is (= 11 ((bound-fn [] e)))))
+        (is (= [3 2 4 5 6] [a b c d e])))
+      (set! b 12)
+      (is (= 12 b)))
+    (is (= [1 0] [a b])))
+  (is (= 2 (binding [b 1 b 2] b)))
+  (is (thrown? IllegalStateException
+               (binding [sample 1] sample)))
+  (let [ag (agent nil)]
+    (binding [c 13]
+      (send ag (fn [_] c)))
+    (await ag)
+    (is (= 13 @ag))))
@@ -9,7 +9,8 @@
 ; Author: Stuart Halloway, Daniel Solano Gómez
 
 (ns clojure.test-clojure.vectors
-  (:use clojure.test))
+  (:use clojure.test)
+  (:require [clojure.core.reducers :as r]))
 
 (deftest test-reversed-vec
   (let [r (range 6)
@@ -416,3 +417,37 @@
   (is (= [0 1 2 3] (vec (reify clojure.lang.IReduceInit
                           (reduce [_ f start]
                             (reduce f start (range 4))))))))
+
+(deftest test-rrb-vec
+  (let [r (range 5000)
+        v (rrb-vec r)]
+    (is (instance? clojure.lang.PersistentRRBVector v))
+    (is (= r v (rrb-vec (vec r)) (rrb-vec (into [] r))))
+    (is (= (hash (vec r)) (hash v)))
+    (is (= (concat r r [:x]) (catvec v (vec r) [:x])))
+    (is (= (concat (range 100 200) (range 10)) (catvec (subvec v 100 200) (subvec v 0 10))))
+    (is (= (concat (range 17) [:x] (range 17 5000)) (insertv v 17 :x)))
+    (is (= (concat r [:x]) (insertv v 5000 :x)))
+    (is (= (concat (range 4000) (range 4001 5000)) (removev v 4000)))
+    (is (= [] (subvec v 10 10) (catvec) (removev [1] 0)))
+    (is (instance? clojure.lang.PersistentRRBVector (subvec v 10 10)))
+    (is (= (range 1 5001) (map inc (catvec (subvec v 0 2500) (subvec v 2500)))))
+    (is (= (reduce + r) (reduce + v) (reduce + (catvec (subvec v 0 1234) (subvec v 1234)))))
+    (is (= (reduce + r) (r/fold 100 + + (catvec (subvec v 0 1234) (subvec v 1234)))))
+    (is (= (range 4999 -1 -1) (rseq v)))
+    (is (= (conj (vec (range 4999)) :a) (persistent! (-> (transient v) pop! (conj! :b) (assoc! 4999 :a)))))
+    (is (= [1 2 :x] (-> (transient (rrb-vec [1 2 3])) pop! pop! pop! (conj! 1) (conj! 2) (conj! :x) persistent!)))
+    (is (= {:m 1} (meta (catvec (with-meta (rrb-vec r) {:m 1}) r))))
+    (is (nil? (meta (subvec (with-meta v {:m 1}) 0 5000))))
+    (is (nil? (meta (subvec (with-meta v {:m 1}) 0 4999))))
+    (is (chunked-seq? (seq v)))
+    (is (thrown? IndexOutOfBoundsException (insertv v 5001 :x)))
+    (is (thrown? IndexOutOfBoundsException (subvec v 10 5001)))
+    (let [rotated (reduce (fn [v a] (catvec (subvec v a) (subvec v 0 a)))
+                          v (take 200 (iterate #(mod (+ % 977) 5000) 3)))]
+      (is (= (sort rotated) r))
+      (is (= (count rotated) (count (seq rotated)))))
+    (let [piece (rrb-vec (range 33))
+          catted (reduce (fn [v _] (catvec v piece)) (rrb-vec []) (range 3000))]
+      (is (= (apply concat (repeat 3000 piece)) catted))
+      (is (= 32 (nth catted (+ 32 (* 33 2999))))))))